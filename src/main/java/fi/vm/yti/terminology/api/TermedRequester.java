@@ -7,15 +7,22 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
 @Service
@@ -28,16 +35,30 @@ public class TermedRequester {
     private final String termedPassword;
     private final String termedUrl;
     private final RestTemplate restTemplate;
+    private final Executor asyncExecutor;
 
     @Autowired
     TermedRequester(@Value("${api.username}") String termedUser,
                     @Value("${api.password: #{null}}") @Nullable String termedPassword,
                     @Value("${api.url}") String termedUrl,
-                    RestTemplate restTemplate) {
+                    RestTemplate restTemplate,
+                    @Qualifier("termedTaskExecutor") Executor asyncExecutor) {
         this.termedUser = termedUser;
         this.termedPassword = termedPassword;
         this.termedUrl = termedUrl;
         this.restTemplate = restTemplate;
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Runs the request on the Termed executor so that independent requests can be in flight at the same time.
+     * The future completes with null for 404 responses and exceptionally for other failures, like exchange.
+     */
+    public <TResponse> @NotNull CompletableFuture<TResponse> exchangeAsync(@NotNull String path,
+                                                                           @NotNull HttpMethod method,
+                                                                           @NotNull Parameters parameters,
+                                                                           @NotNull Class<TResponse> responseType) {
+        return CompletableFuture.supplyAsync(() -> exchange(path, method, parameters, responseType), asyncExecutor);
     }
 
     public <TResponse> @Nullable TResponse exchange(@NotNull String path,
@@ -186,6 +207,62 @@ public class TermedRequester {
         return mapExceptions(() -> restTemplate.exchange(createUrl(path, parameters), method, new HttpEntity<>(body, createHeaders(username, password, contentType)), responseType).getBody());
     }
 
+    /**
+     * Executes the request and hands the open response to the extractor, so that large responses can be
+     * parsed from the response stream without buffering the whole body.
+     */
+    public <TResponse> @Nullable TResponse stream(@NotNull String path,
+                                                  @NotNull HttpMethod method,
+                                                  @NotNull Parameters parameters,
+                                                  @NotNull ResponseExtractor<TResponse> responseExtractor) {
+        return stream(path, method, parameters, DEFAULT_CONTENT_TYPE, responseExtractor);
+    }
+
+    public <TResponse> @Nullable TResponse stream(@NotNull String path,
+                                                  @NotNull HttpMethod method,
+                                                  @NotNull Parameters parameters,
+                                                  @NotNull TermedContentType contentType,
+                                                  @NotNull ResponseExtractor<TResponse> responseExtractor) {
+        logger.debug("Termed streaming request: " + method.toString() + ":" + path);
+        HttpHeaders headers = createHeaders(termedUser, termedPassword, contentType);
+        return mapExceptions(() -> restTemplate.execute(createUrl(path, parameters), method, request -> request.getHeaders().putAll(headers), responseExtractor));
+    }
+
+    /**
+     * Executes the request and returns the response without reading its body, so that the caller can look at
+     * the start of the body before committing its own response. The caller must close the response.
+     *
+     * @return open response, null when Termed responds 404
+     */
+    public @Nullable ClientHttpResponse open(@NotNull String path,
+                                             @NotNull HttpMethod method,
+                                             @NotNull Parameters parameters,
+                                             @NotNull TermedContentType contentType) {
+        logger.debug("Termed streaming request: " + method.toString() + ":" + path);
+        HttpHeaders headers = createHeaders(termedUser, termedPassword, contentType);
+        return mapExceptions(() -> {
+            ClientHttpResponse response = null;
+            boolean opened = false;
+            try {
+                ClientHttpRequest request = restTemplate.getRequestFactory()
+                        .createRequest(restTemplate.getUriTemplateHandler().expand(createUrl(path, parameters)), method);
+                request.getHeaders().putAll(headers);
+                response = request.execute();
+                if (restTemplate.getErrorHandler().hasError(response)) {
+                    restTemplate.getErrorHandler().handleError(response);
+                }
+                opened = true;
+                return response;
+            } catch (IOException e) {
+                throw new ResourceAccessException("I/O error on " + method + " request for \"" + path + "\": " + e.getMessage(), e);
+            } finally {
+                if (response != null && !opened) {
+                    response.close();
+                }
+            }
+        });
+    }
+
     private static <T> T mapExceptions(Supplier<T> supplier) {
         boolean success = false;
         try {
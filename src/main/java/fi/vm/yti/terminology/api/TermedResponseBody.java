@@ -0,0 +1,73 @@
+package fi.vm.yti.terminology.api;
+
+import fi.vm.yti.terminology.api.exception.TermedEndpointException;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Body of an open Termed response whose first chunk has already been read, so that a failing Termed response
+ * is noticed before the caller commits its own response status. Writing the body copies the first chunk and
+ * the rest of the Termed response and closes it, a body that is not written must be closed by the caller.
+ */
+public final class TermedResponseBody implements StreamingResponseBody {
+
+    /**
+     * Bytes read before the response status is decided
+     */
+    static final int FIRST_CHUNK_SIZE = 8192;
+
+    private final ClientHttpResponse response;
+    private final InputStream body;
+    private final byte[] firstChunk;
+
+    private TermedResponseBody(ClientHttpResponse response, InputStream body, byte[] firstChunk) {
+        this.response = response;
+        this.body = body;
+        this.firstChunk = firstChunk;
+    }
+
+    /**
+     * Reads the first chunk of the response, closing the response when reading fails.
+     *
+     * @param description what is read, for the error message
+     */
+    public static @NotNull TermedResponseBody start(@NotNull ClientHttpResponse response, @NotNull String description) {
+        try {
+            InputStream body = response.getBody();
+            return new TermedResponseBody(response, body, body.readNBytes(FIRST_CHUNK_SIZE));
+        } catch (IOException e) {
+            response.close();
+            throw new TermedEndpointException(new ResourceAccessException("Reading " + description + " from Termed failed", e));
+        }
+    }
+
+    public byte[] getFirstChunk() {
+        return firstChunk;
+    }
+
+    /**
+     * @return whether the first chunk is the whole response
+     */
+    public boolean isComplete() {
+        return firstChunk.length < FIRST_CHUNK_SIZE;
+    }
+
+    public void close() {
+        response.close();
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        try (response) {
+            output.write(firstChunk);
+            StreamUtils.copy(body, output);
+        }
+    }
+}
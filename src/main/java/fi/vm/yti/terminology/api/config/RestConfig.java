@@ -3,12 +3,22 @@ package fi.vm.yti.terminology.api.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContexts;
 import org.apache.http.ssl.TrustStrategy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
@@ -22,6 +32,7 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
 import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS;
@@ -40,12 +51,14 @@ class RestConfig {
     }
 
     @Bean
-    ClientHttpRequestFactory httpRequestFactory() {
-        return new HttpComponentsClientHttpRequestFactory(httpClient());
+    ClientHttpRequestFactory httpRequestFactory(HttpClient httpClient) {
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
     }
 
     @Bean
-    HttpClient httpClient() {
+    PoolingHttpClientConnectionManager httpConnectionManager(@Value("${termed.http.pool.maxTotal:100}") int maxTotal,
+                                                             @Value("${termed.http.pool.maxPerRoute:50}") int maxPerRoute,
+                                                             MeterRegistry meterRegistry) {
 
         TrustStrategy naivelyAcceptingTrustStrategy = (X509Certificate[] chain, String authType) -> true;
 
@@ -54,18 +67,50 @@ class RestConfig {
                     .loadTrustMaterial(null, naivelyAcceptingTrustStrategy)
                     .build();
 
-            return HttpClients.custom()
-                    .setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext))
+            Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", new SSLConnectionSocketFactory(sslContext))
                     .build();
 
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+            connectionManager.setMaxTotal(maxTotal);
+            connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+            // exposes termed.http pool gauges (available, leased, pending, max) through actuator metrics
+            new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "termed").bindTo(meterRegistry);
+
+            return connectionManager;
+
         } catch (NoSuchAlgorithmException |KeyManagementException |KeyStoreException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Bean
-    RestTemplate restTemplate() {
-        RestTemplate restTemplate = new RestTemplate(httpRequestFactory());
+    HttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager,
+                          @Value("${termed.http.connectTimeoutMillis:5000}") int connectTimeoutMillis,
+                          @Value("${termed.http.readTimeoutMillis:120000}") int readTimeoutMillis,
+                          @Value("${termed.http.pool.acquireTimeoutMillis:10000}") int acquireTimeoutMillis,
+                          @Value("${termed.http.pool.idleEvictSeconds:30}") long idleEvictSeconds) {
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .setConnectionRequestTimeout(acquireTimeoutMillis)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Bean
+    RestTemplate restTemplate(ClientHttpRequestFactory httpRequestFactory) {
+        RestTemplate restTemplate = new RestTemplate(httpRequestFactory);
 
         for (HttpMessageConverter<?> converter : restTemplate.getMessageConverters()) {
             if (converter instanceof MappingJackson2HttpMessageConverter) {
@@ -1,5 +1,6 @@
 package fi.vm.yti.terminology.api.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -7,6 +8,8 @@ import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Configuration
 @EnableAsync
 public class ThreadConfig {
@@ -30,4 +33,41 @@ public class ThreadConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    @Bean(name = "termedTaskExecutor")
+    public TaskExecutor termedTaskExecutor(@Value("${termed.async.threads:8}") int threads) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("termed-async-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "searchTaskExecutor")
+    public TaskExecutor searchTaskExecutor(@Value("${elasticsearch.search.async.threads:4}") int threads) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("search-async-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "countsTaskExecutor")
+    public TaskExecutor countsTaskExecutor(@Value("${elasticsearch.search.counts.refreshThreads:1}") int threads,
+                                           @Value("${elasticsearch.search.counts.refreshQueueSize:20}") int queueSize) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueSize);
+        // a rejected refresh would never complete and block later refreshes of its entry
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("counts-refresh-");
+        executor.initialize();
+        return executor;
+    }
+}
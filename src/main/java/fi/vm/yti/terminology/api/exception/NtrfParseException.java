@@ -0,0 +1,8 @@
+package fi.vm.yti.terminology.api.exception;
+
+public class NtrfParseException extends RuntimeException {
+
+    public NtrfParseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
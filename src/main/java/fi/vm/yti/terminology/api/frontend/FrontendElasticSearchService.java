@@ -2,11 +2,26 @@ package fi.vm.yti.terminology.api.frontend;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import fi.vm.yti.terminology.api.frontend.elasticqueries.CountQueryFactory;
 import fi.vm.yti.terminology.api.frontend.searchdto.*;
+import fi.vm.yti.terminology.api.index.IndexUpdatedEvent;
+import fi.vm.yti.terminology.api.index.VocabularyIndexChangedEvent;
 import fi.vm.yti.terminology.api.util.RestHighLevelClientWrapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.apache.http.HttpHost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
@@ -20,7 +35,9 @@ import org.elasticsearch.client.RestHighLevelClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -39,6 +56,9 @@ public class FrontendElasticSearchService {
 
     private static final Logger logger = LoggerFactory.getLogger(FrontendElasticSearchService.class);
 
+    private static final String ALL_COUNTS = "all";
+    private static final String VOCABULARY_COUNTS = "vocabularies";
+
     private RestHighLevelClientWrapper esRestClient;
 
     private final String indexName;
@@ -51,6 +71,16 @@ public class FrontendElasticSearchService {
     private final CountQueryFactory countQueryFactory;
     private final ConceptQueryFactory conceptQueryFactory;
     private final UriProperties uriProperties;
+    private final Executor searchExecutor;
+
+    // organization set -> graph ids of terminologies contributed by any of them
+    private final Cache<Set<String>, Set<String>> matchingTerminologiesCache;
+    private final AtomicLong matchingTerminologiesGeneration = new AtomicLong();
+
+    // ALL_COUNTS or VOCABULARY_COUNTS -> counts, a cached value is served while it is being refreshed
+    private final LoadingCache<String, CountSearchResponse> countsCache;
+    // vocabulary graph id -> concept counts of the vocabulary
+    private final LoadingCache<UUID, CountSearchResponse> conceptCountsCache;
 
     @Autowired
     public FrontendElasticSearchService(@Value("${elasticsearch.index.name}") String indexName,
@@ -58,17 +88,58 @@ public class FrontendElasticSearchService {
                                         UriProperties uriProperties,
                                         RestHighLevelClientWrapper esRestClient,
                                         ObjectMapper objectMapper,
-                                        AuthenticatedUserProvider userProvider) {
+                                        AuthenticatedUserProvider userProvider,
+                                        @Qualifier("countsTaskExecutor") Executor countsExecutor,
+                                        @Qualifier("searchTaskExecutor") Executor searchExecutor,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${elasticsearch.search.matchingTerminologies.cacheSeconds:300}") long matchingTerminologiesCacheSeconds,
+                                        @Value("${elasticsearch.search.counts.refreshSeconds:600}") long countsRefreshSeconds) {
         this.indexName = indexName;
         this.indexMappingType = indexMappingType;
         this.esRestClient = esRestClient;
         this.objectMapper = objectMapper;
         this.userProvider = userProvider;
         this.uriProperties = uriProperties;
+        this.searchExecutor = searchExecutor;
         this.terminologyQueryFactory = new TerminologyQueryFactory(objectMapper);
         this.deepConceptQueryFactory = new DeepConceptQueryFactory(objectMapper);
         this.conceptQueryFactory = new ConceptQueryFactory(objectMapper, this.uriProperties.getUriHostPathAddress());
         this.countQueryFactory = new CountQueryFactory(objectMapper);
+        this.matchingTerminologiesCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(matchingTerminologiesCacheSeconds, TimeUnit.SECONDS)
+                .maximumSize(1000)
+                .build();
+        this.countsCache = CacheBuilder.newBuilder()
+                .refreshAfterWrite(countsRefreshSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::fetchCounts), countsExecutor));
+        this.conceptCountsCache = CacheBuilder.newBuilder()
+                .refreshAfterWrite(countsRefreshSeconds, TimeUnit.SECONDS)
+                .maximumSize(1000)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::fetchConceptCounts), countsExecutor));
+        GuavaCacheMetrics.monitor(meterRegistry, countsCache, "terminology.counts");
+        GuavaCacheMetrics.monitor(meterRegistry, conceptCountsCache, "terminology.conceptCounts");
+    }
+
+    @EventListener
+    public void onVocabularyIndexChanged(VocabularyIndexChangedEvent event) {
+        // Any vocabulary may have gained or lost contributors, entries are keyed by organizations
+        matchingTerminologiesGeneration.incrementAndGet();
+        matchingTerminologiesCache.invalidateAll();
+    }
+
+    @EventListener
+    public void onIndexUpdated(IndexUpdatedEvent event) {
+        // Stale counts keep being served until the refreshed ones have been read
+        countsCache.asMap().keySet().forEach(countsCache::refresh);
+        UUID graphId = event.getGraphId();
+        if (graphId == null) {
+            // Up to maximumSize vocabularies, read again when they are next asked for instead of all at once
+            conceptCountsCache.invalidateAll();
+        } else if (conceptCountsCache.asMap().containsKey(graphId)) {
+            conceptCountsCache.refresh(graphId);
+        }
     }
 
     ConceptSearchResponse searchConcept(ConceptSearchRequest request) {
@@ -85,71 +156,113 @@ public class FrontendElasticSearchService {
         }
     }
 
+    /**
+     * Runs the searches as a pipeline on the asynchronous client, each search is sent as soon as the results it
+     * depends on are available: contributor resolution feeds the deep concept search, whose terminologies feed
+     * the final terminology search. Without a deep concept search the terminology search is sent right away.
+     * Searches are built and parsed on the search executor, never on the I/O threads of the client.
+     */
     TerminologySearchResponse searchTerminology(TerminologySearchRequest request) {
         request.setQuery(request.getQuery() != null ? request.getQuery().trim() : "");
 
         boolean superUser = superUser();
         Set<String> privilegedOrganizations = superUser ? Collections.emptySet() : readOrganizations();
 
-        Map<String, List<DeepSearchHitListDTO<?>>> deepSearchHits = null;
+        CompletableFuture<Map<String, List<DeepSearchHitListDTO<?>>>> deepSearchHits;
         if (request.isSearchConcepts() && !request.getQuery().isEmpty()) {
-            try {
-                Set<String> incompleteFromTerminologies = superUser ?
-                        Collections.emptySet() :
-                        terminologiesMatchingOrganizations(privilegedOrganizations, null);
-                SearchRequest query = deepConceptQueryFactory.createQuery(
-                        request.getQuery(),
-                        request.getStatuses(),
-                        request.getPrefLang(),
-                        superUser,
-                        incompleteFromTerminologies);
-                // logger.debug("deepConceptQuery: " + query.toString());
-                SearchResponse response = esRestClient.search(query, RequestOptions.DEFAULT);
-                deepSearchHits = deepConceptQueryFactory.parseResponse(response, request);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            CompletableFuture<Set<String>> incompleteFromTerminologies = superUser ?
+                    CompletableFuture.completedFuture(Collections.emptySet()) :
+                    terminologiesMatchingOrganizationsAsync(privilegedOrganizations);
+            deepSearchHits = incompleteFromTerminologies
+                    .thenComposeAsync(terminologies -> esRestClient.searchAsync(deepConceptQueryFactory.createQuery(
+                            request.getQuery(),
+                            request.getStatuses(),
+                            request.getPrefLang(),
+                            superUser,
+                            terminologies), RequestOptions.DEFAULT), searchExecutor)
+                    .thenApplyAsync(response -> deepConceptQueryFactory.parseResponse(response, request), searchExecutor);
+        } else {
+            deepSearchHits = CompletableFuture.completedFuture(null);
         }
 
-        try {
+        CompletableFuture<SearchResponse> terminologies = deepSearchHits.thenComposeAsync(hits -> {
             SearchRequest finalQuery;
-            if (deepSearchHits != null && !deepSearchHits.isEmpty()) {
-                Set<String> additionalTerminologyIds = deepSearchHits.keySet();
+            if (hits != null && !hits.isEmpty()) {
+                Set<String> additionalTerminologyIds = hits.keySet();
                 logger.debug("Deep concept search resulted in " + additionalTerminologyIds.size() + " terminology matches");
                 finalQuery = terminologyQueryFactory.createQuery(request, additionalTerminologyIds, superUser, privilegedOrganizations);
             } else {
                 finalQuery = terminologyQueryFactory.createQuery(request, superUser, privilegedOrganizations);
             }
-            SearchResponse response = esRestClient.search(finalQuery, RequestOptions.DEFAULT);
-            return terminologyQueryFactory.parseResponse(response, request, deepSearchHits);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            return esRestClient.searchAsync(finalQuery, RequestOptions.DEFAULT);
+        }, searchExecutor);
+
+        try {
+            SearchResponse response = terminologies.join();
+            return terminologyQueryFactory.parseResponse(response, request, deepSearchHits.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
         }
     }
 
     CountSearchResponse getCounts() {
-        SearchRequest query = countQueryFactory.createQuery();
+        return cachedCounts(countsCache, ALL_COUNTS);
+    }
+
+    CountSearchResponse getVocabularyCounts() {
+        return cachedCounts(countsCache, VOCABULARY_COUNTS);
+    }
+
+    CountSearchResponse getConceptCounts(UUID vocabularyId)  {
+        return cachedCounts(conceptCountsCache, vocabularyId);
+    }
+
+    /**
+     * @return copy of the cached counts, callers may add categories of their own
+     */
+    private static <K> CountSearchResponse cachedCounts(LoadingCache<K, CountSearchResponse> cache, K key) {
+        CountSearchResponse cached;
         try {
-            SearchResponse response = esRestClient.search(query, RequestOptions.DEFAULT);
-            logger.debug(response.toString());
-            return countQueryFactory.parseResponse(response);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            cached = cache.getUnchecked(key);
+        } catch (UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
         }
+        CountDTO counts = cached.getCounts();
+        CountSearchResponse ret = new CountSearchResponse();
+        ret.setTotalHitCount(cached.getTotalHitCount());
+        ret.setCounts(new CountDTO(
+                new HashMap<>(counts.getCategories()),
+                new HashMap<>(counts.getStatuses()),
+                new HashMap<>(counts.getGroups()),
+                new LinkedHashMap<>(counts.getLanguages())));
+        return ret;
     }
 
-    CountSearchResponse getVocabularyCounts() {
-        SearchRequest query = countQueryFactory.createVocabularyCountQuery();
+    private CountSearchResponse fetchCounts(String key) {
+        if (VOCABULARY_COUNTS.equals(key)) {
+            SearchRequest query = countQueryFactory.createVocabularyCountQuery();
+            try {
+                SearchResponse response = esRestClient.search(query, RequestOptions.DEFAULT);
+                return countQueryFactory.parseResponse(response);
+            } catch (IOException e) {
+                logger.error("Error fetching vocabulary counts", e);
+                throw new RuntimeException(e);
+            }
+        }
+        SearchRequest query = countQueryFactory.createQuery();
         try {
             SearchResponse response = esRestClient.search(query, RequestOptions.DEFAULT);
+            logger.debug(response.toString());
             return countQueryFactory.parseResponse(response);
         } catch (IOException e) {
-            logger.error("Error fetching vocabulary counts", e);
             throw new RuntimeException(e);
         }
     }
 
-    CountSearchResponse getConceptCounts(UUID vocabularyId)  {
+    private CountSearchResponse fetchConceptCounts(UUID vocabularyId) {
         SearchRequest request = countQueryFactory.createConceptCountQuery(vocabularyId);
         try {
             SearchResponse response = esRestClient.search(request, RequestOptions.DEFAULT);
@@ -185,17 +298,39 @@ public class FrontendElasticSearchService {
 
     private Set<String> terminologiesMatchingOrganizations(Collection<String> privilegedOrganizations,
                                                            Collection<String> limitToThese) {
-        try {
-            if (privilegedOrganizations.isEmpty()) {
-                return Collections.emptySet();
-            }
-            SearchRequest sr = terminologyQueryFactory.createMatchingTerminologiesQuery(privilegedOrganizations, limitToThese);
-            logger.debug("terminologiesMatchingOrganizations query: " + sr.toString());
-            SearchResponse response = esRestClient.search(sr, RequestOptions.DEFAULT);
-            return terminologyQueryFactory.parseMatchingTerminologiesResponse(response);
-        } catch (Exception e) {
-            logger.error("Failed to resolve terminologies based on contributors", e);
+        Set<String> terminologies = terminologiesMatchingOrganizationsAsync(privilegedOrganizations).join();
+        if (limitToThese == null || limitToThese.isEmpty()) {
+            return terminologies;
         }
-        return Collections.emptySet();
+        return limitToThese.stream()
+            .filter(terminologies::contains)
+            .collect(Collectors.toSet());
+    }
+
+    private CompletableFuture<Set<String>> terminologiesMatchingOrganizationsAsync(Collection<String> privilegedOrganizations) {
+        if (privilegedOrganizations.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptySet());
+        }
+        Set<String> organizations = Set.copyOf(privilegedOrganizations);
+        Set<String> cached = matchingTerminologiesCache.getIfPresent(organizations);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long generation = matchingTerminologiesGeneration.get();
+        SearchRequest sr = terminologyQueryFactory.createMatchingTerminologiesQuery(organizations);
+        logger.debug("terminologiesMatchingOrganizations query: " + sr.toString());
+        return esRestClient.searchAsync(sr, RequestOptions.DEFAULT)
+            .thenApplyAsync(response -> {
+                Set<String> terminologies = Collections.unmodifiableSet(terminologyQueryFactory.parseMatchingTerminologiesResponse(response));
+                // do not cache a result read before the index changed
+                if (generation == matchingTerminologiesGeneration.get()) {
+                    matchingTerminologiesCache.put(organizations, terminologies);
+                }
+                return terminologies;
+            }, searchExecutor)
+            .exceptionally(e -> {
+                logger.error("Failed to resolve terminologies based on contributors", e);
+                return Collections.emptySet();
+            });
     }
 }
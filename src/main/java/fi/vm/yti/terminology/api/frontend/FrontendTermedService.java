@@ -1,10 +1,12 @@
 package fi.vm.yti.terminology.api.frontend;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import fi.vm.yti.security.AuthenticatedUserProvider;
 import fi.vm.yti.security.YtiUser;
 import fi.vm.yti.terminology.api.TermedRequester;
@@ -14,6 +16,7 @@ import fi.vm.yti.terminology.api.exception.NodeNotFoundException;
 import fi.vm.yti.terminology.api.exception.VocabularyNotFoundException;
 import fi.vm.yti.terminology.api.frontend.searchdto.CreateVersionDTO;
 import fi.vm.yti.terminology.api.frontend.searchdto.CreateVersionResponse;
+import fi.vm.yti.terminology.api.index.VocabularyIndexChangedEvent;
 import fi.vm.yti.terminology.api.migration.DomainIndex;
 import fi.vm.yti.terminology.api.model.termed.*;
 import fi.vm.yti.terminology.api.security.AuthorizationManager;
@@ -27,12 +30,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -56,23 +62,28 @@ public class FrontendTermedService {
 
     private static final Pattern UUID_PATTERN = Pattern
             .compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
-    private static final Object USER_LOCK = new Object();
+    private static final String VOCABULARY_LIST_KEY = "vocabularies";
 
     private final TermedRequester termedRequester;
-    private final FrontendGroupManagementService groupManagementService;
+    private final UserDisplayNameService userDisplayNameService;
     private final AuthenticatedUserProvider userProvider;
     private final AuthorizationManager authorizationManager;
     private final UriProperties uriProperties;
 
     private final Cache<String, JsonNode> nodeListCache;
+    private final Cache<String, VocabularyList> vocabularyListCache;
+    private final Cache<String, Boolean> knownTermedUsers;
+    private final AtomicLong vocabularyListGeneration = new AtomicLong();
 
     @Autowired
-    public FrontendTermedService(TermedRequester termedRequester, FrontendGroupManagementService groupManagementService,
+    public FrontendTermedService(TermedRequester termedRequester, UserDisplayNameService userDisplayNameService,
             AuthenticatedUserProvider userProvider, AuthorizationManager authorizationManager,
             UriProperties uriProperties,
-            @Value("${termed.cache.expiration:1800}") Long cacheExpireTime) {
+            @Value("${termed.cache.expiration:1800}") Long cacheExpireTime,
+            @Value("${termed.cache.vocabularyList.expiration:300}") Long vocabularyListExpireTime,
+            @Value("${termed.cache.users.expiration:3600}") Long usersExpireTime) {
         this.termedRequester = termedRequester;
-        this.groupManagementService = groupManagementService;
+        this.userDisplayNameService = userDisplayNameService;
         this.userProvider = userProvider;
         this.authorizationManager = authorizationManager;
         this.uriProperties = uriProperties;
@@ -81,6 +92,16 @@ public class FrontendTermedService {
                 .expireAfterWrite(cacheExpireTime, TimeUnit.SECONDS)
                 .maximumSize(1000)
                 .build();
+
+        this.vocabularyListCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(vocabularyListExpireTime, TimeUnit.SECONDS)
+                .maximumSize(1)
+                .build();
+
+        this.knownTermedUsers = CacheBuilder.newBuilder()
+                .expireAfterWrite(usersExpireTime, TimeUnit.SECONDS)
+                .maximumSize(10000)
+                .build();
     }
 
     public boolean isNamespaceInUse(String prefix) {
@@ -123,24 +144,56 @@ public class FrontendTermedService {
         if (result.size() == 0) {
             throw new NodeNotFoundException(graphId, asList(NodeType.Vocabulary, NodeType.TerminologicalVocabulary));
         } else {
-            return userNameToDisplayName(result.get(0), new UserIdToDisplayNameMapper(),
-                    authorizationManager.isUserPartOfOrganization(graphId));
+            return withUserDisplayNames(result.get(0), authorizationManager.isUserPartOfOrganization(graphId));
         }
     }
 
     @NotNull JsonNode getVocabularyList(boolean incomplete) {
 
-        if(userProvider.getUser() != null){ 
-            System.err.println("getVocabularyList:"+userProvider.getUser().getUsername() );
-        }
-        List<UUID> orgList = new ArrayList<>();
+        VocabularyList vocabularies = getVocabularyListSnapshot();
 
         YtiUser user = userProvider.getUser();
-        // Resolve current organizations for filtering
-        Map<UUID,?> rolesAndOrgs = user.getRolesInOrganizations();
-        rolesAndOrgs.forEach((k,v)->{
-            orgList.add(k);
-        });
+        // Super-user sees all
+        if (user.isSuperuser()) {
+            return vocabularies.nodes;
+        }
+
+        // normal users see INCOMPLETE vocabularies only of their own organizations
+        Set<UUID> organizations = incomplete ? user.getRolesInOrganizations().keySet() : emptySet();
+        ArrayNode result = JsonNodeFactory.instance.arrayNode(vocabularies.entries.size());
+        for (VocabularyListEntry entry : vocabularies.entries) {
+            if (!entry.incomplete || entry.contributors.stream().anyMatch(organizations::contains)) {
+                result.add(entry.node);
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Dropped INCOMPLETE vocabulary " + entry.node.get("id"));
+            }
+        }
+        return result;
+    }
+
+    @EventListener
+    public void onVocabularyIndexChanged(VocabularyIndexChangedEvent event) {
+        // The index follows Termed, a changed vocabulary document means the list read from Termed is stale
+        vocabularyListGeneration.incrementAndGet();
+        vocabularyListCache.invalidateAll();
+    }
+
+    private @NotNull VocabularyList getVocabularyListSnapshot() {
+        VocabularyList cached = vocabularyListCache.getIfPresent(VOCABULARY_LIST_KEY);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = vocabularyListGeneration.get();
+        VocabularyList fetched = fetchVocabularyList();
+        // Not cached if vocabularies changed while the list was being read
+        if (generation == vocabularyListGeneration.get()) {
+            vocabularyListCache.put(VOCABULARY_LIST_KEY, fetched);
+        }
+        return fetched;
+    }
+
+    private @NotNull VocabularyList fetchVocabularyList() {
+
         Parameters params = new Parameters();
         params.add("select", "id");
         params.add("select", "type");
@@ -153,36 +206,22 @@ public class FrontendTermedService {
         params.add("where",
             "type.id:" +  TerminologicalVocabulary );
         params.add("max", "-1");
-        // Execute full search
-        JsonNode rv =  requireNonNull(termedRequester.exchange("/node-trees", GET, params, JsonNode.class));
-        // Super-user sees all
-        if(user.isSuperuser()){
-            return requireNonNull(rv);            
-        }
-        // normal users sees filtered
-        List<JsonNode> nodes = new ArrayList<>();
-
-        for(int x=0;x<rv.size();x++){
-            JsonNode n = rv.get(x);
-            UUID id=UUID.fromString(n.at("/references/contributor/0/id").textValue());
-            String status=n.at("/properties/status/0/value").textValue();            
-            if(status != null && 
-               status.equalsIgnoreCase("INCOMPLETE")) {
-                if(incomplete && 
-                   orgList.contains(id)){
-                    nodes.add(n);
-                } else {
-                    if(logger.isDebugEnabled()){ 
-                        logger.debug("Dropped INCOMPLETE vocabulary "+id.toString());
-                    }
+
+        JsonNode nodes = requireNonNull(termedRequester.exchange("/node-trees", GET, params, JsonNode.class));
+
+        List<VocabularyListEntry> entries = new ArrayList<>(nodes.size());
+        for (JsonNode node : nodes) {
+            String status = node.at("/properties/status/0/value").textValue();
+            Set<UUID> contributors = new HashSet<>();
+            for (JsonNode contributor : node.at("/references/contributor")) {
+                String id = contributor.path("id").textValue();
+                if (id != null && UUID_PATTERN.matcher(id).matches()) {
+                    contributors.add(UUID.fromString(id));
                 }
-            } else {
-                nodes.add(n);
-            }  
+            }
+            entries.add(new VocabularyListEntry(node, "INCOMPLETE".equalsIgnoreCase(status), contributors));
         }
-        rv = null;
-        ObjectMapper mapper = new ObjectMapper();        
-        return requireNonNull(mapper.convertValue(nodes,JsonNode.class));
+        return new VocabularyList(nodes, entries);
     }
 
     public void createVocabulary(UUID templateGraphId, String prefix, GenericDeleteAndSave deleteAndSave, UUID graphId, boolean sync) {
@@ -262,8 +301,7 @@ public class FrontendTermedService {
         if (result.size() == 0) {
             throw new NodeNotFoundException(graphId, conceptId);
         } else {
-            return userNameToDisplayName(result.get(0), new UserIdToDisplayNameMapper(),
-                    authorizationManager.isUserPartOfOrganization(graphId));
+            return withUserDisplayNames(result.get(0), authorizationManager.isUserPartOfOrganization(graphId));
         }
     }
 
@@ -294,8 +332,7 @@ public class FrontendTermedService {
         if (result.size() == 0) {
             throw new NodeNotFoundException(graphId, collectionId);
         } else {
-            return userNameToDisplayName(result.get(0), new UserIdToDisplayNameMapper(),
-                    authorizationManager.isUserPartOfOrganization(graphId));
+            return withUserDisplayNames(result.get(0), authorizationManager.isUserPartOfOrganization(graphId));
         }
     }
 
@@ -589,6 +626,7 @@ public class FrontendTermedService {
     public void flushCache() {
         // for now only for unit tests
         nodeListCache.invalidateAll();
+        vocabularyListCache.invalidateAll();
     }
 
     private Map<String, List<Attribute>> getNewVersionProperties(GenericNode node) {
@@ -699,33 +737,31 @@ public class FrontendTermedService {
             throw new RuntimeException("Logged in user needed for the operation");
         }
 
-        if (findTermedUser(user) == null) {
-            synchronized (USER_LOCK) {
-                if (findTermedUser(user) == null) {
-                    createTermedUser(user, externalUserId);
+        UUID username = externalUserId != null ? externalUserId : user.getId();
+
+        // Concurrent checks of the same user wait for the one in flight, other users are not blocked
+        try {
+            knownTermedUsers.get(username.toString(), () -> {
+                if (findTermedUser(username) == null) {
+                    createTermedUser(username);
                 }
-            }
+                return Boolean.TRUE;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
         }
 
-        if (externalUserId != null) {
-            return externalUserId;
-        } else {
-            return user.getId();
-        }
+        return username;
     }
 
-    private @Nullable TermedUser findTermedUser(YtiUser user) {
-        if (user == null || user.getId() == null) {
-            return null;
-        }
-        Parameters params = Parameters.single("username", user.getId().toString());
+    private @Nullable TermedUser findTermedUser(UUID username) {
+        Parameters params = Parameters.single("username", username.toString());
         return termedRequester.exchange("/users", GET, params, TermedUser.class);
     }
 
-    private void createTermedUser(YtiUser user, UUID externalUserId) {
+    private void createTermedUser(UUID username) {
         Parameters params = Parameters.single("sync", "true");
-        String userIdForTermedUser = externalUserId == null ? user.getId().toString() : externalUserId.toString();
-        TermedUser termedUser = new TermedUser(userIdForTermedUser, "", "ADMIN");
+        TermedUser termedUser = new TermedUser(username.toString(), "", "ADMIN");
         termedRequester.exchange("/users", POST, params, String.class, termedUser);
     }
 
@@ -733,6 +769,14 @@ public class FrontendTermedService {
         return this.uriProperties.getUriHostPathAddress() + prefix + '/';
     }
 
+    private GenericNodeInlined withUserDisplayNames(GenericNodeInlined node, boolean mapUserNames) {
+        UserIdToDisplayNameMapper userIdToDisplayNameMapper = new UserIdToDisplayNameMapper();
+        if (mapUserNames) {
+            userIdToDisplayNameMapper.prefetch(node);
+        }
+        return userNameToDisplayName(node, userIdToDisplayNameMapper, mapUserNames);
+    }
+
     private GenericNodeInlined userNameToDisplayName(GenericNodeInlined node,
                                                      UserIdToDisplayNameMapper userIdToDisplayNameMapper,
                                                      boolean mapUserNames) {
@@ -756,39 +800,59 @@ public class FrontendTermedService {
         return map.entrySet().stream().collect(toMap(Map.Entry::getKey, e -> mapToList(e.getValue(), mapper)));
     }
 
-    private static boolean isUUID(String s) {
-        return UUID_PATTERN.matcher(s).matches();
-    }
-
     private static void addGraphTypeIds(UUID graphId, Parameters params) {
         params.add("graphTypeId", graphId.toString());
         params.add("graphTypeId", DomainIndex.ORGANIZATION_DOMAIN.getGraphId().toString());
         params.add("graphTypeId", DomainIndex.GROUP_DOMAIN.getGraphId().toString());
     }
 
-    // XXX consider cache spanning to multiple requests
+    /**
+     * Display names used within one response, backed by the application wide {@link UserDisplayNameService}.
+     */
     private class UserIdToDisplayNameMapper {
 
         private final Map<String, String> cache = new HashMap<>();
 
-        private String map(String userId) {
-            return cache.computeIfAbsent(userId, this::mapRemote);
+        private void prefetch(GenericNodeInlined node) {
+            Set<String> userIds = new HashSet<>();
+            collectUserIds(node, userIds);
+            userIds.removeAll(cache.keySet());
+            cache.putAll(userDisplayNameService.getDisplayNames(userIds));
         }
 
-        private String mapRemote(String userId) {
+        private void collectUserIds(GenericNodeInlined node, Set<String> userIds) {
+            userIds.add(node.getCreatedBy());
+            userIds.add(node.getLastModifiedBy());
+            node.getReferences().values().forEach(nodes -> nodes.forEach(x -> collectUserIds(x, userIds)));
+            node.getReferrers().values().forEach(nodes -> nodes.forEach(x -> collectUserIds(x, userIds)));
+        }
 
-            if (!isUUID(userId)) {
-                return "";
-            }
+        private String map(String userId) {
+            return cache.computeIfAbsent(userId, userDisplayNameService::getDisplayName);
+        }
+    }
 
-            GroupManagementUser user = groupManagementService.findUser(userId);
+    private static final class VocabularyList {
 
-            if (user != null) {
-                return user.getDisplayName();
-            } else {
-                return "";
-            }
+        private final JsonNode nodes;
+        private final List<VocabularyListEntry> entries;
+
+        private VocabularyList(JsonNode nodes, List<VocabularyListEntry> entries) {
+            this.nodes = nodes;
+            this.entries = entries;
         }
     }
 
+    private static final class VocabularyListEntry {
+
+        private final JsonNode node;
+        private final boolean incomplete;
+        private final Set<UUID> contributors;
+
+        private VocabularyListEntry(JsonNode node, boolean incomplete, Set<UUID> contributors) {
+            this.node = node;
+            this.incomplete = incomplete;
+            this.contributors = contributors;
+        }
+    }
 }
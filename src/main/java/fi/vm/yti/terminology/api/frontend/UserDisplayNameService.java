@@ -0,0 +1,162 @@
+package fi.vm.yti.terminology.api.frontend;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Display names of users shown as creators and modifiers of nodes, cached across requests. Users unknown to
+ * group management are remembered for a shorter time so that they are not looked up on every request either.
+ */
+@Service
+public class UserDisplayNameService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDisplayNameService.class);
+
+    private static final Pattern UUID_PATTERN = Pattern
+            .compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
+
+    private final FrontendGroupManagementService groupManagementService;
+    private final int batchThreshold;
+
+    private final Cache<String, String> displayNames;
+    private final Cache<String, Boolean> unknownUsers;
+
+    private final Counter singleLookups;
+    private final Counter batchLookups;
+
+    @Autowired
+    public UserDisplayNameService(FrontendGroupManagementService groupManagementService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${groupmanagement.userCache.maxSize:10000}") long maxSize,
+                                  @Value("${groupmanagement.userCache.expirationSeconds:3600}") long expirationSeconds,
+                                  @Value("${groupmanagement.userCache.unknownExpirationSeconds:300}") long unknownExpirationSeconds,
+                                  @Value("${groupmanagement.userCache.batchThreshold:5}") int batchThreshold) {
+        this.groupManagementService = groupManagementService;
+        this.batchThreshold = Math.max(1, batchThreshold);
+
+        this.displayNames = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expirationSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.unknownUsers = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(unknownExpirationSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+
+        GuavaCacheMetrics.monitor(meterRegistry, displayNames, "terminology.userDisplayNames");
+        GuavaCacheMetrics.monitor(meterRegistry, unknownUsers, "terminology.unknownUsers");
+        this.singleLookups = Counter.builder("terminology.userDisplayNames.lookups")
+                .description("Users requested from group management")
+                .tag("type", "single")
+                .register(meterRegistry);
+        this.batchLookups = Counter.builder("terminology.userDisplayNames.lookups")
+                .description("Users requested from group management")
+                .tag("type", "batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return display name of the user, or an empty string if the id is not a known user id
+     */
+    public @NotNull String getDisplayName(@Nullable String userId) {
+
+        if (userId == null || !UUID_PATTERN.matcher(userId).matches()) {
+            return "";
+        }
+
+        String cached = displayNames.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        if (unknownUsers.getIfPresent(userId) != null) {
+            return "";
+        }
+
+        singleLookups.increment();
+        GroupManagementUser user = groupManagementService.findUser(userId);
+
+        if (user != null) {
+            displayNames.put(userId, user.getDisplayName());
+            return user.getDisplayName();
+        } else {
+            unknownUsers.put(userId, Boolean.TRUE);
+            return "";
+        }
+    }
+
+    /**
+     * Resolves display names of several users. When at least batchThreshold of them are not cached, all users
+     * are read from group management in one request instead of one request per user.
+     *
+     * @return display names by user id, see {@link #getDisplayName(String)}
+     */
+    public @NotNull Map<String, String> getDisplayNames(@NotNull Collection<String> userIds) {
+
+        Map<String, String> result = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+
+        for (String userId : userIds) {
+            if (userId == null || result.containsKey(userId)) {
+                continue;
+            }
+            String cached = displayNames.getIfPresent(userId);
+            if (cached != null) {
+                result.put(userId, cached);
+            } else if (!UUID_PATTERN.matcher(userId).matches() || unknownUsers.getIfPresent(userId) != null) {
+                result.put(userId, "");
+            } else {
+                uncached.add(userId);
+            }
+        }
+
+        if (uncached.size() >= batchThreshold && loadAllUsers()) {
+            for (String userId : uncached) {
+                String displayName = displayNames.getIfPresent(userId);
+                if (displayName == null) {
+                    unknownUsers.put(userId, Boolean.TRUE);
+                    displayName = "";
+                }
+                result.put(userId, displayName);
+            }
+        } else {
+            uncached.forEach(userId -> result.put(userId, getDisplayName(userId)));
+        }
+
+        return result;
+    }
+
+    private boolean loadAllUsers() {
+        try {
+            batchLookups.increment();
+            List<GroupManagementUser> users = groupManagementService.getUsers();
+            for (GroupManagementUser user : users) {
+                displayNames.put(user.getId().toString(), user.getDisplayName());
+            }
+            logger.debug("Cached display names of " + users.size() + " users");
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Could not read users from group management, looking them up one by one", e);
+            return false;
+        }
+    }
+}
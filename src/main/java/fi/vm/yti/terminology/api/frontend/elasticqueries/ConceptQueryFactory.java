@@ -1,5 +1,6 @@
 package fi.vm.yti.terminology.api.frontend.elasticqueries;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
@@ -20,12 +21,13 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import fi.vm.yti.terminology.api.frontend.searchdto.ConceptDTO;
@@ -44,6 +46,12 @@ public class ConceptQueryFactory {
 
     private static final Logger log = LoggerFactory.getLogger(ConceptQueryFactory.class);
 
+    // Only the fields read into ConceptDTO
+    private static final FetchSourceContext sourceIncludes = new FetchSourceContext(true, new String[]{
+        "id", "uri", "status", "label", "altLabel", "definition", "modified", "narrower", "broader",
+        "vocabulary.id", "vocabulary.status", "vocabulary.uri", "vocabulary.type", "vocabulary.label"
+    }, new String[]{});
+
     private final ObjectMapper objectMapper;
     private final Pattern terminologyCodePattern;
 
@@ -155,7 +163,8 @@ public class ConceptQueryFactory {
 
         SearchSourceBuilder ssb = new SearchSourceBuilder()
             .query(combinedQuery)
-            .size(request.getPageSize() != null ? request.getPageSize().intValue() : 100)
+            .fetchSource(sourceIncludes)
+            .size(pageSize(request))
             .from(request.getPageFrom() != null ? request.getPageFrom().intValue() : 0);
 
         if ("".equals(request.getQuery()) || request.getQuery() == null || request.getSortBy() != null) {
@@ -170,6 +179,10 @@ public class ConceptQueryFactory {
                     .order(sortBy == ConceptSearchRequest.SortBy.PREF_LABEL ? sortDirection.getEsOrder() : SortOrder.ASC)
                     .unmappedType("keyword"));
         }
+        ElasticRequestUtils.addTiebreakSort(ssb);
+        if (request.getContinuationToken() != null && !request.getContinuationToken().isEmpty()) {
+            ElasticRequestUtils.continueAfter(objectMapper, ssb, request.getContinuationToken());
+        }
         SearchRequest sr = new SearchRequest("concepts").source(ssb);
         log.debug("Concept Query request: {}", sr);
         return sr;
@@ -190,78 +203,139 @@ public class ConceptQueryFactory {
                     }
 
                     for (SearchHit hit : hits) {
-                        try {
-                            final JsonNode concept = objectMapper.readTree(hit.getSourceAsString());
-                            final String id = ElasticRequestUtils.getTextValueOrNull(concept, "id");
-                            final String uri = ElasticRequestUtils.getTextValueOrNull(concept, "uri");
-                            final String status = ElasticRequestUtils.getTextValueOrNull(concept, "status");
-                            final Map<String, String> labelMap = ElasticRequestUtils.labelFromKeyValueNode(concept.get("label"));
-                            final Map<String, String> altLabelMap = ElasticRequestUtils.labelFromKeyValueNode(concept.get("altLabel"));
-                            final Map<String, String> definitionMap = ElasticRequestUtils.labelFromKeyValueNode(concept.get("definition"));
-                            final String modifiedString = ElasticRequestUtils.getTextValueOrNull(concept, "modified");
-                            Instant modified = null;
-                            if (modifiedString != null) {
-                                try {
-                                    modified = ZonedDateTime.parse(modifiedString).toInstant();
-                                } catch (Exception e) {
-                                    log.warn("Could not parse modified timestamp", e);
-                                }
-                            }
-                            final List<String> narrower = getIdList(concept, "narrower");
-                            final List<String> broader = getIdList(concept, "broader");
-
-                            TerminologySimpleDTO terminology = null;
-                            final JsonNode terminologyNode = concept.get("vocabulary");
-                            if (terminologyNode != null) {
-                                final String terminologyId = ElasticRequestUtils.getTextValueOrNull(terminologyNode, "id");
-                                final String terminologyStatus = ElasticRequestUtils.getTextValueOrNull(terminologyNode, "status");
-                                final String terminologyUri = ElasticRequestUtils.getTextValueOrNull(terminologyNode, "uri");
-                                final String terminologyType = ElasticRequestUtils.getTextValueOrNull(terminologyNode, "type");
-                                final Map<String, String> terminologyLabelMap = ElasticRequestUtils.labelFromKeyValueNode(terminologyNode.get("label"));
-                                String terminologyCode = null;
-                                if (terminologyUri != null) {
-                                    Matcher m = terminologyCodePattern.matcher(terminologyUri);
-                                    if (m.matches()) {
-                                        terminologyCode = m.group(1);
-                                    }
-                                }
-                                terminology = new TerminologySimpleDTO(terminologyId, terminologyCode, terminologyUri, terminologyStatus, terminologyType, terminologyLabelMap);
-                            }
-
+                        try (JsonParser parser = ElasticRequestUtils.sourceParser(objectMapper, hit)) {
+                            final ConceptDTO concept = parseConcept(parser);
                             if (highlightPattern != null) {
-                                ElasticRequestUtils.highlightLabel(labelMap, highlightPattern);
+                                ElasticRequestUtils.highlightLabel(concept.getLabel(), highlightPattern);
                             }
-
-                            concepts.add(new ConceptDTO(id, uri, status, labelMap, altLabelMap, definitionMap, modified, narrower, broader, terminology));
+                            concepts.add(concept);
                         } catch (Exception e) {
                             log.error("Error while parsing a concept hit", e);
                         }
                     }
                 }
-                return new ConceptSearchResponse(total, request.getPageFrom() != null ? request.getPageFrom().intValue() : 0, concepts);
+                final ConceptSearchResponse ret = new ConceptSearchResponse(total, request.getPageFrom() != null ? request.getPageFrom().intValue() : 0, concepts);
+                if (hits != null && hits.length > 0) {
+                    ret.setContinuationToken(ElasticRequestUtils.continuationToken(objectMapper,
+                        hits[hits.length - 1].getSortValues(), hits.length, pageSize(request)));
+                }
+                return ret;
             }
         }
         return new ConceptSearchResponse();
     }
 
-    private List<String> getIdList(JsonNode node,
-                                   String field) {
-        List<String> ret = null;
-        JsonNode arrayNode = node.get(field);
-        if (arrayNode != null && arrayNode.isArray() && arrayNode.size() > 0) {
-            ret = new ArrayList<>();
-            for (JsonNode idNode : arrayNode) {
-                String id = idNode.textValue();
-                if (id != null && !id.isEmpty()) {
-                    ret.add(id);
-                }
+    private ConceptDTO parseConcept(JsonParser parser) throws IOException {
+        String id = null;
+        String uri = null;
+        String status = null;
+        Map<String, String> labelMap = null;
+        Map<String, String> altLabelMap = null;
+        Map<String, String> definitionMap = null;
+        Instant modified = null;
+        List<String> narrower = null;
+        List<String> broader = null;
+        TerminologySimpleDTO terminology = null;
+
+        String field;
+        while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+            switch (field) {
+                case "id":
+                    id = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "uri":
+                    uri = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "status":
+                    status = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "label":
+                    labelMap = ElasticRequestUtils.labelFromKeyValueObject(parser);
+                    break;
+                case "altLabel":
+                    altLabelMap = ElasticRequestUtils.labelFromKeyValueObject(parser);
+                    break;
+                case "definition":
+                    definitionMap = ElasticRequestUtils.labelFromKeyValueObject(parser);
+                    break;
+                case "modified":
+                    modified = parseModified(ElasticRequestUtils.textValueOrNull(parser));
+                    break;
+                case "narrower":
+                    narrower = ElasticRequestUtils.sortedTextValues(parser);
+                    break;
+                case "broader":
+                    broader = ElasticRequestUtils.sortedTextValues(parser);
+                    break;
+                case "vocabulary":
+                    terminology = parseTerminology(parser);
+                    break;
+                default:
+                    parser.skipChildren();
             }
-            ret.sort(String::compareTo);
         }
-        if (ret != null && ret.isEmpty()) {
+
+        return new ConceptDTO(id, uri, status, labelMap, altLabelMap, definitionMap, modified, narrower, broader, terminology);
+    }
+
+    private TerminologySimpleDTO parseTerminology(JsonParser parser) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            parser.skipChildren();
             return null;
         }
-        return ret;
+
+        String terminologyId = null;
+        String terminologyStatus = null;
+        String terminologyUri = null;
+        String terminologyType = null;
+        Map<String, String> terminologyLabelMap = null;
+
+        String field;
+        while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+            switch (field) {
+                case "id":
+                    terminologyId = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "status":
+                    terminologyStatus = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "uri":
+                    terminologyUri = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "type":
+                    terminologyType = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "label":
+                    terminologyLabelMap = ElasticRequestUtils.labelFromKeyValueObject(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        String terminologyCode = null;
+        if (terminologyUri != null) {
+            Matcher m = terminologyCodePattern.matcher(terminologyUri);
+            if (m.matches()) {
+                terminologyCode = m.group(1);
+            }
+        }
+        return new TerminologySimpleDTO(terminologyId, terminologyCode, terminologyUri, terminologyStatus, terminologyType, terminologyLabelMap);
+    }
+
+    private Instant parseModified(String modifiedString) {
+        if (modifiedString != null) {
+            try {
+                return ZonedDateTime.parse(modifiedString).toInstant();
+            } catch (Exception e) {
+                log.warn("Could not parse modified timestamp", e);
+            }
+        }
+        return null;
+    }
+
+    private int pageSize(ConceptSearchRequest request) {
+        return request.getPageSize() != null ? request.getPageSize().intValue() : 100;
     }
 
     @FunctionalInterface
@@ -74,18 +74,11 @@ public class CountQueryFactory {
     }
 
     private TermsAggregationBuilder createStatusAggregation() {
-        String scriptSource = "doc.containsKey('status') ? doc.status : params._source.properties.status[0].value";
-        Map<String, Object> params = new HashMap<>(16);
-        Script script = new Script(
-                Script.DEFAULT_SCRIPT_TYPE,
-                "painless",
-                scriptSource,
-                params);
-
+        // status keyword is written to both concept and vocabulary documents by the indexer
         return AggregationBuilders
                 .terms("statusagg")
                 .size(300)
-                .script(script);
+                .field("status");
     }
 
     private TermsAggregationBuilder createIndexAggregation() {
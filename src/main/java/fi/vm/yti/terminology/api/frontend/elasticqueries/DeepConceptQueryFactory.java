@@ -1,5 +1,6 @@
 package fi.vm.yti.terminology.api.frontend.elasticqueries;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,7 +30,7 @@ import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import fi.vm.yti.terminology.api.frontend.searchdto.ConceptSimpleDTO;
@@ -42,7 +43,7 @@ public class DeepConceptQueryFactory {
 
     private static final Logger log = LoggerFactory.getLogger(DeepConceptQueryFactory.class);
 
-    private static final FetchSourceContext sourceIncludes = new FetchSourceContext(true, new String[]{ "id", "uri", "status", "label", "vocabulary" }, new String[]{});
+    private static final FetchSourceContext sourceIncludes = new FetchSourceContext(true, new String[]{ "id", "uri", "status", "label" }, new String[]{});
     private static final Script topHitScript = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, "_score", Collections.emptyMap());
 
     private final ObjectMapper objectMapper;
@@ -135,16 +136,11 @@ public class DeepConceptQueryFactory {
                     ret.put(terminologyId, Collections.singletonList(hitList));
 
                     for (SearchHit hit : hits.getHits()) {
-                        JsonNode concept = objectMapper.readTree(hit.getSourceAsString());
-                        String conceptId = ElasticRequestUtils.getTextValueOrNull(concept, "id");
-                        String conceptUri = ElasticRequestUtils.getTextValueOrNull(concept, "uri");
-                        String conceptStatus = ElasticRequestUtils.getTextValueOrNull(concept, "status");
-                        Map<String, String> labelMap = ElasticRequestUtils.labelFromKeyValueNode(concept.get("label"));
-
-                        ElasticRequestUtils.highlightLabel(labelMap, highlightPattern);
-
-                        ConceptSimpleDTO dto = new ConceptSimpleDTO(conceptId, conceptUri, conceptStatus, labelMap);
-                        topHits.add(dto);
+                        try (JsonParser parser = ElasticRequestUtils.sourceParser(objectMapper, hit)) {
+                            ConceptSimpleDTO dto = parseConcept(parser);
+                            ElasticRequestUtils.highlightLabel(dto.getLabel(), highlightPattern);
+                            topHits.add(dto);
+                        }
                     }
                 }
             }
@@ -153,4 +149,32 @@ public class DeepConceptQueryFactory {
         }
         return ret;
     }
+
+    private ConceptSimpleDTO parseConcept(JsonParser parser) throws IOException {
+        String conceptId = null;
+        String conceptUri = null;
+        String conceptStatus = null;
+        Map<String, String> labelMap = null;
+
+        String field;
+        while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+            switch (field) {
+                case "id":
+                    conceptId = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "uri":
+                    conceptUri = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "status":
+                    conceptStatus = ElasticRequestUtils.textValueOrNull(parser);
+                    break;
+                case "label":
+                    labelMap = ElasticRequestUtils.labelFromKeyValueObject(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new ConceptSimpleDTO(conceptId, conceptUri, conceptStatus, labelMap);
+    }
 }
@@ -1,6 +1,8 @@
 package fi.vm.yti.terminology.api.frontend.elasticqueries;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 
 import fi.vm.yti.terminology.api.exception.InvalidQueryException;
@@ -8,18 +10,21 @@ import fi.vm.yti.terminology.api.frontend.Status;
 import fi.vm.yti.terminology.api.frontend.TerminologyType;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.document.DocumentField;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import fi.vm.yti.terminology.api.frontend.searchdto.DeepSearchHitListDTO;
@@ -37,6 +42,17 @@ public class TerminologyQueryFactory {
     public static final int DEFAULT_PAGE_SIZE = 10;
     public static final int DEFAULT_PAGE_FROM = 0;
 
+    private static final int MATCHING_TERMINOLOGIES_MAX = 1000;
+    private static final String TERMINOLOGY_ID_FIELD = "type.graph.id.keyword";
+
+    // Only the fields read into TerminologyDTO
+    private static final FetchSourceContext sourceIncludes = new FetchSourceContext(true, new String[]{
+        "type.graph.id", "code", "uri",
+        "properties.status", "properties.terminologyType", "properties.prefLabel", "properties.description",
+        "references.inGroup.id", "references.inGroup.properties.prefLabel",
+        "references.contributor.id", "references.contributor.properties.prefLabel"
+    }, new String[]{});
+
     private ObjectMapper objectMapper;
 
     public TerminologyQueryFactory(ObjectMapper objectMapper) {
@@ -85,6 +101,7 @@ public class TerminologyQueryFactory {
                                       Set<String> privilegedOrganizations,
                                       String prefLang) {
         SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+            .fetchSource(sourceIncludes)
             .from(pageFrom)
             .size(pageSize);
 
@@ -226,31 +243,18 @@ public class TerminologyQueryFactory {
         return sr;
     }
 
-    public SearchRequest createMatchingTerminologiesQuery(Set<String> privilegedOrganizations) {
-        return createMatchingTerminologiesQuery(privilegedOrganizations, null);
-    }
-
-    public SearchRequest createMatchingTerminologiesQuery(final Collection<String> privilegedOrganizations,
-                                                          final Collection<String> limitToThese) {
-        // TODO: When terminology node ID starts to be "the" id then fetchSource(false) and modify parsing, and change id limit to terms query.
+    /**
+     * Graph ids of the terminologies contributed by any of the organizations, fetched from doc values only.
+     */
+    public SearchRequest createMatchingTerminologiesQuery(final Collection<String> privilegedOrganizations) {
         final QueryBuilder contribQuery = QueryBuilders.termsQuery("references.contributor.id", privilegedOrganizations);
-        QueryBuilder finalQuery = contribQuery;
-        if (limitToThese != null && !limitToThese.isEmpty()) {
-            // QueryBuilders.termsQuery("id", limitToThese);
-            final BoolQueryBuilder limitQuery = QueryBuilders.boolQuery().minimumShouldMatch(1);
-            for (String id : limitToThese) {
-                limitQuery.should(QueryBuilders.matchQuery("type.graph.id", id));
-            }
-            finalQuery = QueryBuilders.boolQuery()
-                .must(contribQuery)
-                .must(limitQuery);
-        }
 
         SearchRequest sr = new SearchRequest("vocabularies")
             .source(new SearchSourceBuilder()
-                .size(1000)
-                .query(finalQuery));
-        //.fetchSource(false));
+                .size(MATCHING_TERMINOLOGIES_MAX)
+                .query(QueryBuilders.constantScoreQuery(contribQuery))
+                .fetchSource(false)
+                .docValueField(TERMINOLOGY_ID_FIELD));
         //log.debug("createMatchingTerminologiesQuery Query request: " + sr.toString());
         return sr;
     }
@@ -263,18 +267,18 @@ public class TerminologyQueryFactory {
                 .source(new SearchSourceBuilder()
                         .size(1)
                         .query(query)
+                        .fetchSource(sourceIncludes)
                 );
     }
 
     public Set<String> parseMatchingTerminologiesResponse(SearchResponse response) {
         Set<String> ret = new HashSet<>();
         for (SearchHit hit : response.getHits()) {
-            try {
-                JsonNode terminology = objectMapper.readTree(hit.getSourceAsString());
-                //ret.add(hit.getId());
-                ret.add(terminology.get("type").get("graph").get("id").textValue());
-            } catch (Exception e) {
-                log.error("Cannot parse matching terminologies response", e);
+            DocumentField terminologyId = hit.field(TERMINOLOGY_ID_FIELD);
+            if (terminologyId != null && terminologyId.getValue() != null) {
+                ret.add(terminologyId.getValue().toString());
+            } else {
+                log.error("Cannot parse matching terminologies response, no terminology id in hit " + hit.getId());
             }
         }
         return ret;
@@ -290,49 +294,131 @@ public class TerminologyQueryFactory {
             ret.setTotalHitCount(hits.getTotalHits());
             Pattern highlightPattern = ElasticRequestUtils.createHighlightPattern(request.getQuery());
             for (SearchHit hit : hits) {
-                JsonNode terminology = objectMapper.readTree(hit.getSourceAsString());
-                // NOTE: terminology.get("id") would make more sense, but currently concepts contain only graph id => use it here also.
-                String terminologyId = terminology.get("type").get("graph").get("id").textValue();
-                String terminologyCode = ElasticRequestUtils.getTextValueOrNull(terminology, "code");
-                String terminologyUri = ElasticRequestUtils.getTextValueOrNull(terminology, "uri");
-
-                JsonNode properties = terminology.get("properties");
-                JsonNode statusArray = properties.get("status");
-                String terminologyStatus = statusArray != null ? (statusArray.has(0) ? statusArray.get(0).get("value").textValue() : "DRAFT") : "DRAFT";
-                JsonNode terminologyTypeArray = properties.get("terminologyType");
-                String terminologyType = terminologyTypeArray != null ? (terminologyTypeArray.has(0) ? terminologyTypeArray.get(0).get("value").textValue() : "TERMINOLOGICAL_VOCABULARY") : "TERMINOLOGICAL_VOCABULARY";
-                Map<String, String> labelMap = ElasticRequestUtils.labelFromLangValueArray(properties.get("prefLabel"));
-                Map<String, String> descriptionMap = ElasticRequestUtils.labelFromLangValueArray(properties.get("description"));
-
-                ElasticRequestUtils.highlightLabel(labelMap, highlightPattern);
-
-                JsonNode references = terminology.get("references");
-                JsonNode domainArray = references.get("inGroup");
-                JsonNode contributorArray = references.get("contributor");
-                List<InformationDomainDTO> domains = new ArrayList<>();
-                List<OrganizationDTO> contributors = new ArrayList<>();
-                if (domainArray != null) {
-                    for (JsonNode domain : domainArray) {
-                        String domainId = domain.get("id").textValue();
-                        Map<String, String> domainLabel = ElasticRequestUtils.labelFromLangValueArray(domain.get("properties").get("prefLabel"));
-                        domains.add(new InformationDomainDTO(domainId, domainLabel));
+                try (JsonParser parser = ElasticRequestUtils.sourceParser(objectMapper, hit)) {
+                    TerminologyDTO terminology = parseTerminology(parser);
+                    ElasticRequestUtils.highlightLabel(terminology.getLabel(), highlightPattern);
+                    terminologies.add(terminology);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Cannot parse terminology query response", e);
+        }
+        return ret;
+    }
+
+    private TerminologyDTO parseTerminology(JsonParser parser) throws IOException {
+        String terminologyId = null;
+        String terminologyCode = null;
+        String terminologyUri = null;
+        String terminologyStatus = null;
+        String terminologyType = null;
+        Map<String, String> labelMap = null;
+        Map<String, String> descriptionMap = null;
+        List<InformationDomainDTO> domains = new ArrayList<>();
+        List<OrganizationDTO> contributors = new ArrayList<>();
+
+        String field;
+        while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+            if ("type".equals(field) && parser.isExpectedStartObjectToken()) {
+                // NOTE: terminology id would make more sense, but currently concepts contain only graph id => use it here also.
+                while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+                    if ("graph".equals(field) && parser.isExpectedStartObjectToken()) {
+                        terminologyId = parseId(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if ("code".equals(field)) {
+                terminologyCode = ElasticRequestUtils.textValueOrNull(parser);
+            } else if ("uri".equals(field)) {
+                terminologyUri = ElasticRequestUtils.textValueOrNull(parser);
+            } else if ("properties".equals(field) && parser.isExpectedStartObjectToken()) {
+                while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+                    switch (field) {
+                        case "status":
+                            terminologyStatus = ElasticRequestUtils.firstValueOrNull(parser);
+                            break;
+                        case "terminologyType":
+                            terminologyType = ElasticRequestUtils.firstValueOrNull(parser);
+                            break;
+                        case "prefLabel":
+                            labelMap = ElasticRequestUtils.labelFromLangValueArray(parser);
+                            break;
+                        case "description":
+                            descriptionMap = ElasticRequestUtils.labelFromLangValueArray(parser);
+                            break;
+                        default:
+                            parser.skipChildren();
                     }
                 }
-                if (contributorArray != null) {
-                    for (JsonNode contributor : contributorArray) {
-                        String orgId = contributor.get("id").textValue();
-                        Map<String, String> orgLabel = ElasticRequestUtils.labelFromLangValueArray(contributor.get("properties").get("prefLabel"));
-                        contributors.add(new OrganizationDTO(orgId, orgLabel));
+            } else if ("references".equals(field) && parser.isExpectedStartObjectToken()) {
+                while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+                    if ("inGroup".equals(field)) {
+                        parseReferences(parser, (id, label) -> domains.add(new InformationDomainDTO(id, label)));
+                    } else if ("contributor".equals(field)) {
+                        parseReferences(parser, (id, label) -> contributors.add(new OrganizationDTO(id, label)));
+                    } else {
+                        parser.skipChildren();
                     }
                 }
+            } else {
+                parser.skipChildren();
+            }
+        }
 
-                terminologies.add(new TerminologyDTO(terminologyId, terminologyCode, terminologyUri, terminologyStatus, terminologyType, labelMap, descriptionMap, domains, contributors));
+        return new TerminologyDTO(terminologyId, terminologyCode, terminologyUri,
+                terminologyStatus != null ? terminologyStatus : "DRAFT",
+                terminologyType != null ? terminologyType : "TERMINOLOGICAL_VOCABULARY",
+                labelMap, descriptionMap, domains, contributors);
+    }
 
+    private String parseId(JsonParser parser) throws IOException {
+        String id = null;
+        String field;
+        while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+            if ("id".equals(field)) {
+                id = ElasticRequestUtils.textValueOrNull(parser);
+            } else {
+                parser.skipChildren();
             }
-        } catch (Exception e) {
-            log.error("Cannot parse terminology query response", e);
         }
-        return ret;
+        return id;
+    }
+
+    /**
+     * Reads an array of referenced nodes, passing the id and preferred label of each to the consumer.
+     */
+    private void parseReferences(JsonParser parser,
+                                 BiConsumer<String, Map<String, String>> consumer) throws IOException {
+        if (!parser.isExpectedStartArrayToken()) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (!parser.isExpectedStartObjectToken()) {
+                parser.skipChildren();
+                continue;
+            }
+            String id = null;
+            Map<String, String> label = null;
+            String field;
+            while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+                if ("id".equals(field)) {
+                    id = ElasticRequestUtils.textValueOrNull(parser);
+                } else if ("properties".equals(field) && parser.isExpectedStartObjectToken()) {
+                    while ((field = ElasticRequestUtils.nextField(parser)) != null) {
+                        if ("prefLabel".equals(field)) {
+                            label = ElasticRequestUtils.labelFromLangValueArray(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            consumer.accept(id, label);
+        }
     }
 
     private int pageSize(TerminologySearchRequest request) {
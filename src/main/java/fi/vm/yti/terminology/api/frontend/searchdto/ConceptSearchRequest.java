@@ -105,6 +105,7 @@ public class ConceptSearchRequest {
     private String sortLanguage;
     private Integer pageSize;
     private Integer pageFrom;
+    private String continuationToken;
     private Boolean highlight;
     private Options options;
 
@@ -204,6 +205,17 @@ public class ConceptSearchRequest {
         this.pageFrom = pageFrom;
     }
 
+    /**
+     * Token from the previous page of the same search, the next page is then read after it instead of at pageFrom.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(final String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+
     public Boolean getHighlight() {
         return highlight;
     }
@@ -235,6 +247,7 @@ public class ConceptSearchRequest {
             ", sortLanguage='" + sortLanguage + '\'' +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", continuationToken='" + continuationToken + '\'' +
             ", highlight=" + highlight +
             ", options=" + options +
             '}';
@@ -8,6 +8,7 @@ public class ConceptSearchResponse {
     private long totalHitCount;
     private int resultStart;
     private List<ConceptDTO> concepts;
+    private String continuationToken;
 
     public ConceptSearchResponse() {
         this.totalHitCount = 0;
@@ -46,4 +47,15 @@ public class ConceptSearchResponse {
     public void setConcepts(final List<ConceptDTO> concepts) {
         this.concepts = concepts;
     }
+
+    /**
+     * Token to request the page following this one with, null on the last page.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(final String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
 }
@@ -112,7 +112,7 @@ public class ExportController {
     @Operation(summary = "Export certain node types", description = "Export requested node types in stated format from a terminology")
     @ApiResponse(responseCode = "200", description = "Requested nodes exported in the requested format")
     @GetMapping(path = "/{terminologyID}/type/{nodeType}", produces = { APPLICATION_JSON_VALUE, "application/rdf+xml", "text/turtle" })
-    ResponseEntity<String> export(
+    ResponseEntity<?> export(
         @Parameter(description = "Terminology identifier (UUID or prefix)") @PathVariable("terminologyID") String terminologyId,
         @Parameter(description = "Type of requested nodes. (Concept, Collection, Term)", example = "Concept") @PathVariable("nodeType") String nodeType,
         @Parameter(description = "Export format JSON, RDF, TURTLE.", example = "JSON") @RequestParam String format) {
@@ -131,7 +131,7 @@ public class ExportController {
             id = null;
         }
 
-        ResponseEntity<String> re = null;
+        ResponseEntity<?> re = null;
         // Id resolved, go fetch data
         if (id != null) {
             if (logger.isDebugEnabled()) {
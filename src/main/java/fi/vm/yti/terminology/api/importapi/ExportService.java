@@ -5,6 +5,7 @@ import static org.springframework.http.HttpMethod.GET;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -29,13 +30,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.jms.annotation.EnableJms;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import fi.vm.yti.terminology.api.TermedContentType;
 import fi.vm.yti.terminology.api.TermedRequester;
+import fi.vm.yti.terminology.api.TermedResponseBody;
 import fi.vm.yti.terminology.api.config.UriProperties;
-import fi.vm.yti.terminology.api.util.JsonUtils;
 import fi.vm.yti.terminology.api.util.Parameters;
 
 @Service
@@ -98,22 +101,6 @@ public class ExportService {
         return requireNonNull(rv);
     }
 
-    @NotNull
-    JsonNode getVocabulary(UUID id, String nodeTypes) {
-        /*
-         * https://sanastot.dev.yti.cloud.vrk.fi/termed-api/graphs/5b3eb5d7-0239-484d-8515-
-         * bc4b8cb42e7e/node-trees?select=*,references.prefLabelXl:1&where=type.id:
-         * Concept%20OR%20type.id:Collection&max=-1
-         * 
-         */
-
-        Parameters params = constructVocabularyTypeQuery(nodeTypes);
-        String path = "/graphs/" + id.toString() + "/node-trees";
-        // Execute full search
-        JsonNode rv = requireNonNull(termedRequester.exchange(path, GET, params, JsonNode.class));
-        return requireNonNull(rv);
-    }
-
     /**
      * Get concepts of given vocabulary id but select only id, type and uri.
      */
@@ -126,54 +113,6 @@ public class ExportService {
         return requireNonNull(rv);
     }
 
-    @NotNull
-    String getFullVocabularyRDF(UUID id) {
-        Parameters params = this.constructFullVocabularyQuery();
-        // Get XML-document back
-        params.add("Content-Type", TermedContentType.RDF_XML.getContentType());
-        String path = "/graphs/" + id.toString() + "/node-trees";
-        // Execute full search
-        String rv = requireNonNull(
-                termedRequester.exchange(path, GET, params, String.class, TermedContentType.RDF_XML));
-        return requireNonNull(rv);
-    }
-
-    @NotNull
-    String getVocabularyRDF(UUID id, String nodeTypes) {
-        Parameters params = constructVocabularyTypeQuery(nodeTypes);
-        // Get XML-document back
-        params.add("Content-Type", TermedContentType.RDF_XML.getContentType());
-        String path = "/graphs/" + id.toString() + "/node-trees";
-        // Execute full search
-        String rv = requireNonNull(
-                termedRequester.exchange(path, GET, params, String.class, TermedContentType.RDF_XML));
-        return requireNonNull(rv);
-    }
-
-    @NotNull
-    String getFullVocabularyTXT(UUID id) {
-        Parameters params = this.constructFullVocabularyQuery();
-        // Get XML-document back
-        params.add("Content-Type", TermedContentType.RDF_TURTLE.getContentType());
-        String path = "/graphs/" + id.toString() + "/node-trees";
-        // Execute full search
-        String rv = requireNonNull(
-                termedRequester.exchange(path, GET, params, String.class, TermedContentType.RDF_TURTLE));
-        return requireNonNull(rv);
-    }
-
-    @NotNull
-    String getVocabularyTXT(UUID id, String nodeTypes) {
-        Parameters params = this.constructVocabularyTypeQuery(nodeTypes);
-        // Get XML-document back
-        params.add("Content-Type", TermedContentType.RDF_TURTLE.getContentType());
-        String path = "/graphs/" + id.toString() + "/node-trees";
-        // Execute full search
-        String rv = requireNonNull(
-                termedRequester.exchange(path, GET, params, String.class, TermedContentType.RDF_TURTLE));
-        return requireNonNull(rv);
-    }
-
     /**
      * Get export data in JSON format and create Excel from it.
      */
@@ -231,32 +170,28 @@ public class ExportService {
         return result;
     }
 
-    ResponseEntity<String> getJSON(UUID vocabularyId) {
-        return handleJSON(getFullVocabulary(vocabularyId));
+    ResponseEntity<StreamingResponseBody> getJSON(UUID vocabularyId) {
+        return streamExport(vocabularyId, constructFullVocabularyQuery(), TermedContentType.JSON);
     }
 
-    ResponseEntity<String> getJSON(UUID vocabularyId, String nodeTypes) {
-        return handleJSON(getVocabulary(vocabularyId, nodeTypes));
+    ResponseEntity<StreamingResponseBody> getJSON(UUID vocabularyId, String nodeTypes) {
+        return streamExport(vocabularyId, constructVocabularyTypeQuery(nodeTypes), TermedContentType.JSON);
     }
 
-    ResponseEntity<String> getRDF(UUID vocabularyId) {
-        String response = getFullVocabularyRDF(vocabularyId);
-        return buildOkResponse(response, TermedContentType.RDF_XML);
+    ResponseEntity<StreamingResponseBody> getRDF(UUID vocabularyId) {
+        return streamExport(vocabularyId, constructFullVocabularyQuery(), TermedContentType.RDF_XML);
     }
 
-    ResponseEntity<String> getRDF(UUID vocabularyId, String nodeType) {
-        String response = getVocabularyRDF(vocabularyId, nodeType);
-        return buildOkResponse(response, TermedContentType.RDF_XML);
+    ResponseEntity<StreamingResponseBody> getRDF(UUID vocabularyId, String nodeType) {
+        return streamExport(vocabularyId, constructVocabularyTypeQuery(nodeType), TermedContentType.RDF_XML);
     }
 
-    ResponseEntity<String> getTXT(UUID vocabularyId) {
-        String response = getFullVocabularyTXT(vocabularyId);
-        return buildOkResponse(response, TermedContentType.RDF_TURTLE);
+    ResponseEntity<StreamingResponseBody> getTXT(UUID vocabularyId) {
+        return streamExport(vocabularyId, constructFullVocabularyQuery(), TermedContentType.RDF_TURTLE);
     }
 
-    ResponseEntity<String> getTXT(UUID vocabularyId, String nodeType) {
-        String response = getVocabularyTXT(vocabularyId, nodeType);
-        return buildOkResponse(response, TermedContentType.RDF_TURTLE);
+    ResponseEntity<StreamingResponseBody> getTXT(UUID vocabularyId, String nodeType) {
+        return streamExport(vocabularyId, constructVocabularyTypeQuery(nodeType), TermedContentType.RDF_TURTLE);
     }
 
     /**
@@ -286,26 +221,52 @@ public class ExportService {
         return buildExcelResponse(workbook, filename);
     }
 
-    private ResponseEntity<String> handleJSON(JsonNode response) {
-        if (response == null || response.isNull()) {
-            return buildResponse("null", TermedContentType.JSON, HttpStatus.NOT_FOUND);
+    /**
+     * Streams the export from Termed straight to the response output. JSON is pretty printed by Termed.
+     * The first chunk of the export is read before the response is committed, so that a missing graph,
+     * an empty JSON export and Termed errors still get an error status.
+     */
+    private ResponseEntity<StreamingResponseBody> streamExport(UUID vocabularyId,
+                                                               Parameters params,
+                                                               TermedContentType contentType) {
+        MediaType mediaType = MediaType.valueOf(contentType.getContentType());
+
+        if (contentType == TermedContentType.JSON) {
+            params.add("pretty", "true");
+        } else {
+            params.add("Content-Type", contentType.getContentType());
+        }
+
+        String path = "/graphs/" + vocabularyId + "/node-trees";
+        ClientHttpResponse response = termedRequester.open(path, GET, params, contentType);
+
+        if (response == null) {
+            byte[] body = contentType == TermedContentType.JSON ? "null".getBytes(StandardCharsets.UTF_8) : new byte[0];
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .contentType(mediaType)
+                    .body(output -> output.write(body));
         }
-        String body = JsonUtils.prettyPrintJsonAsString(response);
-        if (response.isArray() && response.size() == 0) {
-            return buildResponse(body, TermedContentType.JSON, HttpStatus.NOT_FOUND);
+
+        TermedResponseBody export = TermedResponseBody.start(response, "export of " + vocabularyId);
+
+        if (contentType == TermedContentType.JSON && export.isComplete() && isEmptyJson(export.getFirstChunk())) {
+            export.close();
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .contentType(mediaType)
+                    .body(output -> output.write(export.getFirstChunk()));
         }
-        return buildOkResponse(body, TermedContentType.JSON);
-    }
 
-    private ResponseEntity<String> buildOkResponse(String body, TermedContentType contentType) {
-        return buildResponse(body, contentType, HttpStatus.OK);
+        return ResponseEntity
+                .ok()
+                .contentType(mediaType)
+                .body(export);
     }
 
-    private ResponseEntity<String> buildResponse(String body, TermedContentType contentType, HttpStatus status) {
-        return ResponseEntity
-                .status(status)
-                .contentType(MediaType.valueOf(contentType.getContentType()))
-                .body(body);
+    private static boolean isEmptyJson(byte[] export) {
+        String content = new String(export, StandardCharsets.UTF_8).replaceAll("\\s", "");
+        return content.isEmpty() || content.equals("[]") || content.equals("null");
     }
 
     private ResponseEntity<InputStreamResource> buildExcelResponse(final Workbook workbook, final String filename) {
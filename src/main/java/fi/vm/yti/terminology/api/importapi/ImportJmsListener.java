@@ -1,18 +1,11 @@
 package fi.vm.yti.terminology.api.importapi;
 
-import java.io.Reader;
-import java.io.StringReader;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.UUID;
 
 import javax.jms.JMSException;
 import javax.jms.Session;
-import jakarta.xml.bind.JAXBContext;
-import jakarta.xml.bind.JAXBException;
-import jakarta.xml.bind.Marshaller;
-import jakarta.xml.bind.Unmarshaller;
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -25,7 +18,7 @@ import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.stereotype.Component;
 
-import fi.vm.yti.terminology.api.model.ntrf.VOCABULARY;
+import fi.vm.yti.terminology.api.exception.NtrfParseException;
 
 @Component
 public class ImportJmsListener {
@@ -33,9 +26,12 @@ public class ImportJmsListener {
     private static final Logger logger = LoggerFactory.getLogger(ImportJmsListener.class);
 
     private final NtrfMapper ntrfMapper;
+    private final NtrfUploads ntrfUploads;
 
-    public ImportJmsListener(NtrfMapper ntrfMapper) {
+    public ImportJmsListener(NtrfMapper ntrfMapper,
+                             NtrfUploads ntrfUploads) {
         this.ntrfMapper = ntrfMapper;
+        this.ntrfUploads = ntrfUploads;
     }
 
     /**
@@ -60,14 +56,19 @@ public class ImportJmsListener {
 
         String payload = "{}";
 
-        // Process ntrf item
+        // Process ntrf item, the payload is the id of the upload validated when it was received
+        Path upload = null;
         try {
-            VOCABULARY voc = NtrfUtil.unmarshallXmlDocument(message.getPayload());
-            payload = ntrfMapper.mapNtrfDocument(jobtoken, UUID.fromString(vocabularyId), voc, UUID.fromString(userId));
-        } catch (XMLStreamException se) {
-            logger.error(se.getMessage(), se);
-        } catch(JAXBException je) {
-            logger.error(je.getMessage(), je);
+            upload = ntrfUploads.fromMessage(message.getPayload());
+            // Elements are unmarshalled one at a time
+            NtrfDocument document = new NtrfStreamDocument(upload);
+            payload = ntrfMapper.mapNtrfDocument(jobtoken, UUID.fromString(vocabularyId), document, UUID.fromString(userId));
+        } catch (NtrfParseException pe) {
+            logger.error(pe.getMessage(), pe);
+        } catch (IOException e) {
+            logger.error("Unable to store NTRF document of import " + StringUtils.normalizeSpace(jobtoken), e);
+        } finally {
+            ntrfUploads.delete(upload);
         }
 
         logger.info("Import handled: {}", StringUtils.normalizeSpace(payload));
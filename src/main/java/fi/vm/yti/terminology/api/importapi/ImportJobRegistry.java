@@ -0,0 +1,96 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.messaging.Message;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest status message of each import job, by job token and by the URI of the imported vocabulary.
+ * Jobs without status updates are forgotten after the retention time.
+ */
+final class ImportJobRegistry {
+
+    static final String STATUS_TIME_HEADER = "statusTime";
+
+    private final Cache<String, Message<?>> statusByJob;
+    private final Cache<String, Message<?>> statusByUri;
+
+    ImportJobRegistry(long retentionSeconds, long maxJobs) {
+        this.statusByJob = CacheBuilder.newBuilder()
+                .expireAfterWrite(retentionSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxJobs)
+                .build();
+        this.statusByUri = CacheBuilder.newBuilder()
+                .expireAfterWrite(retentionSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxJobs)
+                .build();
+    }
+
+    /**
+     * Stores the status message unless a later status of the same job is already known.
+     * Messages without jobtoken and status headers are ignored.
+     */
+    void record(@NotNull Message<?> message) {
+
+        String jobtoken = (String) message.getHeaders().get("jobtoken");
+        if (jobtoken == null || message.getHeaders().get("status") == null) {
+            return;
+        }
+
+        statusByJob.asMap().merge(jobtoken, message, ImportJobRegistry::later);
+
+        String uri = (String) message.getHeaders().get("uri");
+        if (uri != null) {
+            statusByUri.asMap().merge(uri, message, ImportJobRegistry::later);
+        }
+    }
+
+    @Nullable Message<?> getByJob(@NotNull String jobtoken) {
+        return statusByJob.getIfPresent(jobtoken);
+    }
+
+    @Nullable Message<?> getByUri(@NotNull String uri) {
+        return statusByUri.getIfPresent(uri);
+    }
+
+    /**
+     * Forgets the job and the URI if its latest status is from the job
+     */
+    void remove(@NotNull Message<?> message) {
+
+        String jobtoken = (String) message.getHeaders().get("jobtoken");
+        String uri = (String) message.getHeaders().get("uri");
+
+        if (jobtoken != null) {
+            statusByJob.invalidate(jobtoken);
+        }
+        if (uri != null) {
+            statusByUri.asMap().computeIfPresent(uri, (key, current) ->
+                    jobtoken != null && jobtoken.equals(current.getHeaders().get("jobtoken")) ? null : current);
+        }
+    }
+
+    /**
+     * @return time the status was set, the creation time of the message for messages without one
+     */
+    static long statusTime(@NotNull Message<?> message) {
+        Object statusTime = message.getHeaders().get(STATUS_TIME_HEADER);
+        if (statusTime instanceof Number) {
+            return ((Number) statusTime).longValue();
+        }
+        Long timestamp = message.getHeaders().getTimestamp();
+        return timestamp != null ? timestamp : 0L;
+    }
+
+    static int status(@NotNull Message<?> message) {
+        return ((Number) message.getHeaders().get("status")).intValue();
+    }
+
+    private static @NotNull Message<?> later(@NotNull Message<?> current, @NotNull Message<?> update) {
+        return statusTime(update) >= statusTime(current) ? update : current;
+    }
+}
@@ -14,7 +14,6 @@ import fi.vm.yti.terminology.api.importapi.excel.ExcelParser;
 import fi.vm.yti.terminology.api.importapi.excel.TerminologyImportDTO;
 import fi.vm.yti.terminology.api.importapi.simpleexcel.SimpleExcelParser;
 import fi.vm.yti.terminology.api.migration.DomainIndex;
-import fi.vm.yti.terminology.api.model.ntrf.VOCABULARY;
 import fi.vm.yti.terminology.api.model.termed.*;
 import fi.vm.yti.terminology.api.security.AuthorizationManager;
 import fi.vm.yti.terminology.api.util.JsonUtils;
@@ -34,16 +33,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PreDestroy;
-import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
-import jakarta.xml.bind.Marshaller;
-import jakarta.xml.bind.Unmarshaller;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -91,6 +86,7 @@ public class ImportService {
 
     private final String subSystem;
     private final Integer batchSize;
+    private final NtrfUploads ntrfUploads;
 
     @Autowired
     public ImportService(FrontendGroupManagementService groupManagementService,
@@ -100,7 +96,8 @@ public class ImportService {
                          YtiMQService ytiMQService,
                          UriProperties uriProperties,
                          @Value("${mq.active.subsystem}") String subSystem,
-                         @Value("${mq.batch.size:100}") Integer batchSize) {
+                         @Value("${mq.batch.size:100}") Integer batchSize,
+                         NtrfUploads ntrfUploads) {
         this.groupManagementService = groupManagementService;
         this.termedService = frontendTermedService;
         this.userProvider = userProvider;
@@ -109,6 +106,7 @@ public class ImportService {
         this.ytiMQService = ytiMQService;
         this.batchSize = batchSize;
         this.uriProperties = uriProperties;
+        this.ntrfUploads = ntrfUploads;
     }
 
     ResponseEntity<String> getStatus(UUID jobtoken, boolean full){
@@ -194,37 +192,36 @@ public class ImportService {
         }
         rv = new ImportResponse(operationId.toString()).toString();
         // Handle incoming xml
+        Path upload = null;
         try {
             ytiMQService.setStatus(YtiMQService.STATUS_PREPROCESSING, operationId.toString(), userProvider.getUser().getId().toString(), vocabulary.getUri(),"Validating");
-            JAXBContext jc = JAXBContext.newInstance(VOCABULARY.class);
-            // Disable DOCTYPE-directive from incoming file.
-            XMLInputFactory xif = XMLInputFactory.newFactory();
-            xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-            xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-            XMLStreamReader xsr = xif.createXMLStreamReader(file.getInputStream());
-            Unmarshaller unmarshaller = jc.createUnmarshaller();
-            Marshaller marshaller = jc.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            // At last, resolve ntrf-POJO's
-            VOCABULARY voc = (VOCABULARY) unmarshaller.unmarshal(xsr);
+            // The upload is stored once, validated one element at a time and queued by its id
+            UUID uploadId = UUID.randomUUID();
+            upload = ntrfUploads.create(uploadId);
+            file.transferTo(upload);
+            NtrfStreamDocument.Summary summary;
+            try (InputStream input = Files.newInputStream(upload)) {
+                summary = NtrfStreamDocument.validate(input);
+            }
 
             // All set up, execute actual import
-            List<?> l = voc.getRECORDAndHEADAndDIAG();
-            System.out.println("Incoming objects count=" + l.size());
+            int itemCount = summary.getItemCount();
+            LOGGER.info("Incoming objects count=" + itemCount);
             ImportStatusResponse response = new ImportStatusResponse();
             response.setStatus(ImportStatus.PREPROCESSING);
-            response.addStatusMessage(new ImportStatusMessage("Vocabulary",l.size()+" items validated"));
-            response.setProcessingTotal(l.size());
+            response.addStatusMessage(new ImportStatusMessage("Vocabulary",itemCount+" items validated"));
+            response.setProcessingTotal(itemCount);
             ytiMQService.setStatus(YtiMQService.STATUS_PROCESSING, operationId.toString(), userProvider.getUser().getId().toString(), vocabulary.getUri(),response.toString());
-            StringWriter sw = new StringWriter();
-            marshaller.marshal(voc, sw);
             // Add application specific headers
             MessageHeaderAccessor accessor = new MessageHeaderAccessor();
             accessor.setHeader("vocabularyId",vocabularyId.toString());
             accessor.setHeader("format","NTRF");
-            int stat = ytiMQService.handleImportAsync(operationId, accessor, subSystem, vocabulary.getUri(), sw.toString());
+            int stat = ytiMQService.handleImportAsync(operationId, accessor, subSystem, vocabulary.getUri(), uploadId.toString());
             if(stat != HttpStatus.OK.value()){
                 System.out.println("Import failed code:"+stat);
+            } else {
+                // Removed by the import job when it has been processed
+                upload = null;
             }
         } catch (IOException ioe){
             LOGGER.error("Incoming transform error" + ioe);
@@ -232,6 +229,8 @@ public class ImportService {
             LOGGER.error("Incoming transform error" + se);
         } catch (JAXBException je){
             LOGGER.error("Incoming transform error" + je);
+        } finally {
+            ntrfUploads.delete(upload);
         }
         return new ResponseEntity<>( rv, HttpStatus.OK);
     }
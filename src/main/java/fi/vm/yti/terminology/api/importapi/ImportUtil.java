@@ -1,12 +1,10 @@
 package fi.vm.yti.terminology.api.importapi;
 
-import com.google.common.collect.Iterables;
 import fi.vm.yti.terminology.api.model.termed.GenericNode;
 import fi.vm.yti.terminology.api.model.termed.Identifier;
 import fi.vm.yti.terminology.api.model.termed.NodeType;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class ImportUtil {
 
@@ -18,41 +16,69 @@ public class ImportUtil {
      * Split node list to smaller batches. Eventual batch size might be greater than defined one,
      * because all referred nodes must reside in the same batch
      *
+     * Concepts connected by concept references, together with their terms and external references, form
+     * components that are never split. Components are found with union-find over an id index, so batching
+     * runs in time linear to the number of nodes and references.
+     *
      * @param allNodes
      * @param maxBatchSize
      * @return
      */
     public static List<List<GenericNode>> getBatches(List<GenericNode> allNodes, int maxBatchSize) {
-        Set<UUID> allIds = new LinkedHashSet<>();
-        List<Set<UUID>> batches = new ArrayList<>();
 
-        Set<UUID> currentBatch = new HashSet<>();
+        // first occurrence of each id
+        Map<UUID, Integer> indexById = new HashMap<>(allNodes.size() * 2);
+        for (int i = 0; i < allNodes.size(); i++) {
+            indexById.putIfAbsent(allNodes.get(i).getId(), i);
+        }
+
+        ComponentIndex components = new ComponentIndex(allNodes.size());
 
-        for (GenericNode node : allNodes) {
-            if (allIds.contains(node.getId())) {
+        for (Map.Entry<UUID, Integer> entry : indexById.entrySet()) {
+            int index = entry.getValue();
+            GenericNode node = allNodes.get(index);
+
+            if (node.getType().getId() != NodeType.Concept) {
                 continue;
             }
 
-            if (node.getType().getId() == NodeType.Concept) {
-                Set<UUID> references = getReferencesRecursive(
-                        allNodes,
-                        node.getId(),
-                        new HashSet<>(),
-                        allIds
-                );
-                currentBatch.addAll(references);
-                allIds.addAll(references);
-            } else if (node.getType().getId() == NodeType.Collection) {
-                allIds.add(node.getId());
-                currentBatch.add(node.getId());
-            } else if (node.getType().getId() == NodeType.TerminologicalVocabulary) {
-                allIds.add(node.getId());
-                currentBatch.add(node.getId());
+            unionReferences(components, index, node, termReferenceProperties, indexById);
+            unionReferences(components, index, node, externalReferenceProperties, indexById);
+            unionReferences(components, index, node, conceptReferenceProperties, indexById);
+        }
+
+        // members of each component in the order of allNodes
+        Map<Integer, List<GenericNode>> membersByRoot = new HashMap<>();
+        for (int i = 0; i < allNodes.size(); i++) {
+            GenericNode node = allNodes.get(i);
+            if (indexById.get(node.getId()) == i) {
+                membersByRoot.computeIfAbsent(components.find(i), root -> new ArrayList<>()).add(node);
             }
+        }
+
+        List<List<GenericNode>> batches = new ArrayList<>();
+        List<GenericNode> currentBatch = new ArrayList<>();
+        Set<Integer> handledRoots = new HashSet<>();
+
+        for (int i = 0; i < allNodes.size(); i++) {
+            GenericNode node = allNodes.get(i);
+            NodeType type = node.getType().getId();
+
+            if (type != NodeType.Concept && type != NodeType.Collection && type != NodeType.TerminologicalVocabulary) {
+                // other nodes are only imported as references of concepts
+                continue;
+            }
+
+            int root = components.find(i);
+            if (indexById.get(node.getId()) != i || !handledRoots.add(root)) {
+                continue;
+            }
+
+            currentBatch.addAll(membersByRoot.get(root));
 
             if (currentBatch.size() > maxBatchSize) {
-                batches.add(Set.copyOf(currentBatch));
-                currentBatch = new HashSet<>();
+                batches.add(currentBatch);
+                currentBatch = new ArrayList<>();
             }
         }
 
@@ -60,63 +86,59 @@ public class ImportUtil {
             batches.add(currentBatch);
         }
 
-        List<List<GenericNode>> genericNodeBatches = new ArrayList<>();
+        return batches;
+    }
 
-        for (Set<UUID> batch : batches) {
-            genericNodeBatches.add(
-                    batch.stream()
-                            .map(id -> Iterables.find(allNodes, (n) -> n.getId().equals(id)))
-                            .collect(Collectors.toList())
-            );
+    private static void unionReferences(ComponentIndex components, int index, GenericNode node,
+                                        List<String> propertyNames, Map<UUID, Integer> indexById) {
+        for (String type : propertyNames) {
+            for (Identifier reference : node.getReferences().getOrDefault(type, Collections.emptyList())) {
+                Integer referenceIndex = indexById.get(reference.getId());
+                if (referenceIndex != null) {
+                    components.union(index, referenceIndex);
+                }
+            }
         }
-
-        return genericNodeBatches;
     }
 
-    private static Set<UUID> getReferencesRecursive(List<GenericNode> allNodes, UUID current,
-                                                    Set<UUID> result, Set<UUID> handledIds) {
-
-        // add current node to result set
-        result.add(current);
-
-        // find node from list
-        GenericNode node = Iterables.find(allNodes, (n) -> n.getId().equals(current));
-
-        // add term and external concept references
-        result.addAll(findReferenceNodes(node, allNodes, termReferenceProperties));
-        result.addAll(findReferenceNodes(node, allNodes, externalReferenceProperties));
+    /**
+     * Disjoint sets of node indices, with path halving and union by size
+     */
+    private static final class ComponentIndex {
 
-        // recursively add concept references
-        Set<UUID> conceptRefs = findReferenceNodes(node, allNodes, conceptReferenceProperties);
+        private final int[] parent;
+        private final int[] size;
 
-        for (UUID refId : conceptRefs) {
-            boolean added = result.add(refId);
-            if (added && !handledIds.contains(refId)) {
-                getReferencesRecursive(allNodes, refId, result, handledIds);
+        private ComponentIndex(int count) {
+            parent = new int[count];
+            size = new int[count];
+            for (int i = 0; i < count; i++) {
+                parent[i] = i;
+                size[i] = 1;
             }
         }
 
-        return result;
-    }
-
-    private static Set<UUID> findReferencesByType(String type, GenericNode node) {
-        return node.getReferences().getOrDefault(type, Collections.emptyList())
-                .stream()
-                .map(Identifier::getId)
-                .collect(Collectors.toSet());
-    }
+        private int find(int index) {
+            while (parent[index] != index) {
+                parent[index] = parent[parent[index]];
+                index = parent[index];
+            }
+            return index;
+        }
 
-    private static Set<UUID> findReferenceNodes(GenericNode node, List<GenericNode> allNodes, List<String> propertyNames) {
-        Set<UUID> result = new HashSet<>();
-        for (String type : propertyNames) {
-            Set<UUID> refs = findReferencesByType(type, node);
-            result.addAll(allNodes.stream()
-                    .map(GenericNode::getId)
-                    .filter(refs::contains)
-                    .collect(Collectors.toSet())
-            );
+        private void union(int a, int b) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA == rootB) {
+                return;
+            }
+            if (size[rootA] < size[rootB]) {
+                int tmp = rootA;
+                rootA = rootB;
+                rootB = tmp;
+            }
+            parent[rootB] = rootA;
+            size[rootA] += size[rootB];
         }
-        return result;
     }
-
 }
@@ -0,0 +1,56 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import fi.vm.yti.terminology.api.model.ntrf.REFERENCES;
+import fi.vm.yti.terminology.api.model.ntrf.VOCABULARY;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Top level elements of an NTRF document. Each call of {@link #elements(Class)} walks the document again,
+ * so implementations need not keep more than one element in memory.
+ */
+public interface NtrfDocument {
+
+    /**
+     * @param type RECORD, DIAG, REFERENCES or another top level element type
+     * @return top level elements of the type in document order
+     */
+    @NotNull <T> Iterable<T> elements(@NotNull Class<T> type);
+
+    /**
+     * @return number of top level elements of the type
+     */
+    int count(@NotNull Class<?> type);
+
+    /**
+     * @return document already unmarshalled as a whole
+     */
+    static @NotNull NtrfDocument of(@NotNull VOCABULARY vocabulary) {
+
+        List<Object> elements = new ArrayList<>(vocabulary.getRECORDAndHEADAndDIAG());
+        if (vocabulary.getREFERENCES() != null) {
+            elements.add(vocabulary.getREFERENCES());
+        }
+
+        return new NtrfDocument() {
+
+            @Override
+            public @NotNull <T> Iterable<T> elements(@NotNull Class<T> type) {
+                List<T> result = new ArrayList<>();
+                for (Object element : elements) {
+                    if (type.isInstance(element)) {
+                        result.add(type.cast(element));
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            public int count(@NotNull Class<?> type) {
+                return (int) elements.stream().filter(type::isInstance).count();
+            }
+        };
+    }
+}
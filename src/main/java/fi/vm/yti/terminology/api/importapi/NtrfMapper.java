@@ -26,6 +26,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpServerErrorException;
 
@@ -54,6 +55,12 @@ public class NtrfMapper {
     private final AuthenticatedUserProvider userProvider;
     private final YtiMQService ytiMQService;
 
+    /**
+     * Records mapped into one Termed write and max written batches waiting while the next ones are mapped
+     */
+    private final int batchSize;
+    private final int writeQueueSize;
+
     /**
      * Map containing metadata types. used when creating nodes.
      */
@@ -95,16 +102,36 @@ public class NtrfMapper {
     public NtrfMapper(TermedRequester termedRequester,
             FrontendTermedService frontendTermedService,
             AuthenticatedUserProvider userProvider,
-            YtiMQService ytiMQService) {
+            YtiMQService ytiMQService,
+            @Value("${ntrf.import.batchSize:100}") int batchSize,
+            @Value("${ntrf.import.writeQueueSize:2}") int writeQueueSize) {
         this.termedRequester = termedRequester;
         this.termedService = frontendTermedService;
         this.userProvider = userProvider;
         this.ytiMQService = ytiMQService;
+        this.batchSize = Math.max(1, batchSize);
+        this.writeQueueSize = writeQueueSize;
     }
 
     private boolean updateAndDeleteInternalNodes(UUID userId, GenericDeleteAndSave deleteAndSave, boolean sync) {
 
-        boolean rv = true;
+        String error = postNodes(userId, deleteAndSave, sync);
+        if (error != null) {
+            statusList.add(new StatusMessage(Level.ERROR, currentRecord, "Termed error:" + error));
+            errorCount++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Saves and deletes the nodes, called also from the batch writer thread so it must not change import state
+     *
+     * @return Termed error, null if the nodes were saved
+     */
+    private String postNodes(UUID userId, GenericDeleteAndSave deleteAndSave, boolean sync) {
+
+        String rv = null;
         Parameters params = new Parameters();
         params.add("changeset", "true");
         params.add("sync", String.valueOf(sync));
@@ -125,10 +152,7 @@ public class NtrfMapper {
             if (reflist.size() > 1) {
                 logger.error("Failed UUID=" + reflist.get(1) + " Code:" + reverseIdMap.get(reflist.get(1)));
             }
-            statusList
-                    .add(new StatusMessage(Level.ERROR, currentRecord, "Termed error:" + ex.getResponseBodyAsString()));
-            errorCount++;
-            rv = false;
+            rv = error;
         }
         return rv;
     }
@@ -141,6 +165,13 @@ public class NtrfMapper {
      * @return
      */
     public String mapNtrfDocument(String jobtoken, UUID vocabularyId, VOCABULARY ntrfDocument, UUID userId) {
+        return mapNtrfDocument(jobtoken, vocabularyId, NtrfDocument.of(ntrfDocument), userId);
+    }
+
+    /**
+     * Imports the document reading its REFERENCES, RECORD and DIAG elements in separate passes, one element at a time
+     */
+    public String mapNtrfDocument(String jobtoken, UUID vocabularyId, NtrfDocument ntrfDocument, UUID userId) {
         logger.info("mapNtRfDocument: Vocabulary Id: {}", StringUtils.normalizeSpace(vocabularyId.toString()));
 
         Graph vocabulary;
@@ -165,34 +196,24 @@ public class NtrfMapper {
             return "Vocabulary:<" + vocabularyId + "> initialization error";
         }
 
-        // Get statistic of terms
-        List<?> l = ntrfDocument.getRECORDAndHEADAndDIAG();
-        logger.info("Incoming objects count={}", l.size());
-
-        // Get all reference-elements and build reference-url-map
-        List<REFERENCES> externalReferences = l.stream()
-                .filter(o -> o instanceof REFERENCES)
-                .map(o -> (REFERENCES) o)
-                .collect(Collectors.toList());
-
-        handleReferences(externalReferences, referenceMap);
-        logger.info("Incoming reference count={}", externalReferences.size());
-
-        // Get all records (mapped to terms) from incoming ntrf-document. Check object
-        // type and typecast matching objects to list<>
-        List<RECORD> records = l.stream()
-                .filter(o -> o instanceof RECORD)
-                .map(o -> (RECORD) o)
-                .collect(Collectors.toList());
+        // Build reference-url-map from reference-elements
+        int referenceCount = 0;
+        for (REFERENCES externalReferences : ntrfDocument.elements(REFERENCES.class)) {
+            handleReferences(List.of(externalReferences), referenceMap);
+            referenceCount++;
+        }
+        logger.info("Incoming reference count={}", referenceCount);
 
-        logger.info("Incoming records count={}", records.size());
+        // Records (mapped to terms) are read one at a time from incoming ntrf-document
+        int recordCount = ntrfDocument.count(RECORD.class);
+        logger.info("Incoming records count={}", recordCount);
         List<GenericNode> addNodeList = new ArrayList<>();
         List<Identifier> deleteNodeList = new ArrayList<>();
 
         ImportStatusResponse response = new ImportStatusResponse();
         response.setStatus(ImportStatus.PROCESSING);
         response.addStatusMessage(new ImportStatusMessage("Vocabulary", "Import started"));
-        response.setProcessingTotal(records.size());
+        response.setProcessingTotal(recordCount);
         response.setProcessingProgress(0);
 
         ytiMQService.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId.toString(), vocabulary.getUri(),
@@ -200,61 +221,45 @@ public class NtrfMapper {
         int flushCount = 0;
         int currentCount = 0;
 
-        for (RECORD o : records) {
-            currentRecord = o.getNumb();
-            handleRECORD(vocabulary, o, addNodeList, deleteNodeList);
-            flushCount++;
-            currentCount++;
-            response.setStatus(ImportStatus.PROCESSING);
-            response.clearStatusMessages(); // Forget previous
-            response.addStatusMessage(new ImportStatusMessage("Vocabulary", "Processing records"));
-            response.setProcessingProgress(currentCount);
-            response.setResultsError(errorCount);
-            ytiMQService.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId.toString(), vocabulary.getUri(),
-                    response.toString());
-            // Flush datablock to the termed
-            if (flushCount > 100) {
-                flushCount = 0;
-                GenericDeleteAndSave operation = new GenericDeleteAndSave(deleteNodeList, addNodeList);
-
-                logger.debug(JsonUtils.prettyPrintJsonAsString(operation));
+        // Records are mapped on this thread while the previous batches are written to termed
+        TermedBatchWriter.Result written;
+        try (TermedBatchWriter writer = new TermedBatchWriter(writeQueueSize,
+                operation -> postNodes(userId, operation, true))) {
 
+            for (RECORD o : ntrfDocument.elements(RECORD.class)) {
+                currentRecord = o.getNumb();
+                handleRECORD(vocabulary, o, addNodeList, deleteNodeList);
+                flushCount++;
+                currentCount++;
                 response.setStatus(ImportStatus.PROCESSING);
                 response.clearStatusMessages(); // Forget previous
-                if (!updateAndDeleteInternalNodes(userId, operation, true)) {
-                    response.addStatusMessage(new ImportStatusMessage("Vocabulary",
-                            "Processing records, import failed for " + currentRecord));
-                    errorCount++;
-                } else {
-                    response.addStatusMessage(new ImportStatusMessage("Vocabulary", "Processing records"));
-                    // Import successfull, add id:s to resolved one.
-                    addNodeList.forEach(node -> {
-                        // Add id for reference resolving
-                        createdIdMap.put(node.getCode(), node.getId());
-                    });
-                }
+                response.addStatusMessage(new ImportStatusMessage("Vocabulary", "Processing records"));
                 response.setProcessingProgress(currentCount);
+                response.setResultsError(errorCount + writer.getFailedBatches());
                 ytiMQService.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId.toString(), vocabulary.getUri(),
                         response.toString());
-
-                addNodeList.clear();
+                // Hand datablock over to the termed writer
+                if (flushCount >= batchSize) {
+                    flushCount = 0;
+                    submitBatch(writer, deleteNodeList, addNodeList);
+                    addNodeList = new ArrayList<>();
+                    deleteNodeList = new ArrayList<>();
+                }
             }
-        }
-        GenericDeleteAndSave operation = new GenericDeleteAndSave(deleteNodeList, addNodeList);
+            submitBatch(writer, deleteNodeList, addNodeList);
 
-        logger.debug(JsonUtils.prettyPrintJsonAsString(operation));
-
-        if (!updateAndDeleteInternalNodes(userId, operation, true)) {
-            response.addStatusMessage(
-                    new ImportStatusMessage("Vocabulary", "Processing records, import failed for " + currentRecord));
-        } else {
-            // Import successfull, add id:s to resolved one.
-            addNodeList.forEach(v -> {
-                // Add id for reference resolving
-                createdIdMap.put(v.getCode(), v.getId());
-            });
+            written = writer.finish();
         }
 
+        // Add id:s of written nodes for reference resolving
+        createdIdMap.putAll(written.getIds());
+        written.getFailures().forEach(failure -> {
+            statusList.add(new StatusMessage(Level.ERROR, failure.getRecord(), "Termed error:" + failure.getError()));
+            response.addStatusMessage(new ImportStatusMessage("Vocabulary",
+                    "Processing records, import failed for " + failure.getRecord()));
+            errorCount++;
+        });
+
         List<GenericNode> addNodeListReferences = new ArrayList<>();
 
         // ReInitialize caches and after that, resolve rcon- and ncon-references
@@ -269,23 +274,21 @@ public class NtrfMapper {
         handleLinks(userId, vocabulary);
 
         // Handle DIAG-elements and create collections from them
-        List<DIAG> DIAGList = l.stream()
-                .filter(o -> o instanceof DIAG)
-                .map(o -> (DIAG) o)
-                .collect(Collectors.toList());
-
-        logger.debug("DIAG-count={}", DIAGList.size());
-
-        for (DIAG o : DIAGList) {
+        int diagCount = 0;
+        for (DIAG o : ntrfDocument.elements(DIAG.class)) {
             handleDIAG(vocabulary, o, addNodeListReferences);
+            diagCount++;
         }
+
+        logger.debug("DIAG-count={}", diagCount);
+
         response.setStatus(ImportStatus.PROCESSING);
-        response.addStatusMessage(new ImportStatusMessage("Vocabulary", "Processing DIAG number=" + DIAGList.size()));
-        response.setProcessingProgress(records.size());
+        response.addStatusMessage(new ImportStatusMessage("Vocabulary", "Processing DIAG number=" + diagCount));
+        response.setProcessingProgress(recordCount);
         ytiMQService.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId.toString(), vocabulary.getUri(),
                 response.toString());
         // Add DIAG-list to vocabulary
-        operation = new GenericDeleteAndSave(emptyList(), addNodeListReferences);
+        GenericDeleteAndSave operation = new GenericDeleteAndSave(emptyList(), addNodeListReferences);
 
         logger.debug(JsonUtils.prettyPrintJsonAsString(operation));
 
@@ -295,7 +298,7 @@ public class NtrfMapper {
 
         Long endTime = new Date().getTime();
         logger.info("Operation took {} s", (endTime - startTime) / 1000);
-        logger.info("NTRF-imported {} concepts", records.size());
+        logger.info("NTRF-imported {} concepts", recordCount);
       
         response.clearStatusMessages();
 
@@ -305,8 +308,8 @@ public class NtrfMapper {
             logger.info("Item: {} value: {}", m.getRecord(), m.getMessage().toString());
         });
 
-        response.setProcessingTotal(records.size());
-        response.setProcessingProgress(records.size());
+        response.setProcessingTotal(recordCount);
+        response.setProcessingProgress(recordCount);
         response.setResultsWarning(statusList.size());
         response.setResultsError(errorCount);
 
@@ -325,6 +328,16 @@ public class NtrfMapper {
         return response.toString();
     }
 
+    private void submitBatch(TermedBatchWriter writer, List<Identifier> deleteNodeList, List<GenericNode> addNodeList) {
+        GenericDeleteAndSave operation = new GenericDeleteAndSave(deleteNodeList, addNodeList);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(JsonUtils.prettyPrintJsonAsString(operation));
+        }
+
+        writer.submit(currentRecord, operation);
+    }
+
     private void addConMap(Map<String, List<ConnRef>> conMap, String connType, UUID userId,
             Graph vocabulary) {
         List<GenericNode> addNodeList = new ArrayList<>();
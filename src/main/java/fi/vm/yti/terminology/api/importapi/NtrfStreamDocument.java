@@ -0,0 +1,301 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import fi.vm.yti.terminology.api.exception.NtrfParseException;
+import fi.vm.yti.terminology.api.model.ntrf.COMM;
+import fi.vm.yti.terminology.api.model.ntrf.DIAG;
+import fi.vm.yti.terminology.api.model.ntrf.HEAD;
+import fi.vm.yti.terminology.api.model.ntrf.HEADER;
+import fi.vm.yti.terminology.api.model.ntrf.P;
+import fi.vm.yti.terminology.api.model.ntrf.PICT;
+import fi.vm.yti.terminology.api.model.ntrf.RECORD;
+import fi.vm.yti.terminology.api.model.ntrf.REFERENCES;
+import fi.vm.yti.terminology.api.model.ntrf.REMK;
+import fi.vm.yti.terminology.api.model.ntrf.VOCABULARY;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * NTRF document read with StAX from the stored upload, top level elements are unmarshalled one at a time.
+ */
+final class NtrfStreamDocument implements NtrfDocument {
+
+    private static final String ROOT_ELEMENT = "VOCABULARY";
+
+    /**
+     * Top level elements of VOCABULARY and their JAXB types
+     */
+    private static final Map<String, Class<?>> ELEMENT_TYPES = Map.of(
+            "HEADER", HEADER.class,
+            "RECORD", RECORD.class,
+            "HEAD", HEAD.class,
+            "DIAG", DIAG.class,
+            "PICT", PICT.class,
+            "P", P.class,
+            "COMM", COMM.class,
+            "REMK", REMK.class,
+            "REFERENCES", REFERENCES.class);
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static volatile JAXBContext jaxbContext;
+
+    private final Path file;
+
+    /**
+     * The file is read again for each pass over the document, its encoding is detected by the parser
+     */
+    NtrfStreamDocument(@NotNull Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public @NotNull <T> Iterable<T> elements(@NotNull Class<T> type) {
+        String name = elementName(type);
+        return () -> new ElementIterator<>(type, name);
+    }
+
+    @Override
+    public int count(@NotNull Class<?> type) {
+
+        String name = elementName(type);
+
+        try {
+            XMLStreamReader reader = open();
+            try {
+                openRoot(reader);
+                int count = 0;
+                while (nextTopLevelElement(reader)) {
+                    if (name.equals(reader.getLocalName())) {
+                        count++;
+                    }
+                    skipElement(reader);
+                }
+                return count;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new NtrfParseException("Invalid NTRF document", e);
+        }
+    }
+
+    /**
+     * Checks that the upload is an NTRF document by unmarshalling its top level elements one at a time.
+     *
+     * @return number of top level elements other than HEADER and REFERENCES
+     */
+    static @NotNull Summary validate(@NotNull InputStream input) throws XMLStreamException, JAXBException {
+
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+
+        try {
+            openRoot(reader);
+
+            Unmarshaller unmarshaller = context().createUnmarshaller();
+            int itemCount = 0;
+
+            while (nextTopLevelElement(reader)) {
+                String name = reader.getLocalName();
+                Class<?> type = ELEMENT_TYPES.get(name);
+
+                if (type != null) {
+                    unmarshaller.unmarshal(reader, type);
+                    if (type != HEADER.class && type != REFERENCES.class) {
+                        itemCount++;
+                    }
+                } else {
+                    // unknown elements are ignored as when unmarshalling the whole document
+                    skipElement(reader);
+                }
+            }
+
+            return new Summary(itemCount);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private @NotNull XMLStreamReader open() throws XMLStreamException {
+
+        InputStream input;
+        try {
+            input = Files.newInputStream(file);
+        } catch (IOException e) {
+            throw new XMLStreamException("Unable to read NTRF document " + file, e);
+        }
+
+        // Closing the reader does not close the stream it reads
+        return new StreamReaderDelegate(INPUT_FACTORY.createXMLStreamReader(input)) {
+            @Override
+            public void close() throws XMLStreamException {
+                try {
+                    super.close();
+                } finally {
+                    try {
+                        input.close();
+                    } catch (IOException e) {
+                        throw new XMLStreamException("Unable to close NTRF document " + file, e);
+                    }
+                }
+            }
+        };
+    }
+
+    private static @NotNull String elementName(@NotNull Class<?> type) {
+        for (Map.Entry<String, Class<?>> entry : ELEMENT_TYPES.entrySet()) {
+            if (entry.getValue() == type) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalArgumentException("Not a top level NTRF element: " + type.getSimpleName());
+    }
+
+    /**
+     * Moves past the start of the root element
+     */
+    private static @NotNull XMLStreamReader openRoot(@NotNull XMLStreamReader reader) throws XMLStreamException {
+
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new XMLStreamException("Empty NTRF document");
+            }
+            reader.next();
+        }
+
+        if (!ROOT_ELEMENT.equals(reader.getLocalName())) {
+            throw new XMLStreamException("Root element must be " + ROOT_ELEMENT + ", was " + reader.getLocalName(), reader.getLocation());
+        }
+
+        reader.next();
+        return reader;
+    }
+
+    /**
+     * Moves to the start of the next child of the root element
+     *
+     * @return false at the end of the root element
+     */
+    private static boolean nextTopLevelElement(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        while (true) {
+            int event = reader.getEventType();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+                return false;
+            }
+            reader.next();
+        }
+    }
+
+    /**
+     * Moves past the end of the element whose start the reader is at
+     */
+    private static void skipElement(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        reader.next();
+    }
+
+    private static @NotNull JAXBContext context() throws JAXBException {
+        JAXBContext context = jaxbContext;
+        if (context == null) {
+            context = JAXBContext.newInstance(VOCABULARY.class);
+            jaxbContext = context;
+        }
+        return context;
+    }
+
+    private static @NotNull XMLInputFactory createInputFactory() {
+        // Disable DOCTYPE-directive from incoming file.
+        XMLInputFactory xif = XMLInputFactory.newFactory();
+        xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        return xif;
+    }
+
+    static final class Summary {
+
+        private final int itemCount;
+
+        private Summary(int itemCount) {
+            this.itemCount = itemCount;
+        }
+
+        int getItemCount() {
+            return itemCount;
+        }
+    }
+
+    private final class ElementIterator<T> implements Iterator<T> {
+
+        private final Class<T> type;
+        private final String name;
+        private final XMLStreamReader reader;
+        private final Unmarshaller unmarshaller;
+        private T next;
+
+        private ElementIterator(@NotNull Class<T> type, @NotNull String name) {
+            this.type = type;
+            this.name = name;
+            try {
+                this.reader = openRoot(open());
+                this.unmarshaller = context().createUnmarshaller();
+            } catch (XMLStreamException | JAXBException e) {
+                throw new NtrfParseException("Invalid NTRF document", e);
+            }
+            this.next = read();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T current = next;
+            next = read();
+            return current;
+        }
+
+        private @Nullable T read() {
+            try {
+                while (nextTopLevelElement(reader)) {
+                    if (name.equals(reader.getLocalName())) {
+                        return unmarshaller.unmarshal(reader, type).getValue();
+                    }
+                    skipElement(reader);
+                }
+                reader.close();
+                return null;
+            } catch (XMLStreamException | JAXBException e) {
+                throw new NtrfParseException("Invalid " + name + " element in NTRF document", e);
+            }
+        }
+    }
+}
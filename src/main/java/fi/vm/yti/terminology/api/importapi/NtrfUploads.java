@@ -0,0 +1,92 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import fi.vm.yti.terminology.api.exception.NtrfParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+/**
+ * NTRF uploads stored in the upload directory until they are imported. Import messages carry only the id
+ * of the upload, never a path, so a message can only refer to a file in the upload directory.
+ */
+@Component
+class NtrfUploads {
+
+    private static final Logger logger = LoggerFactory.getLogger(NtrfUploads.class);
+
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+
+    private final Path directory;
+
+    NtrfUploads(@Value("${ntrf.import.uploadDir:}") String uploadDir) {
+        this.directory = (uploadDir.isEmpty() ? Paths.get(System.getProperty("java.io.tmpdir")) : Paths.get(uploadDir))
+                .toAbsolutePath()
+                .normalize();
+    }
+
+    /**
+     * Creates an empty upload file for the id
+     */
+    @NotNull Path create(@NotNull UUID uploadId) throws IOException {
+        return Files.createFile(path(uploadId));
+    }
+
+    /**
+     * Upload the payload of an import message refers to. Messages queued before uploads were stored carry the
+     * NTRF document itself, it is stored as a new upload.
+     *
+     * @throws NtrfParseException when the payload is neither an upload id nor a document
+     */
+    @NotNull Path fromMessage(@NotNull String payload) throws IOException {
+
+        if (isDocument(payload)) {
+            // Written as UTF-8 like the decoded message, a byte order mark in the text stays one in the file
+            Path upload = create(UUID.randomUUID());
+            Files.writeString(upload, payload, StandardCharsets.UTF_8);
+            return upload;
+        }
+
+        UUID uploadId;
+        try {
+            uploadId = UUID.fromString(payload.trim());
+        } catch (IllegalArgumentException e) {
+            throw new NtrfParseException("Import message does not refer to an NTRF upload", e);
+        }
+
+        return path(uploadId);
+    }
+
+    void delete(@Nullable Path upload) {
+        if (upload == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(upload);
+        } catch (IOException e) {
+            logger.warn("Unable to delete NTRF upload " + upload, e);
+        }
+    }
+
+    private static boolean isDocument(@NotNull String payload) {
+        String start = payload.startsWith(BYTE_ORDER_MARK) ? payload.substring(1) : payload;
+        return start.stripLeading().startsWith("<");
+    }
+
+    private @NotNull Path path(@NotNull UUID uploadId) {
+        Path upload = directory.resolve("ntrf-" + uploadId + ".xml").normalize();
+        if (!directory.equals(upload.getParent())) {
+            throw new IllegalArgumentException("NTRF upload outside of the upload directory: " + uploadId);
+        }
+        return upload;
+    }
+}
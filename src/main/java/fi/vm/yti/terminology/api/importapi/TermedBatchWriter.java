@@ -0,0 +1,199 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import fi.vm.yti.terminology.api.model.termed.GenericDeleteAndSave;
+import fi.vm.yti.terminology.api.model.termed.GenericNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Writes node batches of an import to Termed on its own thread while the caller maps the next records.
+ * Batches are handed over through a bounded queue so a slow Termed blocks mapping instead of piling
+ * batches up in memory. Results are returned to the caller once all batches are written.
+ */
+final class TermedBatchWriter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TermedBatchWriter.class);
+
+    private static final Batch END = new Batch(null, null);
+
+    private final BlockingQueue<Batch> queue;
+    private final Function<GenericDeleteAndSave, String> writer;
+    private final ExecutorService executor;
+    private final Future<Result> result;
+    private final AtomicInteger failedBatches = new AtomicInteger();
+
+    private volatile RuntimeException failure;
+
+    /**
+     * @param queueSize max batches waiting to be written
+     * @param writer    writes a batch to Termed and returns the error, null when the batch was saved
+     */
+    TermedBatchWriter(int queueSize, @NotNull Function<GenericDeleteAndSave, String> writer) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.writer = writer;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ntrf-write");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.result = executor.submit(this::write);
+    }
+
+    /**
+     * Queues the batch, blocks while the queue is full
+     *
+     * @param record last record mapped into the batch, reported if writing the batch fails
+     * @throws RuntimeException failure of the writer thread
+     */
+    void submit(@Nullable String record, @NotNull GenericDeleteAndSave operation) {
+        if (failure != null) {
+            throw failure;
+        }
+        put(new Batch(record, operation));
+    }
+
+    /**
+     * @return batches Termed has refused so far
+     */
+    int getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    /**
+     * Waits until the queued batches are written
+     *
+     * @throws RuntimeException failure of the writer thread
+     */
+    @NotNull Result finish() {
+        put(END);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing NTRF import batches", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private @NotNull Result write() throws InterruptedException {
+
+        Result written = new Result();
+        long start = System.currentTimeMillis();
+
+        while (true) {
+            Batch batch = queue.take();
+            if (batch == END) {
+                break;
+            }
+            if (failure != null) {
+                // keep draining so that a caller blocked on a full queue gets to see the failure
+                continue;
+            }
+
+            try {
+                String error = writer.apply(batch.operation);
+                if (error == null) {
+                    // Add id:s for reference resolving
+                    for (GenericNode node : batch.operation.getSave()) {
+                        written.ids.put(node.getCode(), node.getId());
+                    }
+                } else {
+                    written.failures.add(new Failure(batch.record, error));
+                    failedBatches.incrementAndGet();
+                }
+                written.batches++;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        log.info("Wrote " + written.batches + " import batches to Termed in " + (System.currentTimeMillis() - start) + "ms");
+        return written;
+    }
+
+    private void put(@NotNull Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing NTRF import batches", e);
+        }
+    }
+
+    static final class Result {
+
+        private final Map<String, UUID> ids = new HashMap<>();
+        private final List<Failure> failures = new ArrayList<>();
+        private int batches;
+
+        /**
+         * @return code and id of each saved node
+         */
+        @NotNull Map<String, UUID> getIds() {
+            return ids;
+        }
+
+        @NotNull List<Failure> getFailures() {
+            return failures;
+        }
+    }
+
+    static final class Failure {
+
+        private final String record;
+        private final String error;
+
+        private Failure(@Nullable String record, @NotNull String error) {
+            this.record = record;
+            this.error = error;
+        }
+
+        @Nullable String getRecord() {
+            return record;
+        }
+
+        @NotNull String getError() {
+            return error;
+        }
+    }
+
+    private static final class Batch {
+
+        private final String record;
+        private final GenericDeleteAndSave operation;
+
+        private Batch(@Nullable String record, @Nullable GenericDeleteAndSave operation) {
+            this.record = record;
+            this.operation = operation;
+        }
+    }
+}
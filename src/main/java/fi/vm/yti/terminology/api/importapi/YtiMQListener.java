@@ -17,6 +17,7 @@ import javax.jms.Session;
 @Component
 public class YtiMQListener {
     private final String subSystem;
+    private final YtiMQService ytiMQService;
 
     // JMS-client
     @Autowired
@@ -24,8 +25,10 @@ public class YtiMQListener {
 
     @Autowired
     public YtiMQListener(JmsMessagingTemplate jmsMessagingTemplate,
+                         YtiMQService ytiMQService,
                          @Value("${mq.active.subsystem}") String subSystem) {
         this.jmsMessagingTemplate = jmsMessagingTemplate;
+        this.ytiMQService = ytiMQService;
         this.subSystem = subSystem;
     }
 
@@ -55,16 +58,14 @@ public class YtiMQListener {
                 .build();
         return message;
     }
-/*
+
+    /**
+     * Status messages keep the job status registry of every instance up to date
+     *
+     * @param message
+     */
     @JmsListener(destination =  "${mq.active.subsystem}Status")
-//    @SendTo("${mq.active.subsystem}StatusTest")
-    public void receiveStatusMessage(final Message message,
-                                  Session session,
-                                  @Header String jobtoken,
-                                  @Header String userId,
-                                  @Header String uri) throws JMSException {
-        System.out.println("Consume status Message headers=" + message.getHeaders());
-        System.out.println(message.getPayload().toString());
+    public void receiveStatusMessage(final Message<?> message) {
+        ytiMQService.recordStatus(message);
     }
-*/
-}
\ No newline at end of file
+}
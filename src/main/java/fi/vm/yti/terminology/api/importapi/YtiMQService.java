@@ -4,6 +4,8 @@ import fi.vm.yti.security.AuthenticatedUserProvider;
 import fi.vm.yti.terminology.api.model.termed.GenericDeleteAndSave;
 import fi.vm.yti.terminology.api.model.termed.GenericNode;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,11 +20,13 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.jms.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @EnableJms
@@ -46,36 +50,51 @@ public class YtiMQService {
     public final static int STATUS_READY = 3;
     public final static int STATUS_FAILED = 4;
 
-    private Map<String, Message> currentStatus = new HashMap<>();
+    // Jobs without status updates for this long are no longer tracked for publishing
+    private static final long STALE_JOB_MILLIS = 10 * 60 * 1000;
+
+    // Latest status of each job, status queries are answered from here and queues are browsed only for unknown jobs
+    private final ImportJobRegistry jobRegistry;
+    private final Map<String, PublishedStatus> publishedStatuses = new ConcurrentHashMap<>();
 
     private JmsTemplate jmsTemplate;
 
+    private final long statusPublishIntervalMillis;
+    private final Counter publishedStatusMessages;
+    private final Counter suppressedStatusMessages;
+
     @Autowired
     public YtiMQService(AuthenticatedUserProvider userProvider,
                         JmsMessagingTemplate jmsMessagingTemplate,
                         JmsTemplate jmsTemplate,
-                        @Value("${mq.active.subsystem}") String subSystem) {
+                        MeterRegistry meterRegistry,
+                        @Value("${mq.active.subsystem}") String subSystem,
+                        @Value("${mq.status.publishIntervalMillis:1000}") long statusPublishIntervalMillis,
+                        @Value("${mq.status.retentionSeconds:86400}") long statusRetentionSeconds,
+                        @Value("${mq.status.maxJobs:10000}") long statusMaxJobs) {
         this.userProvider = userProvider;
         this.jmsMessagingTemplate = jmsMessagingTemplate;
         this.jmsTemplate = jmsTemplate;
         this.subSystem = subSystem;
+        this.statusPublishIntervalMillis = statusPublishIntervalMillis;
+        this.jobRegistry = new ImportJobRegistry(statusRetentionSeconds, statusMaxJobs);
+
+        this.publishedStatusMessages = Counter.builder("terminology.import.statusMessages")
+                .description("Import status updates sent to or held back from the status queue")
+                .tag("result", "published")
+                .register(meterRegistry);
+        this.suppressedStatusMessages = Counter.builder("terminology.import.statusMessages")
+                .description("Import status updates sent to or held back from the status queue")
+                .tag("result", "suppressed")
+                .register(meterRegistry);
     }
 
     public HttpStatus getStatus(UUID jobtoken){
 
-        logger.info("IncomingQueue!");
-        browseQueue(subSystem+"Incoming");
-        logger.info("StatusQueue!");
-        browseQueue(subSystem+"Status");
-        logger.info("ProcessingQueue!");
-        browseQueue(subSystem+"Processing");
-        logger.info("ReadyQueue!");
-        browseQueue(subSystem+"Ready");
-        browseQueue(subSystem + "ExcelImport");
         // Status not_found/running/errors
-        Message mess = currentStatus.get(jobtoken.toString());
+        Message<?> mess = jobRegistry.getByJob(jobtoken.toString());
         if (mess != null) {
-            int status = (int)mess.getHeaders().get("status");
+            int status = ImportJobRegistry.status(mess);
             switch(status){
                 case YtiMQService.STATUS_READY:{
                     logger.debug("Import done for {}", jobtoken);
@@ -83,7 +102,7 @@ public class YtiMQService {
                 }
                 case YtiMQService.STATUS_PROCESSING:{
                     logger.debug("Processing {}", jobtoken);
-                    long expirationtime=System.currentTimeMillis() - (long)mess.getHeaders().get("timestamp");
+                    long expirationtime=System.currentTimeMillis() - ImportJobRegistry.statusTime(mess);
                     if( expirationtime > 60 * 1000) {
                         return HttpStatus.OK;
                     } else
@@ -119,13 +138,11 @@ public class YtiMQService {
 
     public HttpStatus getStatus(UUID jobtoken, StringBuffer payload){
         // Status not_found/running/errors
-        // Query status information from ActiveMQ
-        browseQueue("VocabularyStatus");
-        Message mess = currentStatus.get(jobtoken.toString());
+        Message<?> mess = jobRegistry.getByJob(jobtoken.toString());
         if (mess != null) {
             // return also payload
             payload.append(mess.getPayload());
-            int status = (int)mess.getHeaders().get("status");
+            int status = ImportJobRegistry.status(mess);
             switch (status){
                 case YtiMQService.STATUS_READY: {
                     logger.debug("Import done for {}", jobtoken);
@@ -133,8 +150,7 @@ public class YtiMQService {
                 }
                 case YtiMQService.STATUS_PROCESSING: {
                     logger.debug("Processing {}", jobtoken);
-                    logger.debug("Timestamp={}", mess.getHeaders().get("timestamp"));
-                    long expirationtime = System.currentTimeMillis() - (long)mess.getHeaders().get("timestamp");
+                    long expirationtime = System.currentTimeMillis() - ImportJobRegistry.statusTime(mess);
                     logger.debug("current_time-stamp={}", expirationtime);
                     if( expirationtime > 10 * 60 * 1000) {
                         return HttpStatus.OK;
@@ -152,6 +168,7 @@ public class YtiMQService {
             }
         }
 
+        // Query status information from ActiveMQ for jobs not known to this instance
         logger.debug("Processing {}", StringUtils.normalizeSpace(jobtoken.toString()));
 
         if (getJobState(jobtoken, subSystem+"Ready")) {
@@ -189,20 +206,18 @@ public class YtiMQService {
     public boolean checkIfImportIsRunning(String uri) {
         Boolean rv = false;
         // Check cached status first running if not ready
-        Message mess = currentStatus.get(uri);
+        Message<?> mess = jobRegistry.getByUri(uri);
         if (mess != null){
-            int status = (int)mess.getHeaders().get("status");
+            int status = ImportJobRegistry.status(mess);
             logger.debug("YtiMQService checkIfImportIsRunning using cached state:{} \n {}", status, mess);
             if(status == YtiMQService.STATUS_PROCESSING || status == YtiMQService.STATUS_PREPROCESSING) {
-                logger.debug("Timestamp="+(long)mess.getHeaders().get("timestamp"));
-                long expirationtime=System.currentTimeMillis() - (long)mess.getHeaders().get("timestamp");
+                long expirationtime=System.currentTimeMillis() - ImportJobRegistry.statusTime(mess);
                 logger.debug("current_time-stamp="+expirationtime);
                 rv =true;
                 if (expirationtime > 60 * 1000) {
                     logger.info("Status Expired for job:"+(String)mess.getHeaders().get("jobtoken"));
                     // cached item expired, clean it
-                    currentStatus.remove(uri);
-                    currentStatus.remove((String)mess.getHeaders().get("jobtoken"));
+                    jobRegistry.remove(mess);
                     rv = false;
                 }
             }
@@ -388,27 +403,103 @@ public class YtiMQService {
         accessor.setHeader("uri", uri);
         // Set status as int
         accessor.setHeader("status",status);
+        // Time of the status, the latest one is kept when status messages arrive out of order
+        accessor.setHeader(ImportJobRegistry.STATUS_TIME_HEADER, System.currentTimeMillis());
 
         Message mess = MessageBuilder
                 .withPayload(payload)
                 .setHeaders(accessor)
                 .build();
-        // send new  item to Status-queue
-        if(mess != null) {
-            logger.debug("Send status message to queue:");
-            jmsMessagingTemplate.send(subSystem + "Status", mess);
-            jmsTemplate.convertAndSend(subSystem + "Status", mess);
-            // Update internal cache
-            currentStatus.put(jobtoken, mess);
-            currentStatus.put(uri, mess);
-
-            logger.debug("SEND STATUS: {}", mess);
+        // Update internal cache, the latest status is always available locally
+        jobRegistry.record(mess);
+
+        // send new item to Status-queue unless the job was published recently in the same state
+        if (!publishOrHold(status, jobtoken, mess)) {
+            suppressedStatusMessages.increment();
         }
-        logger.debug("Send Status to QUEUE {}", mess);
 
         return mess;
     }
 
+    /**
+     * Records a status message published by this or another instance
+     *
+     * @see fi.vm.yti.terminology.api.importapi.YtiMQListener
+     */
+    public void recordStatus(Message<?> mess) {
+        jobRegistry.record(mess);
+    }
+
+    /**
+     * Publishes the latest held back status of jobs whose status has not been published for the publish interval
+     */
+    @Scheduled(fixedDelayString = "${mq.status.publishIntervalMillis:1000}")
+    void publishPendingStatuses() {
+        long now = System.currentTimeMillis();
+
+        publishedStatuses.forEach((jobtoken, published) -> {
+            // Sent while holding the job so that a status set meanwhile is published after this one
+            synchronized (published) {
+                if (published.pending == null) {
+                    if (now - published.publishedAt > STALE_JOB_MILLIS) {
+                        publishedStatuses.remove(jobtoken, published);
+                    }
+                    return;
+                }
+                if (now - published.publishedAt < statusPublishIntervalMillis) {
+                    return;
+                }
+                publishStatus(published.pending);
+                published.pending = null;
+                published.publishedAt = now;
+            }
+        });
+    }
+
+    /**
+     * Transitions and terminal states are always published, other updates when the job's status has not been
+     * published for the publish interval. Updates held back are kept as the pending status of the job.
+     * Statuses of a job are sent while holding the job, so they are published in the order they were set.
+     *
+     * @return false if the status was held back
+     */
+    private boolean publishOrHold(int status, String jobtoken, Message mess) {
+        long now = System.currentTimeMillis();
+        boolean terminal = status == STATUS_READY || status == STATUS_FAILED;
+
+        PublishedStatus published = publishedStatuses.computeIfAbsent(jobtoken, token -> new PublishedStatus());
+        boolean publish;
+
+        synchronized (published) {
+            publish = terminal
+                    || published.status != status
+                    || now - published.publishedAt >= statusPublishIntervalMillis;
+            if (publish) {
+                publishStatus(mess);
+                published.status = status;
+                published.publishedAt = now;
+                published.pending = null;
+            } else {
+                published.pending = mess;
+            }
+        }
+
+        if (terminal) {
+            publishedStatuses.remove(jobtoken, published);
+        }
+
+        return publish;
+    }
+
+    private void publishStatus(Message mess) {
+        logger.debug("Send status message to queue:");
+        jmsMessagingTemplate.send(subSystem + "Status", mess);
+        jmsTemplate.convertAndSend(subSystem + "Status", mess);
+        publishedStatusMessages.increment();
+
+        logger.debug("SEND STATUS: {}", mess);
+    }
+
     /**
      * Send batches to queue
      *
@@ -461,4 +552,11 @@ public class YtiMQService {
         accessor.setHeader("JMSCorrelationID", jobToken.toString());
         return accessor;
     }
+
+    private static final class PublishedStatus {
+
+        private int status;
+        private long publishedAt;
+        private Message pending;
+    }
 }
@@ -1,16 +1,16 @@
 package fi.vm.yti.terminology.api.index;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import fi.vm.yti.terminology.api.util.IndexUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.*;
 
 import static fi.vm.yti.terminology.api.util.JsonUtils.*;
-import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 
 final class Concept {
@@ -57,7 +57,8 @@ final class Concept {
         this.hiddenTerm = hiddenTerm;
         this.notRecommendedSynonym = notRecommendedSynonym;
         this.definition = definition;
-        this.status = status != null ? status : "DRAFT";
+        String normalizedStatus = IndexUtil.normalizeStatus(status);
+        this.status = normalizedStatus != null ? normalizedStatus : "DRAFT";
         this.broaderIds = broaderIds;
         this.narrowerIds = narrowerIds;
         this.createdDate = createdDate;
@@ -66,11 +67,11 @@ final class Concept {
     }
 
     private static @NotNull Concept createFromTermedNodes(@NotNull JsonNode conceptJson,
-                                                          @NotNull List<JsonNode> prefLabelXlReferences,
-                                                          @NotNull List<JsonNode> altLabelXlReferences,
-                                                          @NotNull List<JsonNode> searchTermReferences,
-                                                          @NotNull List<JsonNode> hiddenTermReferences,
-                                                          @NotNull List<JsonNode> notRecommendedSynonymReferences,
+                                                          @NotNull Map<String, List<String>> prefLabelXl,
+                                                          @NotNull Map<String, List<String>> altLabelXl,
+                                                          @NotNull Map<String, List<String>> searchTermXl,
+                                                          @NotNull Map<String, List<String>> hiddenTermXl,
+                                                          @NotNull Map<String, List<String>> notRecommendedSynonymXl,
                                                           @NotNull Vocabulary vocabulary) {
 
         UUID id = UUID.fromString(conceptJson.get("id").textValue());
@@ -83,37 +84,27 @@ final class Concept {
         Map<String, List<String>> label =
                 properties.has("prefLabel")
                         ? localizableFromTermedProperties(properties, "prefLabel")
-                        : !prefLabelXlReferences.isEmpty()
-                        ? localizableFromTermReferences(prefLabelXlReferences, "prefLabel")
-                        : Collections.emptyMap();
+                        : prefLabelXl;
 
         Map<String, List<String>> altLabel =
                 properties.has("altLabel")
                         ? localizableFromTermedProperties(properties, "altLabel")
-                        : !altLabelXlReferences.isEmpty()
-                        ? localizableFromTermReferences(altLabelXlReferences, "prefLabel")
-                        : Collections.emptyMap();
+                        : altLabelXl;
 
         Map<String, List<String>> searchTerm =
             properties.has("searchTerm")
                 ? localizableFromTermedProperties(properties, "searchTerm")
-                : !searchTermReferences.isEmpty()
-                    ? localizableFromTermReferences(searchTermReferences, "prefLabel")
-                    : Collections.emptyMap();
+                : searchTermXl;
 
         Map<String, List<String>> hiddenTerm =
             properties.has("hiddenTerm")
                 ? localizableFromTermedProperties(properties, "hiddenTerm")
-                : !hiddenTermReferences.isEmpty()
-                    ? localizableFromTermReferences(hiddenTermReferences, "prefLabel")
-                    : Collections.emptyMap();
+                : hiddenTermXl;
 
         Map<String, List<String>> notRecommendedSynonym =
             properties.has("notRecommendedSynonym")
                 ? localizableFromTermedProperties(properties, "notRecommendedSynonym")
-                : !notRecommendedSynonymReferences.isEmpty()
-                    ? localizableFromTermReferences(notRecommendedSynonymReferences, "prefLabel")
-                    : Collections.emptyMap();
+                : notRecommendedSynonymXl;
 
         Map<String, List<String>> definition = localizableFromTermedProperties(properties, "definition");
 
@@ -131,98 +122,49 @@ final class Concept {
 
         JsonNode references = json.get("references");
 
-        List<JsonNode> prefLabelXlReferences = references.has("prefLabelXl")
-                ? asStream(references.get("prefLabelXl")).collect(toList())
-                : Collections.emptyList();
-
-        List<JsonNode> altLabelXlReferences = references.has("altLabelXl")
-                ? asStream(references.get("altLabelXl")).collect(toList())
-                : Collections.emptyList();
-
-        List<JsonNode> notRecommendedSynonymReferences = references.has("notRecommendedSynonym")
-            ? asStream(references.get("notRecommendedSynonym")).collect(toList())
-            : Collections.emptyList();
-
-        List<JsonNode> searchTermReferences = references.has("searchTerm")
-            ? asStream(references.get("searchTerm")).collect(toList())
-            : Collections.emptyList();
-
-        List<JsonNode> hiddenTermReferences = references.has("hiddenTermReferences")
-            ? asStream(references.get("hiddenTermReferences")).collect(toList())
-            : Collections.emptyList();
-
-        return createFromTermedNodes(json, prefLabelXlReferences, altLabelXlReferences, searchTermReferences, hiddenTermReferences, notRecommendedSynonymReferences, vocabulary);
+        return createFromTermedNodes(json,
+                localizableFromTermReferences(termReferences(references, "prefLabelXl"), "prefLabel"),
+                localizableFromTermReferences(termReferences(references, "altLabelXl"), "prefLabel"),
+                localizableFromTermReferences(termReferences(references, "searchTerm"), "prefLabel"),
+                localizableFromTermReferences(termReferences(references, "hiddenTermReferences"), "prefLabel"),
+                localizableFromTermReferences(termReferences(references, "notRecommendedSynonym"), "prefLabel"),
+                vocabulary);
     }
 
-    static @NotNull Concept createFromAllNodeResult(@NotNull UUID conceptId, @NotNull UUID vocabularyId, @NotNull AllNodesResult allNodesResult) {
-
-        JsonNode conceptJson = requireNonNull(allNodesResult.getNode(conceptId, "Concept"));
-        JsonNode vocabularyJson = requireNonNull(allNodesResult.getNode(vocabularyId));        
-        Vocabulary vocabulary = Vocabulary.createFromExtJson(vocabularyJson);
+    /**
+     * @param termLabels prefLabels of the terms of the graph, as read by {@link TermedGraphReader#readTermLabels}
+     */
+    static @NotNull Concept createFromStreamedNode(@NotNull JsonNode conceptJson,
+                                                   @NotNull Vocabulary vocabulary,
+                                                   @NotNull Map<UUID, String[]> termLabels) {
 
+        UUID id = UUID.fromString(conceptJson.get("id").textValue());
         JsonNode references = conceptJson.get("references");
 
-        List<JsonNode> prefLabelXLReferences =
-                getReferenceIdsFromTermedReferences(references, "prefLabelXl", "Term").stream()
-                        .map(refId -> {
-                            JsonNode term = allNodesResult.getNode(refId, "Term");
-
-                            if (term == null)
-                                throw new BrokenTermedDataLinkException(vocabulary, refId);
-
-                            return term;
-                        })
-                        .collect(toList());
-
-        List<JsonNode> altLabelXLReferences =
-                getReferenceIdsFromTermedReferences(references, "altLabelXl", "Term").stream()
-                        .map(refId -> {
-                            JsonNode term = allNodesResult.getNode(refId, "Term");
-
-                            if (term == null)
-                                throw new BrokenTermedDataLinkException(vocabulary, refId);
-
-                            return term;
-                        })
-                        .collect(toList());
-
-        List<JsonNode> searchTermReferences =
-            getReferenceIdsFromTermedReferences(references, "searchTerm", "Term").stream()
-                .map(refId -> {
-                    JsonNode term = allNodesResult.getNode(refId, "Term");
-
-                    if (term == null)
-                        throw new BrokenTermedDataLinkException(vocabulary, refId);
-
-                    return term;
-                })
-                .collect(toList());
-
-        List<JsonNode> hiddenTermReferences =
-            getReferenceIdsFromTermedReferences(references, "hiddenTerm", "Term").stream()
-                .map(refId -> {
-                    JsonNode term = allNodesResult.getNode(refId, "Term");
-
-                    if (term == null)
-                        throw new BrokenTermedDataLinkException(vocabulary, refId);
-
-                    return term;
-                })
-                .collect(toList());
-
-        List<JsonNode> notRecommendedSynonymReferences =
-            getReferenceIdsFromTermedReferences(references, "notRecommendedSynonym", "Term").stream()
-                .map(refId -> {
-                    JsonNode term = allNodesResult.getNode(refId, "Term");
-
-                    if (term == null)
-                        throw new BrokenTermedDataLinkException(vocabulary, refId);
+        return createFromTermedNodes(conceptJson,
+                termLabels(id, references, "prefLabelXl", termLabels, vocabulary),
+                termLabels(id, references, "altLabelXl", termLabels, vocabulary),
+                termLabels(id, references, "searchTerm", termLabels, vocabulary),
+                termLabels(id, references, "hiddenTerm", termLabels, vocabulary),
+                termLabels(id, references, "notRecommendedSynonym", termLabels, vocabulary),
+                vocabulary);
+    }
 
-                    return term;
-                })
-                .collect(toList());
+    private static @NotNull List<JsonNode> termReferences(@NotNull JsonNode references, @NotNull String referenceName) {
+        return references.has(referenceName)
+                ? asStream(references.get(referenceName)).collect(toList())
+                : Collections.emptyList();
+    }
 
-        return createFromTermedNodes(conceptJson, prefLabelXLReferences, altLabelXLReferences, searchTermReferences, hiddenTermReferences, notRecommendedSynonymReferences, vocabulary);
+    private static @NotNull Map<String, List<String>> termLabels(@NotNull UUID conceptId,
+                                                                 @NotNull JsonNode references,
+                                                                 @NotNull String referenceName,
+                                                                 @NotNull Map<UUID, String[]> termLabels,
+                                                                 @NotNull Vocabulary vocabulary) {
+        List<UUID> termIds = getReferenceIdsFromTermedReferences(references, referenceName, "Term");
+        return termIds.isEmpty()
+                ? Collections.emptyMap()
+                : TermedGraphReader.localizableFromTermLabels(conceptId, termIds, termLabels, vocabulary);
     }
 
     static @NotNull Concept createFromIndex(ObjectMapper mapper, @NotNull JsonNode json) {
@@ -248,7 +190,7 @@ final class Concept {
     private static @NotNull List<UUID> getReferenceIdsFromTermedReferences(@NotNull JsonNode references, @NotNull String referenceName, @NotNull String typeRequirement) {
         if (references.has(referenceName)) {
             return asStream(references.get(referenceName))
-                    .filter(node -> AllNodesResult.typeIs(node, typeRequirement))
+                    .filter(node -> TermedGraphReader.typeIs(node, typeRequirement))
                     .map(node -> UUID.fromString(node.get("id").textValue()))
                     .collect(toList());
         } else {
@@ -272,41 +214,42 @@ final class Concept {
         return narrowerIds;
     }
 
-    @NotNull JsonNode toElasticSearchDocument(ObjectMapper mapper) {
+    void writeElasticSearchDocument(@NotNull JsonGenerator generator) throws IOException {
 
-        ObjectNode output = mapper.createObjectNode();
+        generator.writeStartObject();
 
-        output.put("id", id.toString());
-        output.set("broader", listToJson(mapper, broaderIds));
-        output.set("narrower", listToJson(mapper, narrowerIds));
-        output.set("definition", localizableToJson(mapper, definition));
-        output.set("label", localizableToJson(mapper, label));
-        output.set("altLabel", localizableToJson(mapper, altLabel));
-        output.set("searchTerm", localizableToJson(mapper, searchTerm));
-        output.set("hiddenTerm", localizableToJson(mapper, hiddenTerm));
-        output.set("notRecommendedSynonym", localizableToJson(mapper, notRecommendedSynonym));
-        output.set("sortByLabel", localizableToJson(mapper, IndexUtil.createSortLabels(label)));
+        generator.writeStringField("id", id.toString());
+        writeList(generator, "broader", broaderIds);
+        writeList(generator, "narrower", narrowerIds);
+        writeLocalizable(generator, "definition", definition);
+        writeLocalizable(generator, "label", label);
+        writeLocalizable(generator, "altLabel", altLabel);
+        writeLocalizable(generator, "searchTerm", searchTerm);
+        writeLocalizable(generator, "hiddenTerm", hiddenTerm);
+        writeLocalizable(generator, "notRecommendedSynonym", notRecommendedSynonym);
+        writeLocalizable(generator, "sortByLabel", IndexUtil.createSortLabels(label));
 
         if (createdDate != null) {
-            output.put("created", createdDate);
+            generator.writeStringField("created", createdDate);
         }
 
         if (lastModifiedDate != null) {
-            output.put("modified", lastModifiedDate);
+            generator.writeStringField("modified", lastModifiedDate);
         }
 
-        output.put("hasNarrower",narrowerIds.size() > 0);
+        generator.writeBooleanField("hasNarrower", narrowerIds.size() > 0);
 
         if (status != null) {
-            output.put("status", status);
+            generator.writeStringField("status", status);
         }
 
         if (uri != null) {
-            output.put("uri", uri);
+            generator.writeStringField("uri", uri);
         }
 
-        output.set("vocabulary", vocabulary.toElasticSearchObject(mapper));
+        generator.writeFieldName("vocabulary");
+        vocabulary.writeElasticSearchObject(generator);
 
-        return output;
+        generator.writeEndObject();
     }
 }
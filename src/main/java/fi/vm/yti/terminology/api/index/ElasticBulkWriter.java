@@ -0,0 +1,356 @@
+package fi.vm.yti.terminology.api.index;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.vm.yti.terminology.api.exception.ElasticEndpointException;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static fi.vm.yti.terminology.api.util.ElasticRequestUtils.responseContentAsString;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+
+/**
+ * Writes bulk actions as NDJSON into a reusable buffer and sends them to Elasticsearch in chunks bounded by
+ * byte size and action count. Documents are generated straight into the buffer without intermediate JSON
+ * trees or strings. Per item results of the _bulk response are checked and only the items that failed with
+ * a retryable status are sent again.
+ *
+ * Not thread safe, create one writer per bulk operation.
+ */
+final class ElasticBulkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ElasticBulkWriter.class);
+
+    // Content type changed for elastic search 6.x
+    private static final ContentType CONTENT_TYPE = ContentType.create("application/json", StandardCharsets.UTF_8);
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    private final RestClient esRestClient;
+    private final ObjectMapper objectMapper;
+    private final int maxBytes;
+    private final int maxActions;
+    private final int maxRetries;
+    private final boolean waitForRefresh;
+
+    private final BulkBuffer buffer = new BulkBuffer();
+    private JsonGenerator generator;
+    private final List<BulkItem> items = new ArrayList<>();
+    // Indices written by chunks sent without refresh, refreshed by finish() if it has nothing left to send
+    private final Set<String> unrefreshedIndices = new LinkedHashSet<>();
+    private final Set<String> bufferedIndices = new LinkedHashSet<>();
+
+    private int succeeded;
+    private int failed;
+
+    ElasticBulkWriter(@NotNull RestClient esRestClient,
+                      @NotNull ObjectMapper objectMapper,
+                      int maxBytes,
+                      int maxActions,
+                      int maxRetries,
+                      boolean waitForRefresh) {
+        this.esRestClient = esRestClient;
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+        this.maxActions = maxActions;
+        this.maxRetries = maxRetries;
+        this.waitForRefresh = waitForRefresh;
+
+        this.generator = createGenerator();
+    }
+
+    /**
+     * Writes the document of an index action, a source failing half way leaves nothing in the buffer.
+     */
+    void index(@NotNull String index, @NotNull String type, @NotNull String id, @NotNull DocumentSource source) {
+        int offset = buffer.size();
+        try {
+            writeActionMeta("index", index, type, id);
+            source.writeTo(generator);
+            generator.flush();
+            buffer.write('\n');
+        } catch (IOException e) {
+            discardFrom(offset);
+            throw new ElasticEndpointException(e);
+        } catch (RuntimeException e) {
+            discardFrom(offset);
+            throw e;
+        }
+        itemWritten("index", index, id, offset);
+    }
+
+    void delete(@NotNull String index, @NotNull String type, @NotNull String id) {
+        int offset = buffer.size();
+        try {
+            writeActionMeta("delete", index, type, id);
+        } catch (IOException e) {
+            throw new ElasticEndpointException(e);
+        }
+        itemWritten("delete", index, id, offset);
+    }
+
+    /**
+     * Sends the remaining buffered actions.
+     *
+     * @return true if every action written to this writer succeeded
+     */
+    boolean finish() {
+        if (!items.isEmpty()) {
+            flush(waitForRefresh);
+        } else if (waitForRefresh && !unrefreshedIndices.isEmpty()) {
+            // the last action filled a chunk which was sent without refresh
+            refresh();
+        }
+        return failed == 0;
+    }
+
+    int getSucceeded() {
+        return succeeded;
+    }
+
+    int getFailed() {
+        return failed;
+    }
+
+    private void discardFrom(int offset) {
+        buffer.truncate(offset);
+        // the generator may have been left inside the unfinished document
+        generator = createGenerator();
+    }
+
+    private @NotNull JsonGenerator createGenerator() {
+        try {
+            JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(buffer);
+            jsonGenerator.setRootValueSeparator(null);
+            return jsonGenerator;
+        } catch (IOException e) {
+            throw new ElasticEndpointException(e);
+        }
+    }
+
+    private void writeActionMeta(@NotNull String action,
+                                 @NotNull String index,
+                                 @NotNull String type,
+                                 @NotNull String id) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart(action);
+        generator.writeStringField("_index", index);
+        generator.writeStringField("_type", type);
+        generator.writeStringField("_id", id);
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+        buffer.write('\n');
+    }
+
+    private void itemWritten(@NotNull String action, @NotNull String index, @NotNull String id, int offset) {
+        items.add(new BulkItem(action, id, offset, buffer.size() - offset));
+        bufferedIndices.add(index);
+
+        if (items.size() >= maxActions || buffer.size() >= maxBytes) {
+            flush(false);
+        }
+    }
+
+    private void flush(boolean refresh) {
+
+        if (items.isEmpty()) {
+            return;
+        }
+
+        send(buffer.bytes(), buffer.size(), items, refresh);
+        buffer.reset();
+        items.clear();
+
+        if (refresh) {
+            unrefreshedIndices.clear();
+        } else {
+            unrefreshedIndices.addAll(bufferedIndices);
+        }
+        bufferedIndices.clear();
+    }
+
+    private void refresh() {
+
+        String endpoint = "/" + String.join(",", unrefreshedIndices) + "/_refresh";
+
+        try {
+            Response response = esRestClient.performRequest("POST", endpoint);
+            if (response.getStatusLine().getStatusCode() >= 300) {
+                log.warn("Unable to refresh " + unrefreshedIndices + ", status " + response.getStatusLine().getStatusCode());
+            }
+        } catch (ResponseException e) {
+            log.warn("Unable to refresh " + unrefreshedIndices + ": " + responseContentAsString(e.getResponse()));
+        } catch (IOException e) {
+            throw new ElasticEndpointException(e);
+        }
+        unrefreshedIndices.clear();
+    }
+
+    private void send(byte[] body, int length, @NotNull List<BulkItem> bulkItems, boolean refresh) {
+
+        Map<String, String> params = refresh ? singletonMap("refresh", "wait_for") : emptyMap();
+
+        for (int attempt = 0; ; attempt++) {
+
+            Response response = post(params, body, length);
+            int status = response.getStatusLine().getStatusCode();
+
+            if (status < 200 || status >= 300) {
+                if (isRetryable(status) && attempt < maxRetries && backOff(attempt)) {
+                    log.warn("Bulk request of " + bulkItems.size() + " actions rejected with status " + status + ", retrying");
+                    continue;
+                }
+                log.warn("Unable to send bulk request of " + bulkItems.size() + " actions to elasticsearch index, status " + status);
+                log.info(responseContentAsString(response));
+                failed += bulkItems.size();
+                return;
+            }
+
+            List<BulkItem> retryItems = checkItemResults(response, bulkItems);
+
+            if (retryItems.isEmpty()) {
+                return;
+            }
+
+            if (attempt >= maxRetries || !backOff(attempt)) {
+                log.warn("Giving up on " + retryItems.size() + " failed bulk actions after " + attempt + " retries");
+                failed += retryItems.size();
+                return;
+            }
+
+            log.info("Retrying " + retryItems.size() + " failed bulk actions");
+            length = retryItems.stream().mapToInt(item -> item.length).sum();
+            byte[] retryBody = new byte[length];
+            List<BulkItem> compacted = new ArrayList<>(retryItems.size());
+            int offset = 0;
+            for (BulkItem item : retryItems) {
+                System.arraycopy(body, item.offset, retryBody, offset, item.length);
+                compacted.add(new BulkItem(item.action, item.id, offset, item.length));
+                offset += item.length;
+            }
+            body = retryBody;
+            bulkItems = compacted;
+        }
+    }
+
+    private @NotNull List<BulkItem> checkItemResults(@NotNull Response response, @NotNull List<BulkItem> bulkItems) {
+
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(response.getEntity().getContent());
+        } catch (IOException e) {
+            throw new ElasticEndpointException(e);
+        }
+
+        if (!json.path("errors").asBoolean()) {
+            succeeded += bulkItems.size();
+            return new ArrayList<>();
+        }
+
+        List<BulkItem> retryItems = new ArrayList<>();
+        JsonNode results = json.path("items");
+
+        for (int i = 0; i < bulkItems.size(); i++) {
+            BulkItem item = bulkItems.get(i);
+            JsonNode result = results.path(i).path(item.action);
+            int status = result.path("status").asInt();
+
+            if ((status >= 200 && status < 300) || ("delete".equals(item.action) && status == 404)) {
+                succeeded++;
+            } else if (isRetryable(status)) {
+                retryItems.add(item);
+            } else {
+                log.warn("Unable to " + item.action + " document " + item.id + " in elasticsearch index, status "
+                        + status + ": " + result.path("error"));
+                failed++;
+            }
+        }
+
+        return retryItems;
+    }
+
+    private @NotNull Response post(@NotNull Map<String, String> params, byte[] body, int length) {
+        try {
+            return esRestClient.performRequest("POST", "/_bulk", params, new NByteArrayEntity(body, 0, length, CONTENT_TYPE));
+        } catch (ResponseException e) {
+            return e.getResponse();
+        } catch (IOException e) {
+            throw new ElasticEndpointException(e);
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private static boolean backOff(int attempt) {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS << attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Writes a single JSON document with the given generator.
+     */
+    @FunctionalInterface
+    interface DocumentSource {
+
+        void writeTo(@NotNull JsonGenerator generator) throws IOException;
+    }
+
+    private static final class BulkItem {
+
+        private final String action;
+        private final String id;
+        private final int offset;
+        private final int length;
+
+        private BulkItem(String action, String id, int offset, int length) {
+            this.action = action;
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Byte buffer whose backing array is kept between chunks and handed to the HTTP entity without copying.
+     */
+    private static final class BulkBuffer extends ByteArrayOutputStream {
+
+        private BulkBuffer() {
+            super(64 * 1024);
+        }
+
+        private byte[] bytes() {
+            return buf;
+        }
+
+        private void truncate(int size) {
+            count = size;
+        }
+    }
+}
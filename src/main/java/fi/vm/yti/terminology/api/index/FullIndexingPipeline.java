@@ -0,0 +1,193 @@
+package fi.vm.yti.terminology.api.index;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Indexes concepts of several graphs in two stages: graphs are streamed from Termed on a pool of threads
+ * and their concepts are emitted in chunks, the chunks are serialized and bulk sent to Elasticsearch on
+ * the calling thread. Stages are connected with a bounded queue so a slow sender blocks the fetchers
+ * instead of piling concepts up in memory.
+ */
+final class FullIndexingPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(FullIndexingPipeline.class);
+
+    private final IndexTermedService termedApiService;
+    private final int fetchThreads;
+    private final int queueSize;
+    private final int chunkSize;
+
+    FullIndexingPipeline(@NotNull IndexTermedService termedApiService,
+                         int fetchThreads,
+                         int queueSize,
+                         int chunkSize) {
+        this.termedApiService = termedApiService;
+        this.fetchThreads = Math.max(1, fetchThreads);
+        this.queueSize = Math.max(1, queueSize);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * @param graphIds graphs to index
+     * @param sender   serializes and bulk sends a chunk of concepts of a single graph
+     * @throws RuntimeException the first failure of any stage, after the remaining stages have been stopped
+     */
+    void run(@NotNull List<UUID> graphIds, @NotNull BiConsumer<UUID, List<Concept>> sender) {
+
+        if (graphIds.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        BlockingQueue<Chunk> fetched = new ArrayBlockingQueue<>(queueSize);
+
+        ExecutorService fetchPool = Executors.newFixedThreadPool(fetchThreads, threadFactory("index-fetch-"));
+
+        Map<UUID, GraphStats> stats = new HashMap<>();
+        int conceptCount = 0;
+
+        try {
+            for (UUID graphId : graphIds) {
+                fetchPool.execute(() -> fetch(graphId, fetched));
+            }
+
+            int remaining = graphIds.size();
+            while (remaining > 0) {
+                Chunk chunk = take(fetched);
+
+                if (chunk.failure != null) {
+                    throw chunk.failure;
+                }
+
+                GraphStats graphStats = stats.computeIfAbsent(chunk.graphId, id -> new GraphStats());
+                long sendStart = System.currentTimeMillis();
+                if (!chunk.concepts.isEmpty()) {
+                    sender.accept(chunk.graphId, chunk.concepts);
+                }
+                graphStats.sendMillis += System.currentTimeMillis() - sendStart;
+                graphStats.concepts += chunk.concepts.size();
+                conceptCount += chunk.concepts.size();
+
+                if (chunk.last) {
+                    remaining--;
+                    stats.remove(chunk.graphId);
+                    log.info("Graph:" + StringUtils.normalizeSpace(chunk.graphId.toString()) + " Indexed " + graphStats.concepts
+                            + " concepts (fetch " + chunk.fetchMillis + "ms, send " + graphStats.sendMillis + "ms)");
+                }
+            }
+        } finally {
+            fetchPool.shutdownNow();
+        }
+
+        long took = System.currentTimeMillis() - start;
+        log.info("Indexed " + conceptCount + " concepts from " + graphIds.size() + " graphs in " + took + "ms ("
+                + (took > 0 ? conceptCount * 1000L / took : conceptCount) + " concepts/s, " + fetchThreads + " fetch threads)");
+    }
+
+    /**
+     * Streams the concepts of the graph and queues them in chunks, the last chunk of a graph is always
+     * queued, carrying the failure if reading the graph failed.
+     */
+    private void fetch(@NotNull UUID graphId, @NotNull BlockingQueue<Chunk> fetched) {
+        long start = System.currentTimeMillis();
+        List<Concept> buffer = new ArrayList<>(chunkSize);
+        try {
+            try {
+                termedApiService.readAllConceptsForGraph(graphId, concept -> {
+                    buffer.add(concept);
+                    if (buffer.size() >= chunkSize) {
+                        put(fetched, new Chunk(graphId, new ArrayList<>(buffer), false, null, 0));
+                        buffer.clear();
+                    }
+                });
+                put(fetched, new Chunk(graphId, new ArrayList<>(buffer), true, null, System.currentTimeMillis() - start));
+            } catch (PipelineInterruptedException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                put(fetched, new Chunk(graphId, emptyList(), true, e, System.currentTimeMillis() - start));
+            }
+        } catch (PipelineInterruptedException e) {
+            log.debug("Fetch of graph " + graphId + " stopped");
+        }
+    }
+
+    private static <T> void put(@NotNull BlockingQueue<T> queue, @NotNull T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipelineInterruptedException(e);
+        }
+    }
+
+    private static <T> @NotNull T take(@NotNull BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipelineInterruptedException(e);
+        }
+    }
+
+    private static @NotNull ThreadFactory threadFactory(@NotNull String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class PipelineInterruptedException extends RuntimeException {
+
+        private PipelineInterruptedException(@NotNull InterruptedException cause) {
+            super("Indexing pipeline interrupted", cause);
+        }
+    }
+
+    private static final class GraphStats {
+
+        private int concepts;
+        private long sendMillis;
+    }
+
+    private static final class Chunk {
+
+        private final UUID graphId;
+        private final List<Concept> concepts;
+        private final boolean last;
+        private final RuntimeException failure;
+        private final long fetchMillis;
+
+        private Chunk(@NotNull UUID graphId,
+                      @NotNull List<Concept> concepts,
+                      boolean last,
+                      @Nullable RuntimeException failure,
+                      long fetchMillis) {
+            this.graphId = graphId;
+            this.concepts = concepts;
+            this.last = last;
+            this.failure = failure;
+            this.fetchMillis = fetchMillis;
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package fi.vm.yti.terminology.api.index;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import fi.vm.yti.terminology.api.exception.ElasticEndpointException;
 import fi.vm.yti.terminology.api.util.RestHighLevelClientWrapper;
@@ -23,14 +24,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PreDestroy;
 import java.io.*;
-import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -47,6 +53,10 @@ public class IndexElasticSearchService {
 
     private static final Logger log = LoggerFactory.getLogger(IndexElasticSearchService.class);
 
+    private static final String CONCEPT_INDEX = "concepts";
+    private static final String VOCABULARY_INDEX = "vocabularies";
+    private static final DateTimeFormatter INDEX_SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
+
     private final RestClient esRestClient;
     private final RestHighLevelClientWrapper esHiLvClient;
 
@@ -57,9 +67,20 @@ public class IndexElasticSearchService {
 
     private final String indexMappingType;
     private final boolean deleteIndexOnAppRestart;
+    private final boolean useIndexAliases;
+    private final int indexingFetchThreads;
+    private final int indexingQueueSize;
+    private final int bulkMaxBytes;
+    private final int bulkMaxActions;
+    private final int bulkMaxRetries;
+    private final int mgetMaxIds;
+
+    private final AtomicBoolean aliasReindexRunning = new AtomicBoolean();
+    private final Set<UUID> graphsChangedDuringReindex = ConcurrentHashMap.newKeySet();
 
     private final IndexTermedService termedApiService;
     private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public IndexElasticSearchService(
@@ -68,22 +89,45 @@ public class IndexElasticSearchService {
             @Value("${elasticsearch.index.name}") String indexName,
             @Value("${elasticsearch.index.mapping.type}") String indexMappingType,
             @Value("${elasticsearch.index.deleteIndexOnAppRestart}") boolean deleteIndexOnAppRestart,
+            @Value("${elasticsearch.index.aliases.enabled:false}") boolean useIndexAliases,
+            @Value("${elasticsearch.index.pipeline.fetchThreads:4}") int indexingFetchThreads,
+            @Value("${elasticsearch.index.pipeline.queueSize:4}") int indexingQueueSize,
+            @Value("${elasticsearch.bulk.maxBytes:5242880}") int bulkMaxBytes,
+            @Value("${elasticsearch.bulk.maxActions:1000}") int bulkMaxActions,
+            @Value("${elasticsearch.bulk.maxRetries:3}") int bulkMaxRetries,
+            @Value("${elasticsearch.mget.maxIds:1000}") int mgetMaxIds,
             IndexTermedService termedApiService,
             ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher,
             final RestHighLevelClientWrapper esHiLvClient) {
         this.createIndexFilename = createIndexFilename;
         this.createMappingsFilename = createMappingsFilename;
         this.indexName = indexName;
         this.indexMappingType = indexMappingType;
         this.deleteIndexOnAppRestart = deleteIndexOnAppRestart;
+        this.useIndexAliases = useIndexAliases;
+        this.indexingFetchThreads = indexingFetchThreads;
+        this.indexingQueueSize = indexingQueueSize;
+        this.bulkMaxBytes = bulkMaxBytes;
+        this.bulkMaxActions = bulkMaxActions;
+        this.bulkMaxRetries = bulkMaxRetries;
+        this.mgetMaxIds = mgetMaxIds;
         this.termedApiService = termedApiService;
         this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
         this.esRestClient = esHiLvClient.getLowLevelClient();
         this.esHiLvClient = esHiLvClient; // Use that for resource api
     }
 
     public void initIndex() {
 
+        if (useIndexAliases) {
+            if (deleteIndexOnAppRestart || !indexExists(CONCEPT_INDEX) || !indexExists(VOCABULARY_INDEX)) {
+                reindexIntoNewIndices();
+            }
+            return;
+        }
+
         String[] indexNames = indexName.split(",");
         String[] indexMaps = createMappingsFilename.split(",");
         String[] indexMappingTypes = indexMappingType.split(",");
@@ -109,21 +153,165 @@ public class IndexElasticSearchService {
     }
 
     public void reindex() {
+        if (useIndexAliases) {
+            reindexIntoNewIndices();
+            return;
+        }
         log.info("Starting reindexing task..");
         // Clean vocabularies
-        deleteAllDocumentsFromNamedIndex("vocabularies");
+        deleteAllDocumentsFromNamedIndex(VOCABULARY_INDEX);
         this.deleteAllDocumentsFromIndex();
         this.doFullIndexing();
         log.info("Finished reindexing!");
     }
 
+    /**
+     * Builds all documents into fresh timestamped indices while the old ones keep serving searches
+     * and then atomically points the index aliases to the new indices, dropping the old ones.
+     * Graphs touched by notifications during the build are indexed again before and after the swap.
+     */
+    private void reindexIntoNewIndices() {
+
+        if (!aliasReindexRunning.compareAndSet(false, true)) {
+            log.warn("Reindexing into new indices already in progress, skipping");
+            return;
+        }
+
+        log.info("Starting reindexing into new indices..");
+        long start = System.currentTimeMillis();
+        graphsChangedDuringReindex.clear();
+
+        String suffix = INDEX_SUFFIX_FORMAT.format(Instant.now());
+        String[] aliases = indexName.split(",");
+        String[] indexMaps = createMappingsFilename.split(",");
+        String[] indexMappingTypes = indexMappingType.split(",");
+        Map<String, String> newIndices = new LinkedHashMap<>();
+        boolean swapped = false;
+
+        try {
+            for (int x = 0; x < aliases.length; x++) {
+                String alias = aliases[x].trim();
+                String newIndex = alias + "_" + suffix;
+                if (!createIndex(newIndex) || !createMapping(newIndex, indexMaps[x].trim(), indexMappingTypes[x].trim())) {
+                    log.error("Unable to create new index " + newIndex + ", reindexing aborted");
+                    return;
+                }
+                newIndices.put(alias, newIndex);
+            }
+
+            String conceptIndex = newIndices.get(CONCEPT_INDEX);
+            String vocabularyIndex = newIndices.get(VOCABULARY_INDEX);
+
+            doFullIndexing(conceptIndex, vocabularyIndex);
+            reindexChangedGraphs(conceptIndex, vocabularyIndex);
+            refreshIndices(newIndices.values());
+
+            swapped = swapAliases(newIndices);
+            if (swapped) {
+                vocabularyIndexChanged(null);
+                eventPublisher.publishEvent(new IndexUpdatedEvent(null));
+                // Notifications handled between the catch-up and the swap were written to the old indices
+                reindexChangedGraphs(CONCEPT_INDEX, VOCABULARY_INDEX);
+                log.info("Finished reindexing into " + newIndices.values() + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        } finally {
+            if (!swapped) {
+                newIndices.values().forEach(this::deleteIndex);
+            }
+            graphsChangedDuringReindex.clear();
+            aliasReindexRunning.set(false);
+        }
+    }
+
+    private void reindexChangedGraphs(@NotNull String conceptIndex, @NotNull String vocabularyIndex) {
+
+        List<UUID> graphIds = new ArrayList<>(graphsChangedDuringReindex);
+        graphsChangedDuringReindex.removeAll(graphIds);
+
+        for (UUID graphId : graphIds) {
+            log.info("Reindexing graph " + graphId + " changed during reindexing");
+            deleteDocumentsByQuery(conceptIndex, "vocabulary.id", graphId);
+            deleteDocumentsByQuery(vocabularyIndex, "type.graph.id", graphId);
+            reindexGivenVocabulary(graphId, vocabularyIndex);
+            reindexGraph(graphId, conceptIndex, false);
+        }
+    }
+
+    private void refreshIndices(@NotNull Collection<String> indices) {
+
+        String endpoint = "/" + String.join(",", indices) + "/_refresh";
+        Response response = alsoUnsuccessful(() -> esRestClient.performRequest("POST", endpoint));
+
+        if (!isSuccess(response)) {
+            log.warn("Unable to refresh elasticsearch indices: " + indices);
+        }
+    }
+
+    private boolean swapAliases(@NotNull Map<String, String> newIndices) {
+
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode actions = body.putArray("actions");
+
+        newIndices.forEach((alias, newIndex) -> {
+            // Removing the old index removes its alias as well, in the same atomic operation
+            indicesBehindAlias(alias).forEach(oldIndex -> actions.addObject().putObject("remove_index").put("index", oldIndex));
+            actions.addObject().putObject("add").put("index", newIndex).put("alias", alias);
+        });
+
+        HttpEntity entity = new NStringEntity(body.toString(), ContentType.APPLICATION_JSON);
+        Response response = alsoUnsuccessful(() -> esRestClient.performRequest("POST", "/_aliases", emptyMap(), entity));
+
+        if (isSuccess(response)) {
+            log.info("Elasticsearch aliases swapped: " + body);
+            return true;
+        } else {
+            log.error("Unable to swap elasticsearch aliases: " + responseContentAsString(response));
+            return false;
+        }
+    }
+
+    private @NotNull List<String> indicesBehindAlias(@NotNull String alias) {
+
+        Response response = alsoUnsuccessful(() -> esRestClient.performRequest("GET", "/_alias/" + alias, singletonMap("ignore", "404")));
+
+        if (response.getStatusLine().getStatusCode() == 200) {
+            List<String> indices = new ArrayList<>();
+            responseContentAsJson(objectMapper, response).fieldNames().forEachRemaining(indices::add);
+            return indices;
+        } else if (indexExists(alias)) {
+            // Concrete index created before aliases were taken into use
+            return singletonList(alias);
+        } else {
+            return emptyList();
+        }
+    }
+
     private void doFullIndexing() {
-        reindexVocabularies();
-        // Index concepts from all vocabularies
-        termedApiService.fetchAllAvailableGraphIds().forEach(graphId -> reindexGraph(graphId, false));
+        doFullIndexing(CONCEPT_INDEX, VOCABULARY_INDEX);
+        eventPublisher.publishEvent(new IndexUpdatedEvent(null));
+    }
+
+    private void doFullIndexing(@NotNull String conceptIndex, @NotNull String vocabularyIndex) {
+        termedApiService.invalidateVocabularies();
+        reindexVocabularies(vocabularyIndex);
+        // Index concepts from all vocabularies, one writer keeps its buffer for the whole run
+        ElasticBulkWriter writer = newBulkWriter(false);
+        new FullIndexingPipeline(termedApiService, indexingFetchThreads, indexingQueueSize, bulkMaxActions)
+                .run(termedApiService.fetchAllAvailableGraphIds(),
+                        (graphId, concepts) -> concepts.forEach(concept ->
+                                writer.index(conceptIndex, "concept", concept.getDocumentId(), concept::writeElasticSearchDocument)));
+
+        if (!writer.finish()) {
+            log.warn("Unable to add " + writer.getFailed() + " of " + (writer.getSucceeded() + writer.getFailed())
+                    + " concept documents to elasticsearch index");
+        }
     }
 
     private void reindexVocabularies() {
+        reindexVocabularies(VOCABULARY_INDEX);
+    }
+
+    private void reindexVocabularies(@NotNull String vocabularyIndex) {
         // Index vocabularies
         long start = System.currentTimeMillis();
         // index also all vocabulary-objects
@@ -142,47 +330,24 @@ public class IndexElasticSearchService {
         if (vocabularies.isEmpty()) {
             return; // Nothing to do
         }
-        ObjectMapper mapper = new ObjectMapper();
-        List<String> indexLines = new ArrayList<>();
-        vocabularies.forEach(o -> {
-            try {
-                String line = "{\"index\":{\"_index\": \"vocabularies\", \"_type\": \"vocabulary" + "\", \"_id\":"
-                          + o.get("id") + "}}\n" + Vocabulary.toElasticSearchVocabularyIndexObject(mapper, o) + "\n";
-                indexLines.add(line);
-                if (log.isDebugEnabled()) {
-                    log.debug("reindex line:" + line);
-                }
-            } catch (JsonProcessingException e) {
-                log.error("Error on reindexVocabularies", e);
-            }
-        });
-        String index = indexLines.stream().collect(Collectors.joining("\n"));
-        String delete = "";
-        // Content type changed for elastic search 6.x
-        HttpEntity entity = new NStringEntity(index + delete,
-                ContentType.create("application/json", StandardCharsets.UTF_8));
-        // ContentType.create("application/json", StandardCharsets.UTF_8));
-        // ContentType.create("application/x-ndjson", StandardCharsets.UTF_8));
-        Map<String, String> params = new HashMap<>();
-        params.put("pretty", "true");
-        params.put("refresh", "wait_for");
-        if (log.isDebugEnabled()) {
-            log.debug("Request:" + entity);
-        }
-        Response response = alsoUnsuccessful(() -> esRestClient.performRequest("POST", "/_bulk", params, entity));
+        ElasticBulkWriter writer = newBulkWriter(true);
+        vocabularies.forEach(o -> writer.index(vocabularyIndex, "vocabulary", o.get("id").textValue(),
+                generator -> Vocabulary.writeElasticSearchVocabularyIndexObject(generator, o)));
+        boolean success = writer.finish();
+        vocabularyIndexChanged(null);
         long end = System.currentTimeMillis();
-        if (log.isDebugEnabled()) {
-            log.debug("Response:" + response + "\n Response status line" + response.getStatusLine());
-        }      
-        if (isSuccess(response)) {
+        if (success) {
             log.info("Successfully indexed " + vocabularies.size()+" terminologies in "+(end-start)+"ms");
         } else {
-            log.warn("Unable to add or update document to elasticsearch index: " + vocabularies.size()+" took "+(end-start)+"ms");
-            log.info(responseContentAsString(response));
+            log.warn("Unable to add or update " + writer.getFailed() + "/" + vocabularies.size() + " terminologies to elasticsearch index, took "+(end-start)+"ms");
         }
     }
 
     private boolean reindexGivenVocabulary(UUID vocId) {
+        return reindexGivenVocabulary(vocId, VOCABULARY_INDEX);
+    }
+
+    private boolean reindexGivenVocabulary(UUID vocId, String vocabularyIndex) {
         boolean rv = true;
         long start = System.currentTimeMillis();
         // Get vocabulary
@@ -192,36 +357,39 @@ public class IndexElasticSearchService {
             return false;
         }
 
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            String index = "{\"index\":{\"_index\": \"vocabularies\", \"_type\": \"" + "vocabulary" + "\", \"_id\":"
-                    + jn.get("id") + "}}\n" + Vocabulary.toElasticSearchVocabularyIndexObject(mapper, jn) + "\n";
-            String delete = "";
-            // CHANGED CONTENT TYPE FOR ELASTIC 6.X
-            HttpEntity entity = new NStringEntity(index + delete,
-                    ContentType.create("application/json", StandardCharsets.UTF_8));
-            Map<String, String> params = new HashMap<>();
-
-            params.put("pretty", "true");
-            params.put("refresh", "wait_for");
-
-            Response response = alsoUnsuccessful(() -> esRestClient.performRequest("POST", "/_bulk", params, entity));
+        ElasticBulkWriter writer = newBulkWriter(true);
+        writer.index(vocabularyIndex, "vocabulary", jn.get("id").textValue(),
+                generator -> Vocabulary.writeElasticSearchVocabularyIndexObject(generator, jn));
 
-            long end = System.currentTimeMillis();
-            if (isSuccess(response)) {
-                log.info("Successfully added/updated documents to elasticsearch index: " + StringUtils.normalizeSpace(vocId.toString()) + " in "+(end-start)+"ms" );
-            } else {
-                log.warn("Unable to add or update document to elasticsearch index: " + StringUtils.normalizeSpace(vocId.toString()) + " in "+(end-start)+"ms");
-                log.info(responseContentAsString(response));
-                rv = false;
-            }        
-        } catch (JsonProcessingException e) {
-            log.error("Error on reindexGivenVocabulary", e);
+        boolean success = writer.finish();
+        vocabularyIndexChanged(vocId);
+        long end = System.currentTimeMillis();
+        if (success) {
+            log.info("Successfully added/updated documents to elasticsearch index: " + StringUtils.normalizeSpace(vocId.toString()) + " in "+(end-start)+"ms" );
+        } else {
+            log.warn("Unable to add or update document to elasticsearch index: " + StringUtils.normalizeSpace(vocId.toString()) + " in "+(end-start)+"ms");
+            rv = false;
         }
         return rv;
     }
 
     void updateIndexAfterUpdate(@NotNull AffectedNodes nodes) {
+        try {
+            applyUpdate(nodes);
+        } finally {
+            eventPublisher.publishEvent(new IndexUpdatedEvent(nodes.getGraphId()));
+        }
+    }
+
+    private void applyUpdate(@NotNull AffectedNodes nodes) {
+
+        if (aliasReindexRunning.get()) {
+            graphsChangedDuringReindex.add(nodes.getGraphId());
+        }
+
+        if (nodes.hasVocabulary()) {
+            termedApiService.invalidateVocabulary(nodes.getGraphId());
+        }
 
         int fullReindexNodeCountThreshold = 20;
         if (log.isDebugEnabled()) {
@@ -248,42 +416,62 @@ public class IndexElasticSearchService {
             }
         }
         if (nodes.hasVocabulary() || nodes.getConceptsIds().size() > fullReindexNodeCountThreshold) {
-            reindexGraph(nodes.getGraphId(), true);
+            reindexGraph(nodes.getGraphId(), CONCEPT_INDEX, true);
         } else {
-            List<Concept> updatedConcepts = termedApiService.getConcepts(nodes.getGraphId(), nodes.getConceptsIds());
+            // resolved once for all concept fetches of this update
+            Vocabulary vocabulary = termedApiService.getVocabulary(nodes.getGraphId());
+            if (vocabulary == null) {
+                return;
+            }
+            List<Concept> updatedConcepts = termedApiService.getConcepts(vocabulary, nodes.getConceptsIds());
             List<Concept> conceptsBeforeUpdate = getConceptsFromIndex(nodes.getGraphId(), nodes.getConceptsIds());
-            List<Concept> possiblyUpdatedConcepts = termedApiService.getConcepts(nodes.getGraphId(),
+            List<Concept> possiblyUpdatedConcepts = termedApiService.getConcepts(vocabulary,
                     broaderAndNarrowerIds(asList(updatedConcepts, conceptsBeforeUpdate)));
             List<Concept> updateToIndex = Stream.concat(updatedConcepts.stream(), possiblyUpdatedConcepts.stream())
                     .collect(toList());
 
-            bulkUpdateAndDeleteDocumentsToIndex(nodes.getGraphId(), updateToIndex, emptyList(), true);
+            bulkUpdateAndDeleteDocumentsToIndex(nodes.getGraphId(), updateToIndex, emptyList(), CONCEPT_INDEX, true);
         }
     }
 
     void updateIndexAfterDelete(@NotNull AffectedNodes nodes) {
+        try {
+            applyDelete(nodes);
+        } finally {
+            eventPublisher.publishEvent(new IndexUpdatedEvent(nodes.getGraphId()));
+        }
+    }
+
+    private void applyDelete(@NotNull AffectedNodes nodes) {
+
+        if (aliasReindexRunning.get()) {
+            graphsChangedDuringReindex.add(nodes.getGraphId());
+        }
 
         int fullReindexNodeCountThreshold = 20;
 
         if (nodes.hasVocabulary()) {
+            termedApiService.invalidateVocabulary(nodes.getGraphId());
             // First delete concepts and then
             deleteDocumentsFromIndexByGraphId(nodes.getGraphId());
             // In case of treshold overcome, make full reindex
             if (nodes.hasVocabulary()) {
                 nodes.getVocabularyIds().forEach(id -> {
                     // Delete actual vocabulary-object
-                    deleteDocumentsFromNamedIndexByGraphId(id, "vocabularies");
+                    deleteDocumentsFromNamedIndexByGraphId(id, VOCABULARY_INDEX);
                 });
             }
         } else {
             List<Concept> conceptsBeforeDelete = getConceptsFromIndex(nodes.getGraphId(), nodes.getConceptsIds());
-            List<Concept> possiblyUpdatedConcepts = termedApiService.getConcepts(nodes.getGraphId(),
-                    broaderAndNarrowerIds(singletonList(conceptsBeforeDelete)));
+            Vocabulary vocabulary = termedApiService.getVocabulary(nodes.getGraphId());
+            List<Concept> possiblyUpdatedConcepts = vocabulary != null
+                    ? termedApiService.getConcepts(vocabulary, broaderAndNarrowerIds(singletonList(conceptsBeforeDelete)))
+                    : emptyList();
 
             bulkUpdateAndDeleteDocumentsToIndex(nodes.getGraphId(), possiblyUpdatedConcepts, nodes.getConceptsIds(),
-                    true);
+                    CONCEPT_INDEX, true);
             nodes.getConceptsIds().forEach(id -> {
-                deleteDocumentsFromNamedIndexByGraphId(id, "concepts");
+                deleteDocumentsFromNamedIndexByGraphId(id, CONCEPT_INDEX);
             });
         }
     }
@@ -295,11 +483,11 @@ public class IndexElasticSearchService {
                 .collect(Collectors.toSet());
     }
 
-    private void reindexGraph(@NotNull UUID graphId, boolean waitForRefresh) {
+    private void reindexGraph(@NotNull UUID graphId, @NotNull String conceptIndex, boolean waitForRefresh) {
         List<Concept> concepts = termedApiService.getAllConceptsForGraph(graphId);
         long start = System.currentTimeMillis();
         if (concepts != null && !concepts.isEmpty()) {
-        bulkUpdateAndDeleteDocumentsToIndex(graphId, concepts, emptyList(), waitForRefresh);
+        bulkUpdateAndDeleteDocumentsToIndex(graphId, concepts, emptyList(), conceptIndex, waitForRefresh);
             long end = System.currentTimeMillis();
 
             log.info("Graph:" + StringUtils.normalizeSpace(graphId.toString()) + " Indexed " + concepts.size() + " concepts in "+(end-start)+"ms");
@@ -373,27 +561,13 @@ public class IndexElasticSearchService {
         }
     }
 
-    private @NotNull String createBulkIndexMetaAndSource(@NotNull Concept concept) {
-        return createBulkIndexMetaAndSource(concept, "concepts");
-    }
-
     // private @NotNull String createBulkIndexMetaAndSource(@NotNull JsonNode
     // vocabulary) {
     // return createBulkIndexMetaAndSource(concept, "concept");
     // }
 
-    private @NotNull String createBulkIndexMetaAndSource(@NotNull Concept concept, String index) {
-        return "{\"index\":{\"_index\": \"" + index + "\", \"_type\": \"concept\", \"_id\":\"" + concept.getDocumentId()
-                + "\"}}\n" + concept.toElasticSearchDocument(objectMapper) + "\n";
-    }
-
-    private @NotNull String createBulkDeleteMeta(@NotNull UUID graphId, @NotNull UUID conceptId) {
-        return "{\"delete\":{\"_index\": \"" + indexName + "\", \"_type\": \"concept\", \"_id\":\""
-                + Concept.formDocumentId(graphId, conceptId) + "\"}}\n";
-    }
-
     private void bulkUpdateAndDeleteDocumentsToIndex(@NotNull UUID graphId, @NotNull List<Concept> updateConcepts,
-            @NotNull List<UUID> deleteConceptsIds, boolean waitForRefresh) {
+            @NotNull List<UUID> deleteConceptsIds, @NotNull String conceptIndex, boolean waitForRefresh) {
 
         if (updateConcepts.size() == 0 && deleteConceptsIds.size() == 0) {
             return; // nothing to do
@@ -401,26 +575,12 @@ public class IndexElasticSearchService {
 
         // https://www.elastic.co/guide/en/elasticsearch/reference/current/docs-bulk.html
 
-        String index = updateConcepts.stream().map(this::createBulkIndexMetaAndSource)
-                .collect(Collectors.joining("\n"));
-        String delete = deleteConceptsIds.stream().map(id -> createBulkDeleteMeta(graphId, id))
-                .collect(Collectors.joining("\n"));
-        // Changed content type for elastic search 6.x
-        HttpEntity entity = new NStringEntity(index + delete,
-                // ContentType.create("application/x-ndjson"));
-                ContentType.create("application/json", StandardCharsets.UTF_8));
-        // ContentType.create("application/x-ndjson", StandardCharsets.UTF_8));
-        Map<String, String> params = new HashMap<>();
-
-        params.put("pretty", "true");
-
-        if (waitForRefresh) {
-            params.put("refresh", "wait_for");
-        }
-
-        Response response = alsoUnsuccessful(() -> esRestClient.performRequest("POST", "/_bulk", params, entity));
+        ElasticBulkWriter writer = newBulkWriter(waitForRefresh);
+        updateConcepts.forEach(concept -> writer.index(conceptIndex, "concept", concept.getDocumentId(),
+                concept::writeElasticSearchDocument));
+        deleteConceptsIds.forEach(id -> writer.delete(conceptIndex, "concept", Concept.formDocumentId(graphId, id)));
 
-        if (isSuccess(response)) {
+        if (writer.finish()) {
             if (updateConcepts.size() > 0 && log.isDebugEnabled()) {
                 log.debug("Successfully added/updated concepts documents to elasticsearch index: "
                         + updateConcepts.size());
@@ -430,17 +590,21 @@ public class IndexElasticSearchService {
                         + deleteConceptsIds.size());
             }
         } else {
-            log.warn("Unable to add or update concepts document to elasticsearch index: " + updateConcepts.size());
-            log.warn("Unable to delete concepts document from elasticsearch index: " + deleteConceptsIds.size());
+            log.warn("Unable to add, update or delete " + writer.getFailed() + " of " + (updateConcepts.size() + deleteConceptsIds.size())
+                    + " concept documents in elasticsearch index for graph " + graphId);
         }
     }
 
+    private @NotNull ElasticBulkWriter newBulkWriter(boolean waitForRefresh) {
+        return new ElasticBulkWriter(esRestClient, objectMapper, bulkMaxBytes, bulkMaxActions, bulkMaxRetries, waitForRefresh);
+    }
+
     private void deleteDocumentsFromNamedIndexByGraphId(@NotNull UUID graphId, @NotNull String index) {
 
         HttpEntity body = new NStringEntity("{\"query\": { \"match\": {\"id\": \"" + graphId + "\"}}}",
                 ContentType.APPLICATION_JSON);
         Response response = alsoUnsuccessful(
-                () -> esRestClient.performRequest("POST", "/" + index + "/_delete_by_query", emptyMap(), body));
+                () -> esRestClient.performRequest("POST", "/" + index + "/_delete_by_query", singletonMap("refresh", "true"), body));
 
         if (isSuccess(response)) {
             log.info(responseContentAsString(response));
@@ -448,6 +612,14 @@ public class IndexElasticSearchService {
         } else {
             log.warn("Unable to delete documents from elasticsearch index");
         }
+
+        if (VOCABULARY_INDEX.equals(index)) {
+            vocabularyIndexChanged(graphId);
+        }
+    }
+
+    private void vocabularyIndexChanged(@Nullable UUID graphId) {
+        eventPublisher.publishEvent(new VocabularyIndexChangedEvent(graphId));
     }
 
     private void deleteDocumentsFromIndexByGraphId(@NotNull UUID graphId) {
@@ -455,7 +627,7 @@ public class IndexElasticSearchService {
         HttpEntity body = new NStringEntity("{\"query\": { \"match\": {\"vocabulary.id\": \"" + graphId + "\"}}}",
                 ContentType.APPLICATION_JSON);
         Response response = alsoUnsuccessful(
-                () -> esRestClient.performRequest("POST", "/" + indexName + "/_delete_by_query", emptyMap(), body));
+                () -> esRestClient.performRequest("POST", "/" + indexName + "/_delete_by_query", singletonMap("refresh", "true"), body));
 
         if (isSuccess(response)) {
             log.info(responseContentAsString(response));
@@ -465,6 +637,18 @@ public class IndexElasticSearchService {
         }
     }
 
+    private void deleteDocumentsByQuery(@NotNull String index, @NotNull String field, @NotNull UUID value) {
+
+        HttpEntity body = new NStringEntity("{\"query\": { \"match\": {\"" + field + "\": \"" + value + "\"}}}",
+                ContentType.APPLICATION_JSON);
+        Response response = alsoUnsuccessful(
+                () -> esRestClient.performRequest("POST", "/" + index + "/_delete_by_query", singletonMap("refresh", "true"), body));
+
+        if (!isSuccess(response)) {
+            log.warn("Unable to delete documents from elasticsearch index " + index + " where " + field + " is " + value);
+        }
+    }
+
     private void deleteAllDocumentsFromIndex() {
 
         HttpEntity body = new NStringEntity("{\"query\": { \"match_all\": {}}}", ContentType.APPLICATION_JSON);
@@ -473,7 +657,7 @@ public class IndexElasticSearchService {
         // "/" + indexName + "/" + indexMappingType + "/_delete_by_query", emptyMap(),
         // body));
         Response response = alsoUnsuccessful(
-                () -> esRestClient.performRequest("POST", "/" + indexName + "/_delete_by_query", emptyMap(), body));
+                () -> esRestClient.performRequest("POST", "/" + indexName + "/_delete_by_query", singletonMap("refresh", "true"), body));
 
         if (isSuccess(response)) {
             log.info(responseContentAsString(response));
@@ -487,7 +671,7 @@ public class IndexElasticSearchService {
 
         HttpEntity body = new NStringEntity("{\"query\": { \"match_all\": {}}}", ContentType.APPLICATION_JSON);
         Response response = alsoUnsuccessful(
-                () -> esRestClient.performRequest("POST", "/" + index + "/_delete_by_query", emptyMap(), body));
+                () -> esRestClient.performRequest("POST", "/" + index + "/_delete_by_query", singletonMap("refresh", "true"), body));
 
         if (isSuccess(response)) {
             log.info(responseContentAsString(response));
@@ -574,24 +758,40 @@ public class IndexElasticSearchService {
         }
     }
 
-    private @Nullable Concept getConceptFromIndex(@NotNull UUID graphId, @NotNull UUID conceptId) {
+    /**
+     * Fetches the indexed documents of the given concepts with multi get requests of at most mgetMaxIds ids,
+     * concepts missing from the index are left out of the result.
+     */
+    private @NotNull List<Concept> getConceptsFromIndex(@NotNull UUID graphId, @NotNull Collection<UUID> conceptIds) {
 
-        String documentId = Concept.formDocumentId(graphId, conceptId);
-        Response response = alsoUnsuccessful(() -> esRestClient.performRequest("GET",
-                "/" + indexName + "/concept/" + urlEncode(documentId) + "/_source"));
+        List<Concept> concepts = new ArrayList<>(conceptIds.size());
+        List<UUID> ids = new ArrayList<>(conceptIds);
 
-        if (isSuccess(response)) {
-            return Concept.createFromIndex(objectMapper, responseContentAsJson(objectMapper, response));
-        } else {
-            return null;
-        }
-    }
+        for (int from = 0; from < ids.size(); from += mgetMaxIds) {
 
-    private @NotNull List<Concept> getConceptsFromIndex(@NotNull UUID graphId, @NotNull Collection<UUID> conceptIds) {
+            ObjectNode body = objectMapper.createObjectNode();
+            ArrayNode docIds = body.putArray("ids");
+            ids.subList(from, Math.min(from + mgetMaxIds, ids.size()))
+                    .forEach(conceptId -> docIds.add(Concept.formDocumentId(graphId, conceptId)));
+
+            HttpEntity entity = new NStringEntity(body.toString(), ContentType.APPLICATION_JSON);
+            Response response = alsoUnsuccessful(() -> esRestClient.performRequest("POST",
+                    "/" + CONCEPT_INDEX + "/concept/_mget", Collections.emptyMap(), entity));
 
-        // TODO inefficient implementation
-        return conceptIds.stream().map(conceptId -> this.getConceptFromIndex(graphId, conceptId))
-                .filter(Objects::nonNull).collect(toList());
+            if (!isSuccess(response)) {
+                log.warn("Unable to get " + docIds.size() + " concepts from elasticsearch index for graph " + graphId);
+                log.info(responseContentAsString(response));
+                continue;
+            }
+
+            for (JsonNode doc : responseContentAsJson(objectMapper, response).path("docs")) {
+                if (doc.path("found").asBoolean()) {
+                    concepts.add(Concept.createFromIndex(objectMapper, doc.get("_source")));
+                }
+            }
+        }
+
+        return concepts;
     }
 
     private @NotNull Response alsoUnsuccessful(@NotNull ResponseSupplier supplier) {
@@ -605,14 +805,6 @@ public class IndexElasticSearchService {
         }
     }
 
-    private static @NotNull String urlEncode(@NotNull String str) {
-        try {
-            return URLEncoder.encode(str, StandardCharsets.UTF_8.name());
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private interface ResponseSupplier {
         @NotNull
         Response get() throws IOException;
@@ -1,6 +1,7 @@
 package fi.vm.yti.terminology.api.index;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import fi.vm.yti.terminology.api.TermedRequester;
 import fi.vm.yti.terminology.api.migration.DomainIndex;
 import fi.vm.yti.terminology.api.util.JsonUtils;
@@ -13,18 +14,23 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.core.ParameterizedTypeReference;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static fi.vm.yti.terminology.api.util.JsonUtils.*;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.http.HttpMethod.GET;
@@ -34,11 +40,19 @@ public class IndexTermedService {
 
     private static final Logger log = LoggerFactory.getLogger(IndexTermedService.class);
     private final TermedRequester termedRequester;
+    private final TermedGraphReader graphReader;
+    private final long vocabularyCacheTtlMillis;
+
+    private final Map<UUID, CachedVocabulary> vocabularyCache = new ConcurrentHashMap<>();
 
     @Autowired
-    public IndexTermedService(TermedRequester termedRequester) {
+    public IndexTermedService(TermedRequester termedRequester,
+                              ObjectMapper objectMapper,
+                              @Value("${elasticsearch.index.vocabularyCache.ttlMillis:60000}") long vocabularyCacheTtlMillis) {
 
         this.termedRequester = termedRequester;
+        this.graphReader = new TermedGraphReader(objectMapper);
+        this.vocabularyCacheTtlMillis = vocabularyCacheTtlMillis;
     }
 
 	public void deleteChangeListener(@NotNull String hookId) {
@@ -96,20 +110,42 @@ public class IndexTermedService {
     }
 
 	@NotNull List<Concept> getAllConceptsForGraph(@NotNull UUID graphId) {
+	    List<Concept> concepts = new ArrayList<>();
+	    readAllConceptsForGraph(graphId, concepts::add);
+	    return concepts;
+	}
 
-	    AllNodesResult allNodesResult = this.fetchAllNodesInGraph(graphId);
+    /**
+     * Streams the terms and concepts of the graph from Termed and hands each concept to the consumer as soon
+     * as it has been read. Only the prefLabels of the terms are kept in memory while reading.
+     *
+     * @return number of concepts read
+     */
+    int readAllConceptsForGraph(@NotNull UUID graphId, @NotNull Consumer<Concept> consumer) {
 
-        Optional<UUID> vocabularyNodeId = allNodesResult.getVocabularyNodeId();
+        Vocabulary vocabulary = getVocabulary(graphId);
 
-        if (vocabularyNodeId.isPresent()) {
-            return allNodesResult.getConceptNodeIds().stream()
-                    .map(conceptId -> Concept.createFromAllNodeResult(conceptId, vocabularyNodeId.get(), allNodesResult))
-                    .collect(toList());
-        } else {
+        if (vocabulary == null) {
             log.warn("Concepts not found for graph: " + graphId);
-            return emptyList();
+            return 0;
         }
-	}
+
+        Parameters params = Parameters.single("max", "-1");
+
+        log.debug("Streaming terms for graph " + graphId);
+        Map<UUID, String[]> termLabels = termedRequester.stream(nodesOfTypePath(graphId, "Term"), GET, params,
+                response -> graphReader.readTermLabels(response.getBody()));
+
+        log.debug("Streaming concepts for graph " + graphId);
+        Integer count = termedRequester.stream(nodesOfTypePath(graphId, "Concept"), GET, params,
+                response -> graphReader.readConcepts(response.getBody(), vocabulary, termLabels != null ? termLabels : emptyMap(), consumer));
+
+        return count != null ? count : 0;
+    }
+
+    private static @NotNull String nodesOfTypePath(@NotNull UUID graphId, @NotNull String type) {
+        return String.format("/graphs/%s/types/%s/nodes", graphId, type);
+    }
 
     @NotNull List<Concept> getConcepts(@NotNull UUID graphId, @NotNull Collection<UUID> ids) {
 
@@ -126,7 +162,11 @@ public class IndexTermedService {
         }
     }
 
-    private @NotNull List<Concept> getConcepts(@NotNull Vocabulary vocabulary, @NotNull Collection<UUID> conceptIds) {
+    @NotNull List<Concept> getConcepts(@NotNull Vocabulary vocabulary, @NotNull Collection<UUID> conceptIds) {
+
+        if (conceptIds.isEmpty()) {
+            return emptyList();
+        }
 
         Parameters params = new Parameters();
         params.add("select", "id");
@@ -155,7 +195,7 @@ public class IndexTermedService {
         params.add("max", "-1");
 
         return asStream(termedRequester.exchange("/node-trees", GET, params, JsonNode.class))
-                .filter(AllNodesResult::isConceptNode) // let us not trust conceptIds to be concept ids
+                .filter(TermedGraphReader::isConceptNode) // let us not trust conceptIds to be concept ids
                 .map(json -> Concept.createFromExtJson(json, vocabulary))
                 .collect(toList());
     }
@@ -167,18 +207,40 @@ public class IndexTermedService {
                 .collect(Collectors.joining(" OR "));
     }
 
-    private @Nullable Vocabulary getVocabulary(@NotNull UUID graphId) {
+    /**
+     * Vocabularies are cached for a short while so that the several concept fetches of an index update do
+     * not each fetch and parse the vocabulary node again. Vocabulary changes invalidate the cached entry.
+     */
+    @Nullable Vocabulary getVocabulary(@NotNull UUID graphId) {
+
+        long now = System.currentTimeMillis();
+        CachedVocabulary cached = vocabularyCache.get(graphId);
+
+        if (cached != null && cached.expiresAt > now) {
+            return cached.vocabulary;
+        }
 
 	    JsonNode vocabularyNode = getVocabularyNode(graphId);
 
         if (vocabularyNode != null) {
-            return Vocabulary.createFromExtJson(vocabularyNode);
+            Vocabulary vocabulary = Vocabulary.createFromExtJson(vocabularyNode);
+            vocabularyCache.put(graphId, new CachedVocabulary(vocabulary, now + vocabularyCacheTtlMillis));
+            return vocabulary;
         } else {
+            vocabularyCache.remove(graphId);
             log.warn("Vocabulary not found for graph " + graphId);
             return null;
         }
     }
 
+    void invalidateVocabulary(@NotNull UUID graphId) {
+        vocabularyCache.remove(graphId);
+    }
+
+    void invalidateVocabularies() {
+        vocabularyCache.clear();
+    }
+
     public @Nullable JsonNode getVocabularyNode(@NotNull UUID graphId) {
 
         JsonNode json = getVocabularyNode(graphId, VocabularyType.TerminologicalVocabulary);
@@ -220,15 +282,18 @@ public class IndexTermedService {
         return findSingle(termedRequester.exchange("/node-trees", GET, params, JsonNode.class));
     }
     private @Nullable JsonNode getVocabularyNode(@NotNull UUID graphId, @NotNull VocabularyType vocabularyType) {
-        return findSingleOrNull(termedRequester.exchange(String.format("/graphs/%s/types/%s/nodes",
-                    graphId, vocabularyType), GET, new Parameters(), JsonNode.class));
+        return findSingleOrNull(termedRequester.exchange(nodesOfTypePath(graphId, vocabularyType.name()),
+                    GET, new Parameters(), JsonNode.class));
     }
 
-    private @NotNull AllNodesResult fetchAllNodesInGraph(UUID graphId) {
+    private static final class CachedVocabulary {
 
-        log.debug("Fetching all nodes for graph " + graphId.toString());
-        Parameters params = Parameters.single("max", "-1");
-        JsonNode response = termedRequester.exchange("/graphs/" + graphId + "/nodes", GET, params, JsonNode.class);
-        return new AllNodesResult(requireNonNull(response));
+        private final Vocabulary vocabulary;
+        private final long expiresAt;
+
+        private CachedVocabulary(@NotNull Vocabulary vocabulary, long expiresAt) {
+            this.vocabulary = vocabulary;
+            this.expiresAt = expiresAt;
+        }
     }
 }
@@ -0,0 +1,24 @@
+package fi.vm.yti.terminology.api.index;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Published after changes of a graph, or a full reindex, have been applied to the concept and vocabulary indices.
+ */
+public final class IndexUpdatedEvent {
+
+    private final UUID graphId;
+
+    public IndexUpdatedEvent(@Nullable UUID graphId) {
+        this.graphId = graphId;
+    }
+
+    /**
+     * @return graph whose documents changed or null if the indices were rebuilt
+     */
+    public @Nullable UUID getGraphId() {
+        return graphId;
+    }
+}
@@ -32,9 +32,7 @@ import static java.util.stream.Collectors.toList;
 @Tag(name = "Private")
 public class NotificationController {
 
-    private final IndexElasticSearchService elasticSearchService;
-
-    private final Object lock = new Object();
+    private final NotificationQueue notificationQueue;
 
     private static final List<NodeType> conceptTypes = singletonList(Concept);
     private static final List<NodeType> vocabularyTypes = asList(TerminologicalVocabulary, Vocabulary);
@@ -42,8 +40,8 @@ public class NotificationController {
     private static final Logger logger = LoggerFactory.getLogger(NotificationController.class);
 
     @Autowired
-    public NotificationController(IndexElasticSearchService elasticSearchService) {
-        this.elasticSearchService = elasticSearchService;
+    public NotificationController(NotificationQueue notificationQueue) {
+        this.notificationQueue = notificationQueue;
     }
 
     @Operation(summary = "Submit Termed notification", description = "Handler for Termed web hook notification for modified nodes")
@@ -55,31 +53,27 @@ public class NotificationController {
             logger.info(StringUtils.normalizeSpace(ident.getId().toString()));
         }
 
-        synchronized(this.lock) {
-            logger.debug("notify - acquired lock");
-
-            Map<UUID, List<Identifier>> nodesByGraphId =
-                    notification.getBody().getNodes().stream().collect(Collectors.groupingBy(node -> node.getType().getGraph().getId()));
+        Map<UUID, List<Identifier>> nodesByGraphId =
+                notification.getBody().getNodes().stream().collect(Collectors.groupingBy(node -> node.getType().getGraph().getId()));
 
-            for (Map.Entry<UUID, List<Identifier>> entries : nodesByGraphId.entrySet()) {
-                UUID graphId = entries.getKey();
-                List<Identifier> nodes = entries.getValue();
+        // Changes are only queued here, indexing happens on the notification queue worker
+        for (Map.Entry<UUID, List<Identifier>> entries : nodesByGraphId.entrySet()) {
+            UUID graphId = entries.getKey();
+            List<Identifier> nodes = entries.getValue();
 
-                logger.debug("notify - updating a set of " + nodes.size() + " for " + graphId.toString());
+            logger.debug("notify - queueing a set of " + nodes.size() + " for " + graphId.toString());
 
-                List<UUID> vocabularies = extractIdsOfType(nodes, vocabularyTypes);
-                List<UUID> concepts = extractIdsOfType(nodes, conceptTypes);
+            List<UUID> vocabularies = extractIdsOfType(nodes, vocabularyTypes);
+            List<UUID> concepts = extractIdsOfType(nodes, conceptTypes);
 
-                switch (notification.getType()) {
-                    case NodeSavedEvent:
-                        this.elasticSearchService.updateIndexAfterUpdate(new AffectedNodes(graphId, vocabularies, concepts));
-                        break;
-                    case NodeDeletedEvent:
-                        this.elasticSearchService.updateIndexAfterDelete(new AffectedNodes(graphId, vocabularies, concepts));
-                        break;
-                }
+            switch (notification.getType()) {
+                case NodeSavedEvent:
+                    this.notificationQueue.enqueueSaved(graphId, vocabularies, concepts);
+                    break;
+                case NodeDeletedEvent:
+                    this.notificationQueue.enqueueDeleted(graphId, vocabularies, concepts);
+                    break;
             }
-            logger.debug("notify - releasing lock");
         }
     }
 
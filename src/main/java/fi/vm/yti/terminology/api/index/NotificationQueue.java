@@ -0,0 +1,204 @@
+package fi.vm.yti.terminology.api.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects Termed change notifications per graph and applies them to the index on a background worker.
+ * Changes of a graph are merged until no new notification has arrived for the debounce period, or until
+ * the oldest change has waited for the max delay, so bursts of edits become a few batched index updates.
+ */
+@Service
+public class NotificationQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationQueue.class);
+
+    private final IndexElasticSearchService elasticSearchService;
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+    private final Timer indexingLag;
+
+    // guarded by itself
+    private final Map<UUID, PendingChanges> pending = new LinkedHashMap<>();
+
+    private ScheduledExecutorService worker;
+
+    @Autowired
+    public NotificationQueue(IndexElasticSearchService elasticSearchService,
+                             MeterRegistry meterRegistry,
+                             @Value("${elasticsearch.notification.debounceMillis:500}") long debounceMillis,
+                             @Value("${elasticsearch.notification.maxDelayMillis:5000}") long maxDelayMillis) {
+        this.elasticSearchService = elasticSearchService;
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = maxDelayMillis;
+
+        Gauge.builder("terminology.notification.queue.depth", this, NotificationQueue::getQueuedNodeCount)
+                .description("Node changes waiting to be indexed")
+                .register(meterRegistry);
+        Gauge.builder("terminology.notification.queue.oldest", this, queue -> queue.getOldestWaitMillis(System.currentTimeMillis()))
+                .description("Milliseconds the oldest queued node change has been waiting")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.indexingLag = Timer.builder("terminology.notification.indexing.lag")
+                .description("Time from receiving a notification to having its changes indexed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-notification-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long pollMillis = Math.max(10, Math.min(debounceMillis, 100));
+        worker.scheduleWithFixedDelay(() -> drainDue(System.currentTimeMillis()), pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.shutdownNow();
+        }
+        int dropped = getQueuedNodeCount();
+        if (dropped > 0) {
+            log.warn("Shutting down with " + dropped + " node changes not indexed");
+        }
+    }
+
+    void enqueueSaved(@NotNull UUID graphId, @NotNull List<UUID> vocabularyIds, @NotNull List<UUID> conceptIds) {
+        synchronized (pending) {
+            pendingChanges(graphId).saved(vocabularyIds, conceptIds);
+        }
+    }
+
+    void enqueueDeleted(@NotNull UUID graphId, @NotNull List<UUID> vocabularyIds, @NotNull List<UUID> conceptIds) {
+        synchronized (pending) {
+            pendingChanges(graphId).deleted(vocabularyIds, conceptIds);
+        }
+    }
+
+    private @NotNull PendingChanges pendingChanges(@NotNull UUID graphId) {
+        long now = System.currentTimeMillis();
+        PendingChanges changes = pending.computeIfAbsent(graphId, id -> new PendingChanges(now));
+        changes.lastQueued = now;
+        return changes;
+    }
+
+    /**
+     * Applies the changes of every graph that is due at the given time, one graph at a time.
+     */
+    void drainDue(long now) {
+
+        List<Map.Entry<UUID, PendingChanges>> due = new ArrayList<>();
+
+        synchronized (pending) {
+            Iterator<Map.Entry<UUID, PendingChanges>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<UUID, PendingChanges> entry = iterator.next();
+                PendingChanges changes = entry.getValue();
+                if (now - changes.lastQueued >= debounceMillis || now - changes.firstQueued >= maxDelayMillis) {
+                    due.add(entry);
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (Map.Entry<UUID, PendingChanges> entry : due) {
+            apply(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void apply(@NotNull UUID graphId, @NotNull PendingChanges changes) {
+
+        log.debug("Indexing " + changes.size() + " queued node changes for graph " + graphId);
+
+        try {
+            if (!changes.deletedVocabularies.isEmpty() || !changes.deletedConcepts.isEmpty()) {
+                elasticSearchService.updateIndexAfterDelete(
+                        new AffectedNodes(graphId, new ArrayList<>(changes.deletedVocabularies), new ArrayList<>(changes.deletedConcepts)));
+            }
+            if (!changes.savedVocabularies.isEmpty() || !changes.savedConcepts.isEmpty()) {
+                elasticSearchService.updateIndexAfterUpdate(
+                        new AffectedNodes(graphId, new ArrayList<>(changes.savedVocabularies), new ArrayList<>(changes.savedConcepts)));
+            }
+        } catch (RuntimeException e) {
+            log.error("Indexing queued changes failed for graph " + StringUtils.normalizeSpace(graphId.toString()), e);
+        } finally {
+            indexingLag.record(System.currentTimeMillis() - changes.firstQueued, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    int getQueuedNodeCount() {
+        synchronized (pending) {
+            return pending.values().stream().mapToInt(PendingChanges::size).sum();
+        }
+    }
+
+    private long getOldestWaitMillis(long now) {
+        synchronized (pending) {
+            return pending.values().stream().mapToLong(changes -> now - changes.firstQueued).max().orElse(0);
+        }
+    }
+
+    /**
+     * Node ids changed in a graph since its changes were last applied. A later save of a node cancels an
+     * earlier delete and vice versa, so each node is in at most one of the sets.
+     */
+    private static final class PendingChanges {
+
+        private final long firstQueued;
+        private long lastQueued;
+
+        private final Set<UUID> savedVocabularies = new LinkedHashSet<>();
+        private final Set<UUID> savedConcepts = new LinkedHashSet<>();
+        private final Set<UUID> deletedVocabularies = new LinkedHashSet<>();
+        private final Set<UUID> deletedConcepts = new LinkedHashSet<>();
+
+        private PendingChanges(long firstQueued) {
+            this.firstQueued = firstQueued;
+            this.lastQueued = firstQueued;
+        }
+
+        private void saved(@NotNull Collection<UUID> vocabularyIds, @NotNull Collection<UUID> conceptIds) {
+            deletedVocabularies.removeAll(vocabularyIds);
+            deletedConcepts.removeAll(conceptIds);
+            savedVocabularies.addAll(vocabularyIds);
+            savedConcepts.addAll(conceptIds);
+        }
+
+        private void deleted(@NotNull Collection<UUID> vocabularyIds, @NotNull Collection<UUID> conceptIds) {
+            savedVocabularies.removeAll(vocabularyIds);
+            savedConcepts.removeAll(conceptIds);
+            deletedVocabularies.addAll(vocabularyIds);
+            deletedConcepts.addAll(conceptIds);
+        }
+
+        private int size() {
+            return savedVocabularies.size() + savedConcepts.size() + deletedVocabularies.size() + deletedConcepts.size();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package fi.vm.yti.terminology.api.index;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Reads Termed node arrays from a response stream one node at a time. Term nodes are reduced to a compact
+ * id to label table and concepts are built and handed out as soon as their node has been read, so memory
+ * use is bounded by the term table instead of the whole graph.
+ */
+final class TermedGraphReader {
+
+    private static final Logger log = LoggerFactory.getLogger(TermedGraphReader.class);
+
+    private final ObjectMapper objectMapper;
+
+    TermedGraphReader(@NotNull ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return term id to prefLabel table, labels stored as consecutive language and value pairs
+     */
+    @NotNull Map<UUID, String[]> readTermLabels(@NotNull InputStream input) throws IOException {
+
+        Map<UUID, String[]> termLabels = new HashMap<>();
+
+        readNodes(input, term -> {
+            JsonNode prefLabel = term.path("properties").path("prefLabel");
+            String[] labels = new String[prefLabel.size() * 2];
+
+            for (int i = 0; i < prefLabel.size(); i++) {
+                labels[i * 2] = prefLabel.get(i).get("lang").asText();
+                labels[i * 2 + 1] = prefLabel.get(i).get("value").asText();
+            }
+
+            termLabels.put(UUID.fromString(term.get("id").textValue()), labels);
+        });
+
+        return termLabels;
+    }
+
+    /**
+     * @return number of concepts read
+     */
+    int readConcepts(@NotNull InputStream input,
+                     @NotNull Vocabulary vocabulary,
+                     @NotNull Map<UUID, String[]> termLabels,
+                     @NotNull Consumer<Concept> consumer) throws IOException {
+
+        int[] count = { 0 };
+
+        readNodes(input, node -> {
+            if (isConceptNode(node)) {
+                consumer.accept(Concept.createFromStreamedNode(node, vocabulary, termLabels));
+                count[0]++;
+            }
+        });
+
+        return count[0];
+    }
+
+    private void readNodes(@NotNull InputStream input, @NotNull Consumer<JsonNode> consumer) throws IOException {
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected an array of nodes but got " + parser.currentToken());
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readTree(parser));
+            }
+        }
+    }
+
+    static boolean isConceptNode(@NotNull JsonNode jsonObj) {
+        return typeIs(jsonObj, "Concept");
+    }
+
+    private @Nullable static String type(@NotNull JsonNode jsonObj) {
+
+        JsonNode type = jsonObj.get("type");
+
+        if (type != null) {
+            JsonNode id = type.get("id");
+
+            if (id != null) {
+                return id.textValue();
+            }
+        }
+
+        return null;
+    }
+
+    static boolean typeIs(@NotNull JsonNode jsonObj, @NotNull String... types) {
+        String jsonObjType = type(jsonObj);
+
+        if (jsonObjType == null) {
+            return false;
+        }
+
+        for (String type : types) {
+            if (type.equals(jsonObjType)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Terms and concepts are read in separate requests, so a term added or removed in between leaves a
+     * reference without a label. Such references are skipped instead of failing the whole graph.
+     */
+    static @NotNull Map<String, List<String>> localizableFromTermLabels(@NotNull UUID conceptId,
+                                                                      @NotNull List<UUID> termIds,
+                                                                      @NotNull Map<UUID, String[]> termLabels,
+                                                                      @NotNull Vocabulary vocabulary) {
+
+        Map<String, List<String>> result = new HashMap<>();
+
+        for (UUID termId : termIds) {
+            String[] labels = termLabels.get(termId);
+
+            if (labels == null) {
+                log.warn("Skipping term " + termId + " of concept " + conceptId + " not in graph " + vocabulary.getGraphId());
+                continue;
+            }
+
+            for (int i = 0; i < labels.length; i += 2) {
+                result.computeIfAbsent(labels[i], lang -> new ArrayList<>()).add(labels[i + 1]);
+            }
+        }
+
+        return result;
+    }
+}
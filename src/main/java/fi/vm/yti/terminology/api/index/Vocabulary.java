@@ -1,23 +1,24 @@
 package fi.vm.yti.terminology.api.index;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import fi.vm.yti.terminology.api.util.IndexUtil;
 import org.jetbrains.annotations.NotNull;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import fi.vm.yti.terminology.api.util.JsonUtils;
 
-import static fi.vm.yti.terminology.api.util.JsonUtils.localizableToJson;
-
 public final class Vocabulary {
 
+    private static final String DEFAULT_STATUS = "DRAFT";
+
     private final UUID graphId;
     private final String uri;
     private final Map<String, List<String>> label;
@@ -52,11 +53,12 @@ public final class Vocabulary {
         UUID graphId = UUID.fromString(typeObj.get("graph").get("id").textValue());
         String uri = json.get("uri").textValue();
         Map<String, List<String>> label = JsonUtils.localizableFromTermedProperties(properties, "prefLabel");
-        String status = JsonUtils.getSinglePropertyValue(properties, "status");
-        if (status == null || status.isEmpty()) {
-            status = "DRAFT";
-        }
-        return new Vocabulary(graphId, uri, label, status);
+        return new Vocabulary(graphId, uri, label, statusFromTermedProperties(properties));
+    }
+
+    private static @NotNull String statusFromTermedProperties(@NotNull JsonNode properties) {
+        String status = IndexUtil.normalizeStatus(JsonUtils.getSinglePropertyValue(properties, "status"));
+        return status != null ? status : DEFAULT_STATUS;
     }
 
     static @NotNull Vocabulary createFromIndex(ObjectMapper mapper,
@@ -70,21 +72,36 @@ public final class Vocabulary {
         return new Vocabulary(graphId, uri, label, status);
     }
 
-    @NotNull ObjectNode toElasticSearchObject(ObjectMapper objectMapper) {
-
-        ObjectNode output = objectMapper.createObjectNode();
+    void writeElasticSearchObject(@NotNull JsonGenerator generator) throws IOException {
 
-        output.set("label", JsonUtils.localizableToJson(objectMapper, label));
-        output.put("id", graphId.toString());
-        output.put("uri", uri);
-        output.put("status", status);
-
-        return output;
+        generator.writeStartObject();
+        JsonUtils.writeLocalizable(generator, "label", label);
+        generator.writeStringField("id", graphId.toString());
+        generator.writeStringField("uri", uri);
+        generator.writeStringField("status", status);
+        generator.writeEndObject();
     }
 
-    static @NotNull String toElasticSearchVocabularyIndexObject(ObjectMapper mapper, JsonNode jsonNode) throws JsonProcessingException {
-        Map<String, List<String>> prefLabel = JsonUtils.localizableFromTermedProperties(jsonNode.get("properties"), "prefLabel");
-        ((ObjectNode)jsonNode).set("sortByLabel", localizableToJson(mapper, IndexUtil.createSortLabels(prefLabel)));
-        return mapper.writeValueAsString(jsonNode);
+    /**
+     * Writes the Termed vocabulary node as such, with sort labels derived from its preferred labels and the
+     * status as a keyword for aggregations.
+     */
+    static void writeElasticSearchVocabularyIndexObject(@NotNull JsonGenerator generator, @NotNull JsonNode jsonNode) throws IOException {
+
+        JsonNode properties = jsonNode.get("properties");
+        Map<String, List<String>> prefLabel = JsonUtils.localizableFromTermedProperties(properties, "prefLabel");
+
+        generator.writeStartObject();
+        Iterator<Map.Entry<String, JsonNode>> fields = jsonNode.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!"sortByLabel".equals(field.getKey()) && !"status".equals(field.getKey())) {
+                generator.writeFieldName(field.getKey());
+                generator.writeTree(field.getValue());
+            }
+        }
+        JsonUtils.writeLocalizable(generator, "sortByLabel", IndexUtil.createSortLabels(prefLabel));
+        generator.writeStringField("status", statusFromTermedProperties(properties));
+        generator.writeEndObject();
     }
 }
@@ -0,0 +1,25 @@
+package fi.vm.yti.terminology.api.index;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Published after vocabulary documents, and thus their contributors, have been written to or deleted from
+ * the vocabularies index.
+ */
+public final class VocabularyIndexChangedEvent {
+
+    private final UUID graphId;
+
+    public VocabularyIndexChangedEvent(@Nullable UUID graphId) {
+        this.graphId = graphId;
+    }
+
+    /**
+     * @return graph of the changed vocabulary or null if any vocabulary may have changed
+     */
+    public @Nullable UUID getGraphId() {
+        return graphId;
+    }
+}
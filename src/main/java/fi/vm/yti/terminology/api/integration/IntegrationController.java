@@ -182,8 +182,9 @@ public class IntegrationController {
         @Parameter(description = "Before date filtering parameter, results will be resources with modified date before this ISO 8601 formatted date string") @RequestParam(required = false) String before,
         @Parameter(description = "After date filtering parameter, results will be resources with modified date after this ISO 8601 formatted date string") @RequestParam(required = false) String after,
         @Parameter(description = "Textual search query") @RequestParam(required = false) String searchTerm,
-        @Parameter(description = "Pagination parameter for page size", example = "100") @RequestParam(defaultValue = "10000") int pageSize,
-        @Parameter(description = "Pagination parameter for start index", example = "0") @RequestParam(required = false, defaultValue = "0") int from) {
+        @Parameter(description = "Pagination parameter for page size. Defaults to 10000, or to 1000 when continuing with a token.", example = "100") @RequestParam(required = false) Integer pageSize,
+        @Parameter(description = "Pagination parameter for start index", example = "0") @RequestParam(required = false, defaultValue = "0") int from,
+        @Parameter(description = "Continuation token from meta of the previous page, continues the listing after it regardless of the start index") @RequestParam(required = false) String continuationToken) {
 
         if (logger.isDebugEnabled()) {
             logger.debug("integrationController.resources");
@@ -204,6 +205,7 @@ public class IntegrationController {
         request.setSearchTerm(searchTerm);
         request.setPageSize(pageSize);
         request.setPageFrom(from);
+        request.setContinuationToken(continuationToken);
         request.setIncludeIncomplete(includeIncomplete);
         request.setIncludeIncompleteFrom(includeIncompleteFrom);
         request.setUri(uri);
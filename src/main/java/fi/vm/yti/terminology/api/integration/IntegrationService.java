@@ -87,6 +87,8 @@ public class IntegrationService {
 
     private static final Logger logger = LoggerFactory.getLogger(IntegrationService.class);
     private static final Set<String> sortLanguages = new HashSet<>(Arrays.asList("fi", "en", "sv"));
+    private static final int DEFAULT_RESOURCES_PAGE_SIZE = 10000;
+    private static final int DEFAULT_CONTINUED_RESOURCES_PAGE_SIZE = 1000;
     private final FrontendTermedService termedService;
     private final IndexElasticSearchService elasticSearchService;
     private final AuthenticatedUserProvider userProvider;
@@ -101,6 +103,8 @@ public class IntegrationService {
      */
     private HashMap<String, MetaNode> typeMap = new HashMap<>();
 
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     @Autowired
     public IntegrationService(TermedRequester termedRequester, FrontendGroupManagementService groupManagementService,
             FrontendTermedService frontendTermedService, IndexElasticSearchService elasticSearchService,
@@ -420,7 +424,7 @@ public class IntegrationService {
         }
         Meta meta = new Meta();
         meta.setAfter(request.getAfter());
-        meta.setPageSize(request.getPageSize());
+        meta.setPageSize(request.getPageSize() != null ? request.getPageSize() : resourcesPageSize(request));
         meta.setFrom(request.getPageFrom());
         // If we ask all from all vocabularies, set default pagesize as 1000
         if ((request.getContainer() == null || request.getContainer().isEmpty()) && request.getPageSize() != null
@@ -451,6 +455,10 @@ public class IntegrationService {
                 }
             });
             meta.setResultCount(r.size());
+            if (r.size() > 0) {
+                meta.setContinuationToken(ElasticRequestUtils.continuationToken(objectMapper,
+                        sortValues(r.get(r.size() - 1)), r.size(), resourcesPageSize(request)));
+            }
         } else {
             // Empty result list
             meta.setResultCount(0);
@@ -601,12 +609,7 @@ public class IntegrationService {
         } else {
             sourceBuilder.from(0);
         }
-
-        if (request.getPageSize() != null && request.getPageSize() > 0) {
-            sourceBuilder.size(request.getPageSize());
-        } else {
-            sourceBuilder.size(10000);
-        }
+        sourceBuilder.size(resourcesPageSize(request));
 
         String[] includeFields = new String[] { "id", "label", "definition", "modified", "created", "status", "uri" };
         sourceBuilder.fetchSource(includeFields, null);
@@ -616,6 +619,11 @@ public class IntegrationService {
         if (request.getLanguage() != null && !request.getLanguage().isEmpty()) {
             addLanguagePrefLabelSort(request.getLanguage(), "sortByLabel.fi", "label", sourceBuilder);
         }
+        // Total order of hits, so that the listing can be continued from the last hit of a page
+        ElasticRequestUtils.addTiebreakSort(sourceBuilder);
+        if (request.getContinuationToken() != null && !request.getContinuationToken().isEmpty()) {
+            ElasticRequestUtils.continueAfter(objectMapper, sourceBuilder, request.getContinuationToken());
+        }
         if (logger.isDebugEnabled()) {
             logger.info("SearchRequest=" + sr);
             logger.debug(sr.source().toString());
@@ -623,6 +631,32 @@ public class IntegrationService {
         return sr;
     }
 
+    /**
+     * Requested page size, when not given all resources are returned at once unless the listing is continued
+     * with a token, in which case smaller pages are used.
+     */
+    private int resourcesPageSize(IntegrationResourceRequest request) {
+        if (request.getPageSize() != null && request.getPageSize() > 0) {
+            return request.getPageSize();
+        }
+        return request.getContinuationToken() != null && !request.getContinuationToken().isEmpty()
+                ? DEFAULT_CONTINUED_RESOURCES_PAGE_SIZE
+                : DEFAULT_RESOURCES_PAGE_SIZE;
+    }
+
+    private Object[] sortValues(JsonNode hit) {
+        JsonNode sort = hit.get("sort");
+        if (sort == null || !sort.isArray()) {
+            return null;
+        }
+        try {
+            return objectMapper.treeToValue(sort, Object[].class);
+        } catch (JsonProcessingException e) {
+            logger.error("Cannot read sort values of hit", e);
+            return null;
+        }
+    }
+
     /**
      * Transform incoming response into the resource-api JSON form
      */
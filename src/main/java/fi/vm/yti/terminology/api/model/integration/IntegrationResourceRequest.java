@@ -17,7 +17,8 @@ public class IntegrationResourceRequest {
       "string"
    ],
    "pageSize":0,
-   "pageFrom":0
+   "pageFrom":0,
+   "continuationToken":"string"
 }
  */
     private String searchTerm;
@@ -33,6 +34,7 @@ public class IntegrationResourceRequest {
 
     private Integer pageSize;
     private Integer pageFrom;
+    private String continuationToken;
 
     public IntegrationResourceRequest(){}
 
@@ -154,6 +156,17 @@ public class IntegrationResourceRequest {
         this.pageFrom = pageFrom;
     }
 
+    /**
+     * Token from meta of the previous page, the next page is then read after it instead of at pageFrom.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(final String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+
     @Override
     public String toString() {
         return "IntegrationResourceRequest{" +
@@ -169,6 +182,7 @@ public class IntegrationResourceRequest {
             ", includeIncompleteFrom=" + includeIncompleteFrom +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", continuationToken='" + continuationToken + '\'' +
             '}';
     }
 
@@ -19,6 +19,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import fi.vm.yti.terminology.api.TermedContentType;
 import fi.vm.yti.terminology.api.model.termed.NodeType;
@@ -133,7 +134,7 @@ public class ResolveController {
     @Operation(summary = "Get a terminology", description = "Fetch a terminology identified by the UUID in requested format")
     @ApiResponse(responseCode = "200", description = "If the terminology was found then it is returned in requested format. If the given ID did not match a terminology then behaviour is undefined.")
     @GetMapping(path = "/vocabulary", produces = { APPLICATION_JSON_VALUE, "application/ld+json", "application/rdf+xml", "text/turtle" })
-    public ResponseEntity<String> getVocabulary(@Parameter(description = "The ID of the requested terminology") @RequestParam UUID graphId,
+    public ResponseEntity<StreamingResponseBody> getVocabulary(@Parameter(description = "The ID of the requested terminology") @RequestParam UUID graphId,
                                                 @Parameter(
                                                     description = "Requested format. This parameter has priority over the Accept header. If neither format parameter nor the accept header is valid then JSON is returned.",
                                                     schema = @Schema(allowableValues = { "application/json", "application/ld+json", "application/rdf+xml", "text/turtle" })
@@ -150,7 +151,7 @@ public class ResolveController {
     @Operation(summary = "Get a concept", description = "Fetch a concept identified by terminology and concept IDs in requested format")
     @ApiResponse(responseCode = "200", description = "If the concept was found then it is returned in requested format. If the given IDs did not match a concept then behaviour is undefined.")
     @GetMapping(path = "/concept", produces = { APPLICATION_JSON_VALUE, "application/ld+json", "application/rdf+xml", "text/turtle" })
-    public ResponseEntity<String> getConcept(@Parameter(description = "The ID of the terminology containing the concept") @RequestParam UUID graphId,
+    public ResponseEntity<StreamingResponseBody> getConcept(@Parameter(description = "The ID of the terminology containing the concept") @RequestParam UUID graphId,
                                              @Parameter(description = "The ID of the requested concept") @RequestParam UUID id,
                                              @Parameter(
                                                  description = "Requested format. This parameter has priority over the Accept header. If neither format parameter nor the accept header is valid then JSON is returned.",
@@ -167,7 +168,7 @@ public class ResolveController {
     @Operation(summary = "Get a concept collection", description = "Fetch a concept collection identified by terminology and collection IDs in requested format")
     @ApiResponse(responseCode = "200", description = "If the collection was found then it is returned in requested format. If the given IDs did not match a collection then behaviour is undefined.")
     @GetMapping(path = "/collection", produces = { APPLICATION_JSON_VALUE, "application/ld+json", "application/rdf+xml", "text/turtle" })
-    public ResponseEntity<String> getCollection(@Parameter(description = "The ID of the terminology containing the concept") @RequestParam UUID graphId,
+    public ResponseEntity<StreamingResponseBody> getCollection(@Parameter(description = "The ID of the terminology containing the concept") @RequestParam UUID graphId,
                                                 @Parameter(description = "The ID of the requested collection") @RequestParam UUID id,
                                                 @Parameter(
                                                     description = "Requested format. This parameter has priority over the Accept header. If neither format parameter nor the accept header is valid then JSON is returned.",
@@ -181,8 +182,8 @@ public class ResolveController {
         return buildResponse(urlResolverService.getResource(graphId, singletonList(NodeType.Collection), tct, id), tct);
     }
 
-    private ResponseEntity<String> buildResponse(String body,
-                                                 TermedContentType type) {
+    private ResponseEntity<StreamingResponseBody> buildResponse(StreamingResponseBody body,
+                                                                TermedContentType type) {
         return ResponseEntity
             .ok()
             .contentType(MediaType.valueOf(type.getContentType()))
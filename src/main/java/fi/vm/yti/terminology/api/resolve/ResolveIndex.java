@@ -0,0 +1,335 @@
+package fi.vm.yti.terminology.api.resolve;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import fi.vm.yti.terminology.api.TermedRequester;
+import fi.vm.yti.terminology.api.exception.VocabularyNotFoundException;
+import fi.vm.yti.terminology.api.index.IndexUpdatedEvent;
+import fi.vm.yti.terminology.api.index.VocabularyIndexChangedEvent;
+import fi.vm.yti.terminology.api.model.termed.GenericNode;
+import fi.vm.yti.terminology.api.model.termed.Graph;
+import fi.vm.yti.terminology.api.model.termed.NodeType;
+import fi.vm.yti.terminology.api.util.Parameters;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import static java.util.Objects.requireNonNull;
+import static org.springframework.http.HttpMethod.GET;
+
+/**
+ * Graph ids by prefix and nodes by code read from Termed for URI resolution. Everything is read again periodically.
+ * Lookups that miss the index are made against Termed so that resources created after the index was read still
+ * resolve. After an index update, which follows a Termed notification, codes of the updated graph are looked up
+ * one by one instead of reading the whole graph again. Prefixes not found are remembered for a while so that
+ * requests for unknown vocabularies do not read all graphs each time.
+ */
+@Component
+class ResolveIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResolveIndex.class);
+
+    private final TermedRequester termedRequester;
+
+    private volatile Map<String, UUID> graphIdsByPrefix;
+    private final AtomicLong prefixGeneration = new AtomicLong();
+    private final Object prefixLoadLock = new Object();
+    private final Cache<String, Boolean> unknownPrefixes;
+
+    private final Cache<UUID, IndexedGraph> nodesByCode;
+    // Versions of indexed codes, a graph changes version when it is updated and all graphs when they are read again
+    private final ConcurrentMap<UUID, AtomicLong> graphVersions = new ConcurrentHashMap<>();
+    private final AtomicLong allGraphsVersion = new AtomicLong();
+
+    @Autowired
+    ResolveIndex(TermedRequester termedRequester,
+                 MeterRegistry meterRegistry,
+                 @Value("${resolve.index.maxGraphs:500}") long maxGraphs,
+                 @Value("${resolve.index.unknownPrefixSeconds:60}") long unknownPrefixSeconds) {
+        this.termedRequester = termedRequester;
+
+        this.unknownPrefixes = CacheBuilder.newBuilder()
+                .expireAfterWrite(unknownPrefixSeconds, TimeUnit.SECONDS)
+                .maximumSize(10000)
+                .build();
+
+        this.nodesByCode = CacheBuilder.newBuilder()
+                .maximumSize(maxGraphs)
+                .recordStats()
+                .build();
+
+        GuavaCacheMetrics.monitor(meterRegistry, nodesByCode, "terminology.resolve.codes");
+    }
+
+    /**
+     * @throws VocabularyNotFoundException if no graph has the prefix as its code, case ignored
+     */
+    @NotNull UUID getGraphId(@NotNull String prefix) {
+
+        String key = prefix.toLowerCase(Locale.ROOT);
+        Map<String, UUID> prefixes = graphIdsByPrefix;
+        UUID graphId = prefixes != null ? prefixes.get(key) : null;
+
+        if (graphId == null && (prefixes == null || unknownPrefixes.getIfPresent(key) == null)) {
+            // Unknown prefixes may belong to vocabularies created after the graphs were read
+            graphId = loadGraphId(key, prefixes);
+        }
+
+        if (graphId == null) {
+            throw new VocabularyNotFoundException(prefix);
+        }
+
+        return graphId;
+    }
+
+    /**
+     * @return nodes of the graph having the code, empty if there are none
+     */
+    @NotNull List<IndexedNode> getNodes(@NotNull UUID graphId, @NotNull String code) {
+
+        IndexedGraph graph = getGraph(graphId);
+        List<IndexedNode> nodes = graph.codes.get(code);
+
+        if (nodes == null) {
+            logger.debug("Code " + code + " not indexed for graph " + graphId + ", querying Termed");
+            nodes = toIndexedNodes(findNodes(graphId, code));
+            if (!graph.complete && !nodes.isEmpty() && graph.version == version(graphId)) {
+                graph.codes.put(code, nodes);
+            }
+        }
+
+        return nodes;
+    }
+
+    @EventListener
+    void onIndexUpdated(IndexUpdatedEvent event) {
+        if (event.getGraphId() != null) {
+            // Codes of the updated graph are looked up from Termed as they are resolved
+            graphVersions.computeIfAbsent(event.getGraphId(), id -> new AtomicLong()).incrementAndGet();
+        } else {
+            invalidateCodes();
+        }
+    }
+
+    @EventListener
+    void onVocabularyIndexChanged(VocabularyIndexChangedEvent event) {
+        // Vocabularies may have been created, removed or given a new prefix
+        invalidatePrefixes();
+    }
+
+    @Scheduled(fixedDelayString = "${resolve.index.refreshMillis:600000}")
+    void refresh() {
+        invalidatePrefixes();
+        invalidateCodes();
+    }
+
+    private void invalidateCodes() {
+        allGraphsVersion.incrementAndGet();
+        nodesByCode.invalidateAll();
+    }
+
+    /**
+     * Codes of the graph as of its latest update. Concurrent lookups of a graph that is not indexed wait for
+     * one read of the whole graph. A graph indexed before its latest update is replaced by one whose codes are
+     * looked up from Termed one by one.
+     */
+    private @NotNull IndexedGraph getGraph(@NotNull UUID graphId) {
+
+        IndexedGraph graph;
+        try {
+            graph = nodesByCode.get(graphId, () -> {
+                long version = version(graphId);
+                return new IndexedGraph(loadCodes(graphId), true, version);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        }
+
+        long version = version(graphId);
+        if (graph.version != version) {
+            IndexedGraph updated = new IndexedGraph(new ConcurrentHashMap<>(), false, version);
+            nodesByCode.asMap().replace(graphId, graph, updated);
+            graph = updated;
+        }
+
+        return graph;
+    }
+
+    /**
+     * Both parts only grow, so the sum changes whenever either of them does
+     */
+    private long version(@NotNull UUID graphId) {
+        AtomicLong graphVersion = graphVersions.get(graphId);
+        return allGraphsVersion.get() + (graphVersion != null ? graphVersion.get() : 0);
+    }
+
+    private void invalidatePrefixes() {
+        prefixGeneration.incrementAndGet();
+        graphIdsByPrefix = null;
+        unknownPrefixes.invalidateAll();
+    }
+
+    /**
+     * Reads the graphs again unless another lookup did so after the caller saw the prefixes. One lookup
+     * reads the graphs at a time, the others wait for its result.
+     *
+     * @param seen prefixes the caller did not find the prefix in, null if there were none
+     */
+    private @Nullable UUID loadGraphId(@NotNull String key, @Nullable Map<String, UUID> seen) {
+
+        synchronized (prefixLoadLock) {
+
+            Map<String, UUID> prefixes = graphIdsByPrefix;
+
+            if (prefixes == null || prefixes == seen) {
+                if (prefixes != null && unknownPrefixes.getIfPresent(key) != null) {
+                    return null;
+                }
+                prefixes = loadPrefixes();
+            }
+
+            UUID graphId = prefixes.get(key);
+
+            if (graphId == null && prefixes == graphIdsByPrefix) {
+                unknownPrefixes.put(key, Boolean.TRUE);
+            }
+
+            return graphId;
+        }
+    }
+
+    private @NotNull Map<String, UUID> loadPrefixes() {
+
+        long generation = prefixGeneration.get();
+
+        Parameters params = new Parameters();
+        params.add("max", "-1");
+
+        List<Graph> graphs = requireNonNull(termedRequester.exchange("/graphs", GET, params, new ParameterizedTypeReference<List<Graph>>() {
+        }));
+
+        Map<String, UUID> prefixes = new HashMap<>();
+        for (Graph graph : graphs) {
+            if (graph.getCode() != null) {
+                prefixes.putIfAbsent(graph.getCode().toLowerCase(Locale.ROOT), graph.getId());
+            }
+        }
+
+        if (generation == prefixGeneration.get()) {
+            graphIdsByPrefix = prefixes;
+        }
+
+        return prefixes;
+    }
+
+    private @NotNull Map<String, List<IndexedNode>> loadCodes(@NotNull UUID graphId) {
+
+        long start = System.currentTimeMillis();
+
+        Parameters params = new Parameters();
+        params.add("select", "id");
+        params.add("select", "type");
+        params.add("select", "code");
+        params.add("where", "graph.id:" + graphId);
+        params.add("max", "-1");
+
+        List<GenericNode> nodes =
+            requireNonNull(termedRequester.exchange("/node-trees", GET, params, new ParameterizedTypeReference<List<GenericNode>>() {
+            }));
+
+        Map<String, List<IndexedNode>> codes = new HashMap<>();
+        for (GenericNode node : nodes) {
+            if (node.getCode() != null) {
+                codes.computeIfAbsent(node.getCode(), c -> new ArrayList<>(1)).add(new IndexedNode(node));
+            }
+        }
+
+        logger.debug("Indexed " + codes.size() + " codes of graph " + graphId + " in " + (System.currentTimeMillis() - start) + "ms");
+        return codes;
+    }
+
+    private @NotNull List<GenericNode> findNodes(@NotNull UUID graphId,
+                                                 @NotNull String code) {
+        Parameters params = new Parameters();
+        params.add("select", "id");
+        params.add("select", "type");
+        params.add("select", "code");
+        params.add("where", "graph.id:" + graphId);
+        params.add("where", "code:" + code);
+        params.add("max", "-1");
+
+        return requireNonNull(termedRequester.exchange("/node-trees", GET, params, new ParameterizedTypeReference<List<GenericNode>>() {
+        }));
+    }
+
+    /**
+     * Codes of a graph at a version. A complete graph was read as a whole, codes of other graphs are added as they
+     * are resolved.
+     */
+    private static final class IndexedGraph {
+
+        private final Map<String, List<IndexedNode>> codes;
+        private final boolean complete;
+        private final long version;
+
+        private IndexedGraph(@NotNull Map<String, List<IndexedNode>> codes, boolean complete, long version) {
+            this.codes = codes;
+            this.complete = complete;
+            this.version = version;
+        }
+    }
+
+    private static @NotNull List<IndexedNode> toIndexedNodes(@NotNull List<GenericNode> nodes) {
+        List<IndexedNode> indexed = new ArrayList<>(nodes.size());
+        for (GenericNode node : nodes) {
+            indexed.add(new IndexedNode(node));
+        }
+        return indexed;
+    }
+
+    static final class IndexedNode {
+
+        @NotNull
+        private final UUID id;
+        @Nullable
+        private final NodeType type;
+
+        private IndexedNode(@NotNull GenericNode node) {
+            this.id = node.getId();
+            this.type = node.getType() != null ? node.getType().getId() : null;
+        }
+
+        @NotNull
+        UUID getId() {
+            return id;
+        }
+
+        @Nullable
+        NodeType getType() {
+            return type;
+        }
+    }
+}
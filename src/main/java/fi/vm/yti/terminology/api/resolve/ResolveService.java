@@ -2,6 +2,7 @@ package fi.vm.yti.terminology.api.resolve;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -13,20 +14,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import fi.vm.yti.terminology.api.TermedContentType;
 import fi.vm.yti.terminology.api.TermedRequester;
+import fi.vm.yti.terminology.api.TermedResponseBody;
 import fi.vm.yti.terminology.api.config.UriProperties;
+import fi.vm.yti.terminology.api.exception.NodeNotFoundException;
 import fi.vm.yti.terminology.api.exception.ResourceNotFoundException;
 import fi.vm.yti.terminology.api.exception.VocabularyNotFoundException;
-import fi.vm.yti.terminology.api.model.termed.GenericNode;
-import fi.vm.yti.terminology.api.model.termed.Graph;
 import fi.vm.yti.terminology.api.model.termed.NodeType;
+import fi.vm.yti.terminology.api.resolve.ResolveIndex.IndexedNode;
 import fi.vm.yti.terminology.api.resolve.ResolvedResource.Type;
 import fi.vm.yti.terminology.api.util.Parameters;
-import static java.util.Objects.requireNonNull;
 import static org.springframework.http.HttpMethod.GET;
 
 @Service
@@ -35,15 +37,18 @@ public class ResolveService {
     private static final Logger logger = LoggerFactory.getLogger(ResolveService.class);
     private final TermedRequester termedRequester;
     private final UriProperties uriProperties;
+    private final ResolveIndex resolveIndex;
 
     private static final Pattern PREFIX_PATTERN = Pattern.compile("^(?<prefix>[\\w\\-]+)/$");
     private static final Pattern PREFIX_AND_RESOURCE_PATTERN = Pattern.compile("^(?<prefix>[\\w\\-]+)/(?<resource>[\\w\\-]+)$");
 
     @Autowired
     ResolveService(TermedRequester termedRequester,
-                    UriProperties uriProperties) {
+                    UriProperties uriProperties,
+                    ResolveIndex resolveIndex) {
         this.termedRequester = termedRequester;
         this.uriProperties = uriProperties;
+        this.resolveIndex = resolveIndex;
     }
 
     ResolvedResource resolveResource(String uri) {
@@ -60,7 +65,7 @@ public class ResolveService {
         Matcher prefixMatcher = PREFIX_PATTERN.matcher(path);
         if (prefixMatcher.matches()) {
             String prefix = prefixMatcher.group("prefix");
-            UUID graphId = findGraphIdForPrefix(prefix);
+            UUID graphId = resolveIndex.getGraphId(prefix);
             return new ResolvedResource(graphId, Type.VOCABULARY);
         }
 
@@ -69,13 +74,16 @@ public class ResolveService {
             String prefix = prefixAndResourceMatcher.group("prefix");
             String resource = prefixAndResourceMatcher.group("resource");
 
-            UUID graphId = findGraphIdForPrefix(prefix);
-            List<GenericNode> nodes = findNodes(graphId, resource);
+            UUID graphId = resolveIndex.getGraphId(prefix);
+            List<IndexedNode> nodes = resolveIndex.getNodes(graphId, resource);
             if (nodes.size() > 1) {
                 logger.debug("Found " + nodes.size() + " matching nodes for URI: " + uri);
             }
-            for (GenericNode node : nodes) {
-                switch (node.getType().getId()) {
+            for (IndexedNode node : nodes) {
+                if (node.getType() == null) {
+                    continue;
+                }
+                switch (node.getType()) {
                     case TerminologicalVocabulary:
                         return new ResolvedResource(graphId, Type.VOCABULARY);
                     case Concept:
@@ -83,7 +91,7 @@ public class ResolveService {
                     case Collection:
                         return new ResolvedResource(graphId, Type.COLLECTION, node.getId());
                     default:
-                        logger.debug("Found node of type " + node.getType().getId() + " for URI: " + uri);
+                        logger.debug("Found node of type " + node.getType() + " for URI: " + uri);
                 }
             }
 
@@ -95,42 +103,10 @@ public class ResolveService {
         throw new RuntimeException("Unsupported URI: " + uri);
     }
 
-    private List<GenericNode> findNodes(UUID graphId,
-                                        String code) {
-        Parameters params = new Parameters();
-        params.add("select", "id");
-        params.add("select", "type");
-        params.add("select", "code");
-        params.add("where", "graph.id:" + graphId);
-        params.add("where", "code:" + code);
-        params.add("max", "-1");
-
-        List<GenericNode> result =
-            requireNonNull(termedRequester.exchange("/node-trees", GET, params, new ParameterizedTypeReference<List<GenericNode>>() {
-            }));
-
-        return result;
-    }
-
-    // FIXME inefficient implementation but termed doesn't provide better way (afaik)
-    private @NotNull UUID findGraphIdForPrefix(String prefix) {
-
-        Parameters params = new Parameters();
-        params.add("max", "-1");
-
-        return requireNonNull(termedRequester.exchange("/graphs", GET, params, new ParameterizedTypeReference<List<Graph>>() {
-        }))
-            .stream()
-            .filter(g -> g.getCode().equalsIgnoreCase(prefix))
-            .findFirst()
-            .orElseThrow(() -> new VocabularyNotFoundException(prefix))
-            .getId();
-    }
-
-    String getResource(@NotNull UUID graphId,
-                       @NotNull List<NodeType> types,
-                       TermedContentType contentType,
-                       @Nullable UUID resourceId) {
+    StreamingResponseBody getResource(@NotNull UUID graphId,
+                                      @NotNull List<NodeType> types,
+                                      TermedContentType contentType,
+                                      @Nullable UUID resourceId) {
 
         Parameters params = new Parameters();
         params.add("select", "*");
@@ -139,16 +115,33 @@ public class ResolveService {
         params.add("where", formatWhereClause(graphId, types, resourceId));
         params.add("pretty", "true");
 
-        return requireNonNull(termedRequester.exchange("/node-trees", GET, params, String.class, contentType));
+        return open("/node-trees", params, contentType, () -> resourceId != null
+            ? new NodeNotFoundException(graphId, resourceId)
+            : new NodeNotFoundException(graphId, types));
     }
 
-    String getTerminology(@NotNull UUID id, TermedContentType contentType) {
+    StreamingResponseBody getTerminology(@NotNull UUID id, TermedContentType contentType) {
         Parameters params = new Parameters();
         params.add("select", "*");
         //params.add("select", "references.prefLabelXl:1");
         params.add("max", "-1");
         params.add("pretty", "true");
-        return requireNonNull(termedRequester.exchange("/graphs/" + id + "/node-trees", GET, params, String.class, contentType));
+        return open("/graphs/" + id + "/node-trees", params, contentType, () -> new VocabularyNotFoundException(id));
+    }
+
+    /**
+     * Opens the Termed response before the controller commits its status, so that missing resources and
+     * Termed errors are not sent as an empty 200 response.
+     */
+    private @NotNull StreamingResponseBody open(@NotNull String path,
+                                                @NotNull Parameters params,
+                                                TermedContentType contentType,
+                                                @NotNull Supplier<RuntimeException> notFound) {
+        ClientHttpResponse response = termedRequester.open(path, GET, params, contentType);
+        if (response == null) {
+            throw notFound.get();
+        }
+        return TermedResponseBody.start(response, path);
     }
 
     private static @NotNull String formatWhereClause(@NotNull UUID graphId,
@@ -5,9 +5,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -15,14 +18,23 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.query.MatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.QueryStringQueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -39,6 +51,8 @@ public final class ElasticRequestUtils {
     private static final Pattern LUCENE_PLAIN_QUERY_PATTERN = Pattern.compile(LUCENE_PLAIN_QUERY_PATTERN_STRING, Pattern.UNICODE_CHARACTER_CLASS);
     private static final Pattern LUCENE_GIVEN_QUERY_PATTERN = Pattern.compile(LUCENE_ASTERISK_QUERY_PATTERN_STRING, Pattern.UNICODE_CHARACTER_CLASS);
 
+    private static final String TIEBREAK_SORT_FIELD = "id";
+
     private ElasticRequestUtils() {
         // prevent construction
     }
@@ -174,6 +188,211 @@ public final class ElasticRequestUtils {
         return null;
     }
 
+    /**
+     * Parser over the source bytes of the hit, positioned at the start of the source object. The bytes held by
+     * the hit are read in place, no string or tree is built from them.
+     */
+    public static @NotNull JsonParser sourceParser(@NotNull ObjectMapper objectMapper,
+                                                   @NotNull SearchHit hit) throws IOException {
+        BytesReference source = hit.getSourceRef();
+        if (source == null) {
+            throw new IOException("No source in hit " + hit.getId());
+        }
+        BytesRef bytes = source.toBytesRef();
+        JsonParser parser = objectMapper.getFactory().createParser(bytes.bytes, bytes.offset, bytes.length);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new IOException("Source of hit " + hit.getId() + " is not an object");
+        }
+        return parser;
+    }
+
+    /**
+     * Advances the parser to the next field of the current object and on to its value.
+     *
+     * @return name of the field, or null at the end of the object
+     */
+    public static @Nullable String nextField(@NotNull JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.FIELD_NAME) {
+            return null;
+        }
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        return name;
+    }
+
+    /**
+     * Streaming counterpart of {@link #getTextValueOrNull(JsonNode, String)} for the current value.
+     */
+    public static @Nullable String textValueOrNull(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Streaming counterpart of {@link #labelFromKeyValueNode(JsonNode)} for the current value.
+     */
+    public static @Nullable Map<String, String> labelFromKeyValueObject(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Map<String, String> ret = new HashMap<>();
+        String lang;
+        while ((lang = nextField(parser)) != null) {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                ret.put(lang, parser.getText());
+            } else if (parser.currentToken() == JsonToken.START_ARRAY) {
+                if (parser.nextToken() != JsonToken.END_ARRAY) {
+                    ret.put(lang, textValueOrNull(parser));
+                    skipRestOfArray(parser);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return !ret.isEmpty() ? ret : null;
+    }
+
+    /**
+     * Streaming counterpart of {@link #labelFromLangValueArray(JsonNode)} for the current value.
+     */
+    public static @Nullable Map<String, String> labelFromLangValueArray(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        Map<String, String> ret = new HashMap<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String lang = null;
+            String value = null;
+            String field;
+            while ((field = nextField(parser)) != null) {
+                if ("lang".equals(field)) {
+                    lang = textValueOrNull(parser);
+                } else if ("value".equals(field)) {
+                    value = textValueOrNull(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (lang != null) {
+                ret.put(lang, value);
+            }
+        }
+        return !ret.isEmpty() ? ret : null;
+    }
+
+    /**
+     * Values of the current array of strings in ascending order, or null if there are none.
+     */
+    public static @Nullable List<String> sortedTextValues(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<String> ret = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String value = textValueOrNull(parser);
+            if (value != null && !value.isEmpty()) {
+                ret.add(value);
+            }
+        }
+        ret.sort(String::compareTo);
+        return !ret.isEmpty() ? ret : null;
+    }
+
+    /**
+     * The "value" of the first object in the current array of lang/value objects.
+     */
+    public static @Nullable String firstValueOrNull(@NotNull JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        String value = null;
+        JsonToken first = parser.nextToken();
+        if (first == JsonToken.START_OBJECT) {
+            String field;
+            while ((field = nextField(parser)) != null) {
+                if ("value".equals(field)) {
+                    value = textValueOrNull(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (first != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+        }
+        if (first != JsonToken.END_ARRAY) {
+            skipRestOfArray(parser);
+        }
+        return value;
+    }
+
+    private static void skipRestOfArray(@NotNull JsonParser parser) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Makes the order of the hits total so that pages can be continued with search_after. The document id is
+     * added as the last sort key, preceded by the score if no other sort was given.
+     */
+    public static void addTiebreakSort(@NotNull SearchSourceBuilder sourceBuilder) {
+        if (sourceBuilder.sorts() == null || sourceBuilder.sorts().isEmpty()) {
+            sourceBuilder.sort(SortBuilders.scoreSort().order(SortOrder.DESC));
+        }
+        sourceBuilder.sort(SortBuilders.fieldSort(TIEBREAK_SORT_FIELD).order(SortOrder.ASC));
+    }
+
+    /**
+     * Continues the search after the hit the token was created from. Paging with from is not allowed with
+     * search_after, so it is reset.
+     *
+     * @throws InvalidQueryException if the token was not created by {@link #continuationToken}
+     */
+    public static void continueAfter(@NotNull ObjectMapper objectMapper,
+                                     @NotNull SearchSourceBuilder sourceBuilder,
+                                     @NotNull String continuationToken) {
+        Object[] sortValues;
+        try {
+            sortValues = objectMapper.readValue(Base64.getUrlDecoder().decode(continuationToken), Object[].class);
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Continuation token disqualified: '{}'", StringUtils.normalizeSpace(continuationToken));
+            throw new InvalidQueryException("Invalid continuation token");
+        }
+        if (sortValues.length != sourceBuilder.sorts().size()) {
+            throw new InvalidQueryException("Continuation token does not match the sort of the query");
+        }
+        sourceBuilder.from(0).searchAfter(sortValues);
+    }
+
+    /**
+     * Opaque token carrying the sort values of the last hit of a full page, or null if there are no more pages.
+     */
+    public static @Nullable String continuationToken(@NotNull ObjectMapper objectMapper,
+                                                     @Nullable Object[] lastHitSortValues,
+                                                     int hitCount,
+                                                     int pageSize) {
+        if (lastHitSortValues == null || lastHitSortValues.length == 0 || hitCount == 0 || hitCount < pageSize) {
+            return null;
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(lastHitSortValues));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static Pattern createHighlightPattern(String queryString) {
         if (queryString != null) {
             var patternString = QUERY_SPLITTER_PATTERN.splitAsStream(queryString)
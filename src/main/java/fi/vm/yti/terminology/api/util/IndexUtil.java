@@ -2,9 +2,12 @@ package fi.vm.yti.terminology.api.util;
 
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.jetbrains.annotations.Nullable;
+
 import static java.util.stream.Collectors.toList;
 
 public class IndexUtil {
@@ -42,4 +45,16 @@ public class IndexUtil {
 
         return result;
     }
+
+    /**
+     * Status as indexed in the status keyword of concepts and vocabularies, e.g. " draft" becomes "DRAFT".
+     *
+     * @return trimmed upper case status or null if blank
+     */
+    public static @Nullable String normalizeStatus(@Nullable String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        return status.trim().toUpperCase(Locale.ROOT);
+    }
 }
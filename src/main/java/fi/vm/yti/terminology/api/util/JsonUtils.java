@@ -1,6 +1,7 @@
 package fi.vm.yti.terminology.api.util;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -71,6 +72,26 @@ public final class JsonUtils {
 	    return mapper.valueToTree(localizable);
 	}
 
+	public static void writeList(@NotNull JsonGenerator generator, @NotNull String fieldName, @NotNull List<UUID> collection) throws IOException {
+		generator.writeArrayFieldStart(fieldName);
+		for (UUID item : collection) {
+			generator.writeString(item.toString());
+		}
+		generator.writeEndArray();
+	}
+
+	public static void writeLocalizable(@NotNull JsonGenerator generator, @NotNull String fieldName, @NotNull Map<String, List<String>> localizable) throws IOException {
+		generator.writeObjectFieldStart(fieldName);
+		for (Map.Entry<String, List<String>> localization : localizable.entrySet()) {
+			generator.writeArrayFieldStart(localization.getKey());
+			for (String value : localization.getValue()) {
+				generator.writeString(value);
+			}
+			generator.writeEndArray();
+		}
+		generator.writeEndObject();
+	}
+
 	public static @NotNull Map<String, List<String>> jsonToLocalizable(@NotNull ObjectMapper mapper, @NotNull JsonNode json) {
         try {
             return mapper.readValue(mapper.treeAsTokens(json), new TypeReference<Map<String, List<String>>>() {});
@@ -6,6 +6,7 @@ import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 // Wrapper for RestHighLevelClient that can be mocked in tests
 public interface RestHighLevelClientWrapper {
@@ -13,5 +14,9 @@ public interface RestHighLevelClientWrapper {
             SearchRequest searchRequest,
             RequestOptions options) throws IOException;
 
+    CompletableFuture<SearchResponse> searchAsync(
+            SearchRequest searchRequest,
+            RequestOptions options);
+
     RestClient getLowLevelClient();
 }
@@ -1,4 +1,5 @@
 package fi.vm.yti.terminology.api.util;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
@@ -6,6 +7,7 @@ import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 // Wrapper for RestHighLevelClient that can be mocked in tests
 public class RestHighLevelClientWrapperImpl implements RestHighLevelClientWrapper {
@@ -22,6 +24,14 @@ public class RestHighLevelClientWrapperImpl implements RestHighLevelClientWrappe
         return client.search(searchRequest, options);
     }
 
+    public CompletableFuture<SearchResponse> searchAsync(
+            SearchRequest searchRequest,
+            RequestOptions options) {
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        client.searchAsync(searchRequest, options, ActionListener.wrap(future::complete, future::completeExceptionally));
+        return future;
+    }
+
     public RestClient getLowLevelClient() {
         return this.client.getLowLevelClient();
     }
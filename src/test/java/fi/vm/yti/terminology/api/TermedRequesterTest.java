@@ -0,0 +1,90 @@
+package fi.vm.yti.terminology.api;
+
+import fi.vm.yti.terminology.api.exception.TermedEndpointException;
+import fi.vm.yti.terminology.api.util.Parameters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.OngoingStubbing;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TermedRequesterTest {
+
+    private static final String URL = "http://termed/api";
+
+    private RestTemplate restTemplate;
+    private ExecutorService executor;
+    private TermedRequester termedRequester;
+
+    @BeforeEach
+    public void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        executor = Executors.newSingleThreadExecutor();
+        termedRequester = new TermedRequester("user", "password", URL, restTemplate, executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void asyncExchangeCompletesWithResponseBody() throws Exception {
+        mockResponse("/graphs").thenReturn(ResponseEntity.ok("[]"));
+
+        CompletableFuture<String> response = termedRequester.exchangeAsync("/graphs", HttpMethod.GET, Parameters.empty(), String.class);
+
+        assertEquals("[]", response.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void asyncExchangeCompletesWithNullWhenNotFound() throws Exception {
+        mockResponse("/graphs/missing").thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        CompletableFuture<String> response = termedRequester.exchangeAsync("/graphs/missing", HttpMethod.GET, Parameters.empty(), String.class);
+
+        assertNull(response.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void asyncExchangeFailsWithTermedError() {
+        mockResponse("/graphs").thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        CompletableFuture<String> response = termedRequester.exchangeAsync("/graphs", HttpMethod.GET, Parameters.empty(), String.class);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof HttpServerErrorException);
+    }
+
+    @Test
+    public void asyncExchangeFailsWithEndpointExceptionWhenTermedIsUnreachable() {
+        mockResponse("/graphs").thenThrow(new ResourceAccessException("Connection refused"));
+
+        CompletableFuture<String> response = termedRequester.exchangeAsync("/graphs", HttpMethod.GET, Parameters.empty(), String.class);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TermedEndpointException);
+    }
+
+    private OngoingStubbing<ResponseEntity<String>> mockResponse(String path) {
+        return when(restTemplate.exchange(eq(URL + path), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)));
+    }
+}
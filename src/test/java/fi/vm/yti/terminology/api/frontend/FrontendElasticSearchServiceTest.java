@@ -8,11 +8,16 @@ import fi.vm.yti.security.AuthenticatedUserProvider;
 import fi.vm.yti.security.Role;
 import fi.vm.yti.security.YtiUser;
 import fi.vm.yti.terminology.api.config.JsonConfig;
+import fi.vm.yti.terminology.api.config.ThreadConfig;
 import fi.vm.yti.terminology.api.config.UriProperties;
 import fi.vm.yti.terminology.api.frontend.searchdto.TerminologySearchRequest;
 import fi.vm.yti.terminology.api.frontend.searchdto.TerminologySearchResponse;
+import fi.vm.yti.terminology.api.index.IndexUpdatedEvent;
+import fi.vm.yti.terminology.api.index.VocabularyIndexChangedEvent;
 import fi.vm.yti.terminology.api.util.RestHighLevelClientWrapper;
 import fi.vm.yti.terminology.elasticsearch.EsUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.junit.jupiter.api.AfterEach;
@@ -24,6 +29,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.test.context.TestPropertySource;
@@ -31,6 +37,9 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -38,7 +47,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
-@Import({ JsonConfig.class, FrontendElasticSearchService.class })
+@Import({ JsonConfig.class, ThreadConfig.class, SimpleMeterRegistry.class, FrontendElasticSearchService.class })
 @ExtendWith(SpringExtension.class) // TODO: read this https://rieckpil.de/what-the-heck-is-the-springextension-used-for/
 @ExtendWith(MockitoExtension.class)
 @TestPropertySource(properties = {
@@ -67,6 +76,12 @@ public class FrontendElasticSearchServiceTest {
     @MockBean
     UriProperties uriProperties;
 
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
     private ListAppender<ILoggingEvent> logWatcher;
 
     @BeforeEach
@@ -131,6 +146,13 @@ public class FrontendElasticSearchServiceTest {
         return true;
     }
 
+    private boolean isMatchingTerminologiesQuery(SearchRequest arg)
+    {
+        return isVocabularyQuery(arg)
+                && arg.source().fetchSource() != null
+                && !arg.source().fetchSource().fetchSource();
+    }
+
     private boolean isConceptQuery(SearchRequest arg)
     {
         if (arg.indices().length != 1 || !"concepts".equals(arg.indices()[0])) {
@@ -153,9 +175,9 @@ public class FrontendElasticSearchServiceTest {
                 .getUser();
 
         // Mock the same esClient call with a specific argument
-        doReturn(vocabulariesResponse)
+        doReturn(CompletableFuture.completedFuture(vocabulariesResponse))
                 .when(this.esClient)
-                .search(argThat(i -> isVocabularyQuery(i)), any());
+                .searchAsync(argThat(i -> isVocabularyQuery(i)), any());
 
         // Actual query
         var request = new TerminologySearchRequest();
@@ -170,7 +192,7 @@ public class FrontendElasticSearchServiceTest {
 
         ArgumentCaptor<SearchRequest> srCaptor = ArgumentCaptor.forClass(SearchRequest.class);
         verify(this.esClient, times(1))
-                .search(srCaptor.capture(), any(RequestOptions.class));
+                .searchAsync(srCaptor.capture(), any(RequestOptions.class));
 
         // Check that esClient.search was called with expected kinds of arguments
         var args = srCaptor.getAllValues();
@@ -201,12 +223,12 @@ public class FrontendElasticSearchServiceTest {
                 .getUser();
 
         // Mock the same esClient call with different arguments & return values
-        doReturn(conceptsResponse)
+        doReturn(CompletableFuture.completedFuture(conceptsResponse))
                 .when(this.esClient)
-                .search(argThat(i -> isConceptQuery(i)), any());
-        doReturn(vocabulariesResponse)
+                .searchAsync(argThat(i -> isConceptQuery(i)), any());
+        doReturn(CompletableFuture.completedFuture(vocabulariesResponse))
                 .when(this.esClient)
-                .search(argThat(i -> isVocabularyQuery(i)), any());
+                .searchAsync(argThat(i -> isVocabularyQuery(i)), any());
 
         // Actual query
         var request = new TerminologySearchRequest();
@@ -222,7 +244,7 @@ public class FrontendElasticSearchServiceTest {
 
         ArgumentCaptor<SearchRequest> srCaptor = ArgumentCaptor.forClass(SearchRequest.class);
         verify(this.esClient, times(2))
-                .search(srCaptor.capture(), any(RequestOptions.class));
+                .searchAsync(srCaptor.capture(), any(RequestOptions.class));
 
         // Check that esClient.search was called with expected kinds of arguments
         var args = srCaptor.getAllValues();
@@ -244,6 +266,39 @@ public class FrontendElasticSearchServiceTest {
         assertNoLogErrors();
     }
 
+    @Test
+    public void searchesAreBuiltOnSearchExecutor() throws Exception {
+        doReturn(this.createMockUser(true))
+                .when(this.userProvider)
+                .getUser();
+
+        // responses are completed on a thread of their own, like the I/O threads of the client
+        ExecutorService ioThread = Executors.newSingleThreadExecutor(r -> new Thread(r, "es-io"));
+        List<String> searchThreads = Collections.synchronizedList(new ArrayList<>());
+        try {
+            doAnswer(invocation -> {
+                searchThreads.add(Thread.currentThread().getName());
+                var response = EsUtils.getMockResponse("/es/response/concept_response.json");
+                return CompletableFuture.supplyAsync(() -> response, ioThread);
+            }).when(this.esClient).searchAsync(argThat(i -> isConceptQuery(i)), any());
+            doAnswer(invocation -> {
+                searchThreads.add(Thread.currentThread().getName());
+                var response = EsUtils.getMockResponse("/es/response/vocabulary_response.json");
+                return CompletableFuture.supplyAsync(() -> response, ioThread);
+            }).when(this.esClient).searchAsync(argThat(i -> isVocabularyQuery(i)), any());
+
+            var request = new TerminologySearchRequest();
+            request.setQuery("test");
+            request.setSearchConcepts(true);
+            assertEquals(1, service.searchTerminology(request).getTotalHitCount());
+        } finally {
+            ioThread.shutdown();
+        }
+
+        assertEquals(2, searchThreads.size());
+        searchThreads.forEach(name -> assertTrue(name.startsWith("search-async-"), name));
+    }
+
     @Test
     public void testOrganizationQuery() throws Exception {
         var request = new TerminologySearchRequest();
@@ -256,9 +311,9 @@ public class FrontendElasticSearchServiceTest {
         Map<UUID, Set<Role>> roles = new HashMap<>();
         roles.put(orgId, Set.of(Role.ADMIN));
 
-        doReturn(vocabulariesEsResponse)
+        doReturn(CompletableFuture.completedFuture(vocabulariesEsResponse))
                 .when(this.esClient)
-                .search(argThat(i -> isVocabularyQuery(i)), any());
+                .searchAsync(argThat(i -> isVocabularyQuery(i)), any());
         doReturn(this.createMockUser(false, roles))
             .when(userProvider)
             .getUser();
@@ -267,7 +322,7 @@ public class FrontendElasticSearchServiceTest {
 
         ArgumentCaptor<SearchRequest> srCaptor = ArgumentCaptor.forClass(SearchRequest.class);
         verify(this.esClient)
-                .search(srCaptor.capture(), any(RequestOptions.class));
+                .searchAsync(srCaptor.capture(), any(RequestOptions.class));
 
         var values = srCaptor.getAllValues();
 
@@ -275,4 +330,95 @@ public class FrontendElasticSearchServiceTest {
         assertTrue(values.get(0).source().toString().indexOf("references.contributor.id\":[\"" + orgId.toString()) > -1);
     }
 
+    @Test
+    public void matchingTerminologiesAreCachedUntilVocabulariesChange() throws Exception {
+        var orgId = UUID.randomUUID();
+        Map<UUID, Set<Role>> roles = new HashMap<>();
+        roles.put(orgId, Set.of(Role.ADMIN));
+
+        doReturn(this.createMockUser(false, roles))
+                .when(userProvider)
+                .getUser();
+        doReturn(CompletableFuture.completedFuture(EsUtils.getMockResponse("/es/response/concept_response.json")))
+                .when(this.esClient)
+                .searchAsync(argThat(i -> isConceptQuery(i)), any());
+        doReturn(CompletableFuture.completedFuture(EsUtils.getMockResponse("/es/response/vocabulary_response.json")))
+                .when(this.esClient)
+                .searchAsync(argThat(i -> isVocabularyQuery(i)), any());
+        doReturn(CompletableFuture.completedFuture(EsUtils.getMockResponse("/es/response/matching_terminologies_response.json")))
+                .when(this.esClient)
+                .searchAsync(argThat(i -> isMatchingTerminologiesQuery(i)), any());
+
+        var request = new TerminologySearchRequest();
+        request.setQuery("test");
+        request.setSearchConcepts(true);
+
+        service.searchTerminology(request);
+        service.searchTerminology(request);
+
+        verify(this.esClient, times(1))
+                .searchAsync(argThat(i -> isMatchingTerminologiesQuery(i)), any(RequestOptions.class));
+
+        // both concept queries are limited by the cached terminology of the organization
+        ArgumentCaptor<SearchRequest> srCaptor = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(this.esClient, atLeastOnce())
+                .searchAsync(srCaptor.capture(), any(RequestOptions.class));
+        var conceptQueries = srCaptor.getAllValues().stream()
+                .filter(this::isConceptQuery)
+                .collect(Collectors.toList());
+        assertEquals(2, conceptQueries.size());
+        conceptQueries.forEach(query ->
+                assertTrue(query.source().toString().contains("8ff41af1-0de7-471f-9cdf-3fa1e7f23b1a")));
+
+        eventPublisher.publishEvent(new VocabularyIndexChangedEvent(null));
+        service.searchTerminology(request);
+
+        verify(this.esClient, times(2))
+                .searchAsync(argThat(i -> isMatchingTerminologiesQuery(i)), any(RequestOptions.class));
+        assertNoLogErrors();
+    }
+
+    @Test
+    public void countsAreCachedAndRefreshedAfterIndexUpdates() throws Exception {
+        doReturn(EsUtils.getMockResponse("/es/response/vocabulary_count_response.json"))
+                .when(this.esClient)
+                .search(any(SearchRequest.class), any());
+
+        var first = service.getCounts();
+        var second = service.getCounts();
+
+        assertEquals(8, first.getTotalHitCount());
+        assertEquals(8, second.getTotalHitCount());
+        verify(this.esClient, times(1))
+                .search(any(SearchRequest.class), any(RequestOptions.class));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "terminology.counts").tag("result", "hit").functionCounter().count());
+
+        // callers get copies they are free to modify
+        first.getCounts().getCategories().put("Collection", 5L);
+        assertEquals(0L, service.getCounts().getCounts().getCategories().get("Collection"));
+
+        eventPublisher.publishEvent(new IndexUpdatedEvent(null));
+
+        verify(this.esClient, timeout(5000).times(2))
+                .search(any(SearchRequest.class), any(RequestOptions.class));
+    }
+
+    @Test
+    public void conceptCountsAreReadOnDemandAfterFullReindex() throws Exception {
+        UUID vocabularyId = UUID.randomUUID();
+        doReturn(EsUtils.getMockResponse("/es/response/vocabulary_count_response.json"))
+                .when(this.esClient)
+                .search(any(SearchRequest.class), any());
+
+        service.getConceptCounts(vocabularyId);
+
+        // a full reindex drops the concept counts instead of refreshing every vocabulary at once
+        eventPublisher.publishEvent(new IndexUpdatedEvent(null));
+        assertEquals(0.0, meterRegistry.get("cache.size").tag("cache", "terminology.conceptCounts").gauge().value());
+
+        service.getConceptCounts(vocabularyId);
+
+        verify(this.esClient, times(2))
+                .search(argThat(query -> query.source().toString().contains(vocabularyId.toString())), any(RequestOptions.class));
+    }
 }
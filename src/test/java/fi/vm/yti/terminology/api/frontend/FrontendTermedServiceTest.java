@@ -5,16 +5,19 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import fi.vm.yti.security.AuthenticatedUserProvider;
 import fi.vm.yti.security.AuthorizationException;
+import fi.vm.yti.security.Role;
 import fi.vm.yti.security.YtiUser;
 import fi.vm.yti.terminology.api.TermedRequester;
 import fi.vm.yti.terminology.api.config.UriProperties;
 import fi.vm.yti.terminology.api.exception.NamespaceInUseException;
 import fi.vm.yti.terminology.api.exception.VocabularyNotFoundException;
 import fi.vm.yti.terminology.api.frontend.searchdto.CreateVersionDTO;
+import fi.vm.yti.terminology.api.index.VocabularyIndexChangedEvent;
 import fi.vm.yti.terminology.api.model.termed.*;
 import fi.vm.yti.terminology.api.security.AuthorizationManager;
 import fi.vm.yti.terminology.api.util.Parameters;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -27,8 +30,10 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.HttpServerErrorException;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -47,6 +52,8 @@ import static java.util.Arrays.*;
 
 @ExtendWith(SpringExtension.class)
 @Import({
+        SimpleMeterRegistry.class,
+        UserDisplayNameService.class,
         FrontendTermedService.class
 })
 @TestPropertySource(properties = {
@@ -509,6 +516,25 @@ class FrontendTermedServiceTest {
         });
     }
 
+    @Test
+    public void testCreateVersionDumpErrorIsPropagated() {
+        mockTermedGetGraphs();
+        mockAuthorization();
+
+        UUID vocabularyId = UUID.randomUUID();
+        when(termedRequester.exchange(
+                eq("/graphs/" + vocabularyId + "/dump"),
+                eq(HttpMethod.GET),
+                any(Parameters.class),
+                eq(Dump.class)))
+                    .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+        assertThrows(HttpServerErrorException.class, () -> {
+            var dto = new CreateVersionDTO(vocabularyId, "test_v2");
+            frontEndTermedService.createVersion(dto);
+        });
+    }
+
     @Test
     public void testCreateNewVersion() throws Exception {        
         UUID vocabularyId = UUID.randomUUID();
@@ -623,6 +649,61 @@ class FrontendTermedServiceTest {
         assertEquals(1L, collectionCount);
     }
 
+    @Test
+    public void testVocabularyListIsCachedAndFilteredPerUser() throws JsonProcessingException {
+        var orgId = UUID.randomUUID();
+        JsonNode vocabularies = mapper.readTree("[" +
+                "{ \"id\": \"v1\", \"properties\": { \"status\": [ { \"value\": \"VALID\" } ] }," +
+                "  \"references\": { \"contributor\": [ { \"id\": \"" + UUID.randomUUID() + "\" } ] } }," +
+                "{ \"id\": \"v2\", \"properties\": { \"status\": [ { \"value\": \"INCOMPLETE\" } ] }," +
+                "  \"references\": { \"contributor\": [ { \"id\": \"" + UUID.randomUUID() + "\" }, { \"id\": \"" + orgId + "\" } ] } }" +
+                "]");
+
+        when(termedRequester.exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), eq(JsonNode.class)))
+                .thenReturn(vocabularies);
+
+        mockUser(UUID.randomUUID(), emptyMap());
+        assertEquals(List.of("v1"), ids(frontEndTermedService.getVocabularyList(true)));
+
+        mockUser(UUID.randomUUID(), Map.of(orgId, Set.of(Role.TERMINOLOGY_EDITOR)));
+        assertEquals(List.of("v1", "v2"), ids(frontEndTermedService.getVocabularyList(true)));
+        assertEquals(List.of("v1"), ids(frontEndTermedService.getVocabularyList(false)));
+
+        verify(termedRequester, times(1))
+                .exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), eq(JsonNode.class));
+
+        frontEndTermedService.onVocabularyIndexChanged(new VocabularyIndexChangedEvent(null));
+        frontEndTermedService.getVocabularyList(true);
+
+        verify(termedRequester, times(2))
+                .exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), eq(JsonNode.class));
+    }
+
+    @Test
+    public void testTermedUserIsCheckedAndCreatedOnce() {
+        var userId = UUID.randomUUID();
+        var identifiers = List.of(new Identifier(UUID.randomUUID(), new TypeId(NodeType.Concept, new GraphId(UUID.randomUUID()))));
+
+        when(authorizationManager.canRemoveNodes(anyList())).thenReturn(true);
+        mockUser(userId);
+
+        frontEndTermedService.removeNodes(true, false, identifiers);
+        frontEndTermedService.removeNodes(true, false, identifiers);
+
+        verify(termedRequester, times(1))
+                .exchange(eq("/users"), eq(HttpMethod.GET), any(Parameters.class), eq(TermedUser.class));
+        verify(termedRequester, times(1))
+                .exchange(eq("/users"), eq(HttpMethod.POST), any(Parameters.class), eq(String.class), any(TermedUser.class));
+        verify(termedRequester, times(2))
+                .exchange(eq("/nodes"), eq(HttpMethod.DELETE), any(Parameters.class), eq(String.class), eq(identifiers), eq(userId.toString()), eq(""));
+    }
+
+    private List<String> ids(JsonNode nodes) {
+        List<String> ids = new ArrayList<>();
+        nodes.forEach(node -> ids.add(node.get("id").textValue()));
+        return ids;
+    }
+
     private String getUri(String prefix, String code) {
         return "http://uri.suomi.fi/terminology/" + prefix + "/" + code;
     }
@@ -643,6 +724,10 @@ class FrontendTermedServiceTest {
     }
 
     private void mockUser(UUID userId) {
+        mockUser(userId, emptyMap());
+    }
+
+    private void mockUser(UUID userId, Map<UUID, Set<Role>> rolesInOrganizations) {
         when(authenticatedUserProvider.getUser())
                 .thenReturn(new YtiUser(
                         "admin@localhost",
@@ -653,7 +738,7 @@ class FrontendTermedServiceTest {
                         false,
                         LocalDateTime.now(),
                         LocalDateTime.now(),
-                        emptyMap(),
+                        rolesInOrganizations,
                         null,
                         null
                 ));
@@ -0,0 +1,89 @@
+package fi.vm.yti.terminology.api.frontend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class UserDisplayNameServiceTest {
+
+    private FrontendGroupManagementService groupManagementService;
+    private UserDisplayNameService service;
+
+    @BeforeEach
+    void setUp() {
+        groupManagementService = mock(FrontendGroupManagementService.class);
+        service = new UserDisplayNameService(groupManagementService, new SimpleMeterRegistry(), 100, 3600, 300, 3);
+    }
+
+    @Test
+    void knownUserIsLookedUpOnce() {
+        UUID userId = UUID.randomUUID();
+        when(groupManagementService.findUser(userId.toString())).thenReturn(user(userId, "Test", "User"));
+
+        assertEquals("Test User", service.getDisplayName(userId.toString()));
+        assertEquals("Test User", service.getDisplayName(userId.toString()));
+
+        verify(groupManagementService, times(1)).findUser(userId.toString());
+    }
+
+    @Test
+    void unknownUserIsLookedUpOnce() {
+        String userId = UUID.randomUUID().toString();
+
+        assertEquals("", service.getDisplayName(userId));
+        assertEquals("", service.getDisplayName(userId));
+        assertEquals("", service.getDisplayName("admin"));
+
+        verify(groupManagementService, times(1)).findUser(userId);
+        verify(groupManagementService, never()).findUser("admin");
+    }
+
+    @Test
+    void manyUncachedUsersAreReadAtOnce() {
+        List<UUID> userIds = IntStream.range(0, 4)
+                .mapToObj(i -> UUID.randomUUID())
+                .collect(Collectors.toList());
+        UUID unknownId = UUID.randomUUID();
+        when(groupManagementService.getUsers()).thenReturn(userIds.stream()
+                .map(id -> user(id, "First", id.toString()))
+                .collect(Collectors.toList()));
+
+        List<String> requested = userIds.stream().map(UUID::toString).collect(Collectors.toList());
+        requested.add(unknownId.toString());
+        Map<String, String> names = service.getDisplayNames(requested);
+
+        assertEquals(5, names.size());
+        assertEquals("First " + userIds.get(0), names.get(userIds.get(0).toString()));
+        assertEquals("", names.get(unknownId.toString()));
+
+        assertEquals("First " + userIds.get(1), service.getDisplayName(userIds.get(1).toString()));
+        assertEquals("", service.getDisplayName(unknownId.toString()));
+
+        verify(groupManagementService, times(1)).getUsers();
+        verify(groupManagementService, never()).findUser(anyString());
+    }
+
+    @Test
+    void fewUncachedUsersAreLookedUpOneByOne() {
+        UUID userId = UUID.randomUUID();
+        when(groupManagementService.findUser(userId.toString())).thenReturn(user(userId, "Test", "User"));
+
+        Map<String, String> names = service.getDisplayNames(List.of(userId.toString(), "admin"));
+
+        assertEquals(Map.of(userId.toString(), "Test User", "admin", ""), names);
+        verify(groupManagementService, never()).getUsers();
+    }
+
+    private static GroupManagementUser user(UUID id, String firstName, String lastName) {
+        return new GroupManagementUser(id, "", firstName, lastName, null);
+    }
+}
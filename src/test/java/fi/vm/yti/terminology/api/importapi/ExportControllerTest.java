@@ -0,0 +1,58 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import fi.vm.yti.terminology.api.frontend.FrontendTermedService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@TestPropertySource(properties = {
+        "spring.cloud.config.import-check.enabled=false"
+})
+@WebMvcTest(controllers = ExportController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private FrontendTermedService termedService;
+
+    @MockBean
+    private ExportService exportService;
+
+    @Value("${spring.mvc.async.request-timeout}")
+    private Duration asyncTimeout;
+
+    @Test
+    public void streamedExportUsesConfiguredAsyncTimeout() throws Exception {
+        UUID vocabularyId = UUID.randomUUID();
+        StreamingResponseBody export = output -> output.write("[]".getBytes(StandardCharsets.UTF_8));
+        when(exportService.getJSON(vocabularyId))
+                .thenReturn(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(export));
+
+        MvcResult result = this.mvc.perform(get("/api/v1/export/" + vocabularyId).param("format", "JSON"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertEquals(asyncTimeout.toMillis(), result.getRequest().getAsyncContext().getTimeout());
+    }
+}
@@ -0,0 +1,112 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import fi.vm.yti.security.AuthenticatedUserProvider;
+import fi.vm.yti.terminology.api.TermedContentType;
+import fi.vm.yti.terminology.api.TermedRequester;
+import fi.vm.yti.terminology.api.config.UriProperties;
+import fi.vm.yti.terminology.api.security.AuthorizationTermedService;
+import fi.vm.yti.terminology.api.util.Parameters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpMethod.GET;
+
+@ExtendWith(SpringExtension.class)
+@Import({
+        ExportService.class
+})
+public class ExportServiceTest {
+
+    @MockBean
+    TermedRequester termedRequester;
+    @MockBean
+    AuthenticatedUserProvider userProvider;
+    @MockBean
+    AuthorizationTermedService authorizationTermedService;
+    @MockBean
+    UriProperties uriProperties;
+
+    @Autowired
+    ExportService exportService;
+
+    private final UUID vocabularyId = UUID.randomUUID();
+
+    @Test
+    public void exportIsStreamedFromTermed() throws Exception {
+        ClientHttpResponse termedResponse = termedResponse("[ {\n  \"id\" : \"" + vocabularyId + "\"\n} ]");
+        mockExport(TermedContentType.JSON, termedResponse);
+
+        ResponseEntity<StreamingResponseBody> response = exportService.getJSON(vocabularyId);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("[ {\n  \"id\" : \"" + vocabularyId + "\"\n} ]", write(response));
+        verify(termedResponse).close();
+    }
+
+    @Test
+    public void missingVocabularyIsNotFound() throws Exception {
+        mockExport(TermedContentType.JSON, null);
+
+        ResponseEntity<StreamingResponseBody> response = exportService.getJSON(vocabularyId);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals("null", write(response));
+        verify(termedRequester, times(1)).open(any(), any(), any(), any());
+    }
+
+    @Test
+    public void emptyExportIsNotFound() throws Exception {
+        ClientHttpResponse termedResponse = termedResponse("[ ]");
+        mockExport(TermedContentType.JSON, termedResponse);
+
+        ResponseEntity<StreamingResponseBody> response = exportService.getJSON(vocabularyId, "Concept");
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals("[ ]", write(response));
+        verify(termedResponse).close();
+    }
+
+    @Test
+    public void termedErrorIsThrownBeforeResponseIsCommitted() {
+        when(termedRequester.open(eq("/graphs/" + vocabularyId + "/node-trees"), eq(GET), any(Parameters.class), eq(TermedContentType.RDF_XML)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        assertThrows(HttpServerErrorException.class, () -> exportService.getRDF(vocabularyId));
+    }
+
+    private void mockExport(TermedContentType contentType, ClientHttpResponse termedResponse) {
+        when(termedRequester.open(eq("/graphs/" + vocabularyId + "/node-trees"), eq(GET), any(Parameters.class), eq(contentType)))
+                .thenReturn(termedResponse);
+    }
+
+    private static ClientHttpResponse termedResponse(String body) throws IOException {
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        when(response.getBody()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        return response;
+    }
+
+    private static String write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -8,8 +8,10 @@ import fi.vm.yti.security.YtiUser;
 import fi.vm.yti.terminology.api.config.UriProperties;
 import fi.vm.yti.terminology.api.exception.ExcelParseException;
 import fi.vm.yti.terminology.api.exception.NamespaceInUseException;
+import fi.vm.yti.terminology.api.exception.NtrfParseException;
 import fi.vm.yti.terminology.api.frontend.FrontendGroupManagementService;
 import fi.vm.yti.terminology.api.frontend.FrontendTermedService;
+import fi.vm.yti.terminology.api.model.ntrf.RECORD;
 import fi.vm.yti.terminology.api.model.termed.*;
 import fi.vm.yti.terminology.api.security.AuthorizationManager;
 import org.junit.jupiter.api.Test;
@@ -22,11 +24,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,7 +44,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(SpringExtension.class)
 @Import({
-        ImportService.class
+        ImportService.class,
+        NtrfUploads.class
 })
 @TestPropertySource(properties = {
         "mq.batch.size=1"
@@ -62,6 +70,9 @@ public class ImportServiceTest {
     @Autowired
     ImportService importService;
 
+    @Autowired
+    NtrfUploads ntrfUploads;
+
     @Captor
     ArgumentCaptor<List<List<GenericNode>>> batchesCaptor;
 
@@ -122,6 +133,65 @@ public class ImportServiceTest {
         when(authorizationManager.canCreateVocabulary(any(GenericNode.class))).thenReturn(true);
     }
 
+    @Test
+    public void ntrfUploadIsQueuedById() throws Exception {
+        mockCommon();
+        UUID vocabularyId = UUID.randomUUID();
+        when(termedService.getGraph(vocabularyId)).thenReturn(
+                new Graph(vocabularyId, "test", "http://uri.suomi.fi/terminology/test/", emptyList(), emptyMap(), emptyMap()));
+        when(ytiMQService.handleImportAsync(any(UUID.class), any(MessageHeaderAccessor.class), anyString(), anyString(), anyString()))
+                .thenReturn(200);
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+        try (InputStream is = getClass().getResourceAsStream("/concept-type.xml")) {
+            is.transferTo(content);
+        }
+
+        importService.handleNtrfDocumentAsync("ntrf", vocabularyId,
+                new MockMultipartFile("file", "concept-type.xml", "text/xml", content.toByteArray()));
+
+        verify(ytiMQService).handleImportAsync(any(UUID.class), any(MessageHeaderAccessor.class), anyString(),
+                eq("http://uri.suomi.fi/terminology/test/"), stringCaptor.capture());
+
+        UUID.fromString(stringCaptor.getValue());
+        Path upload = ntrfUploads.fromMessage(stringCaptor.getValue());
+        try {
+            assertArrayEquals(content.toByteArray(), Files.readAllBytes(upload));
+            assertEquals(2, new NtrfStreamDocument(upload).count(RECORD.class));
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    @Test
+    public void importMessageCannotReferToPaths() throws Exception {
+        Path file = Files.createTempFile("ntrf-", ".xml");
+        try {
+            assertThrows(NtrfParseException.class, () -> ntrfUploads.fromMessage(file.toString()));
+            assertThrows(NtrfParseException.class, () -> ntrfUploads.fromMessage("../" + file.getFileName()));
+            assertTrue(Files.exists(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void importMessageWithDocumentIsStoredAsUpload() throws Exception {
+        String content;
+        try (InputStream is = getClass().getResourceAsStream("/concept-type.xml")) {
+            content = "\uFEFF" + new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        Path upload = ntrfUploads.fromMessage(content);
+        try {
+            assertEquals(2, new NtrfStreamDocument(upload).count(RECORD.class));
+        } finally {
+            ntrfUploads.delete(upload);
+        }
+        assertFalse(Files.exists(upload));
+    }
+
     @Test
     public void handleImportTerminologyExists() throws Exception {
         mockCommon();
@@ -2,6 +2,8 @@ package fi.vm.yti.terminology.api.importapi;
 
 import fi.vm.yti.terminology.api.model.termed.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import static java.util.Collections.*;
 
@@ -135,6 +137,85 @@ public class ImportUtilTest {
         );
     }
 
+    /**
+     * concept2 links to concept1, which has already been seen. Both must end up in the same batch
+     * and no node may be imported twice
+     */
+    @Test
+    public void createBatchesWithEarlierConceptReference() {
+        var concept1_id = UUID.randomUUID();
+        var concept2_id = UUID.randomUUID();
+        var concept3_id = UUID.randomUUID();
+
+        GenericNode concept1 = getNode(concept1_id, "concept-1", NodeType.Concept, emptyMap());
+        GenericNode concept2 = getNode(concept2_id, "concept-2", NodeType.Concept, Map.of(
+                "broader", List.of(new Identifier(concept1_id, new TypeId(NodeType.Concept, new GraphId(graphId))))
+        ));
+        GenericNode concept3 = getNode(concept3_id, "concept-3", NodeType.Concept, emptyMap());
+
+        List<List<GenericNode>> batches = ImportUtil.getBatches(List.of(concept1, concept3, concept2), 0);
+
+        assertEquals(2, batches.size());
+        assertEquals(List.of(concept1, concept2), batches.get(0));
+        assertEquals(List.of(concept3), batches.get(1));
+    }
+
+    /**
+     * Synthetic workbooks, each row a concept with two terms, every second concept narrower than a random
+     * earlier concept and every tenth with an external match
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1_000, 10_000 })
+    public void createBatchesOfWorkbook(int rows) {
+        Random random = new Random(rows);
+        List<GenericNode> concepts = new ArrayList<>(rows);
+        List<GenericNode> others = new ArrayList<>(rows * 2);
+
+        for (int i = 0; i < rows; i++) {
+            Map<String, List<Identifier>> references = new HashMap<>();
+
+            GenericNode prefLabel = getNode(UUID.randomUUID(), "term-" + i, NodeType.Term, emptyMap());
+            GenericNode altLabel = getNode(UUID.randomUUID(), "alt-term-" + i, NodeType.Term, emptyMap());
+            others.add(prefLabel);
+            others.add(altLabel);
+            references.put("prefLabelXl", List.of(identifier(prefLabel)));
+            references.put("altLabelXl", List.of(identifier(altLabel)));
+
+            if (i > 0 && i % 2 == 0) {
+                references.put("broader", List.of(identifier(concepts.get(random.nextInt(i)))));
+            }
+            if (i % 10 == 0) {
+                GenericNode link = getNode(UUID.randomUUID(), "link-" + i, NodeType.ConceptLink, emptyMap());
+                others.add(link);
+                references.put("closeMatch", List.of(identifier(link)));
+            }
+
+            concepts.add(getNode(UUID.randomUUID(), "concept-" + i, NodeType.Concept, references));
+        }
+
+        List<GenericNode> allNodes = new ArrayList<>(concepts);
+        allNodes.addAll(others);
+
+        List<List<GenericNode>> batches = ImportUtil.getBatches(allNodes, 1000);
+
+        // every node is imported once, in the same batch as the nodes it references
+        Map<UUID, Integer> batchOfNode = new HashMap<>();
+        for (int i = 0; i < batches.size(); i++) {
+            for (GenericNode node : batches.get(i)) {
+                assertNull(batchOfNode.put(node.getId(), i));
+            }
+        }
+        assertEquals(allNodes.size(), batchOfNode.size());
+        for (GenericNode concept : concepts) {
+            concept.getReferences().values().forEach(references -> references.forEach(reference ->
+                    assertEquals(batchOfNode.get(concept.getId()), batchOfNode.get(reference.getId()))));
+        }
+    }
+
+    private static Identifier identifier(GenericNode node) {
+        return new Identifier(node.getId(), node.getType());
+    }
+
     private GenericNode getNode(UUID concept1_id, String code, NodeType type, Map<String, List<Identifier>> references) {
         return new GenericNode(concept1_id,
                 code, "uri", 0L,
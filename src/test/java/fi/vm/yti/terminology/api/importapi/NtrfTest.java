@@ -6,6 +6,8 @@ import fi.vm.yti.security.YtiUser;
 import fi.vm.yti.terminology.api.TermedRequester;
 import fi.vm.yti.terminology.api.frontend.FrontendTermedService;
 import fi.vm.yti.terminology.api.frontend.Status;
+import fi.vm.yti.terminology.api.model.ntrf.DIAG;
+import fi.vm.yti.terminology.api.model.ntrf.RECORD;
 import fi.vm.yti.terminology.api.model.ntrf.VOCABULARY;
 
 import fi.vm.yti.terminology.api.model.termed.*;
@@ -14,20 +16,32 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpMethod;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,8 +54,15 @@ import static java.util.Arrays.*;
 @Import({
         NtrfMapper.class
 })
+@TestPropertySource(properties = {
+        "ntrf.import.batchSize=" + NtrfTest.BATCH_SIZE
+})
 public class NtrfTest {
 
+    private static final int RECORDS = 2000;
+    static final int BATCH_SIZE = 100;
+    private static final long TERMED_LATENCY_MILLIS = 50;
+
     @MockBean
     TermedRequester termedRequester;
 
@@ -175,6 +196,137 @@ public class NtrfTest {
         assertEquals(Status.RETIRED.name(), getPropertyValue(c200, "status"));
     }
 
+    @Test
+    public void testMapTypeFromStream(@TempDir Path dir) throws Exception {
+        String content = getContent("concept-type.xml");
+
+        NtrfStreamDocument.Summary summary = NtrfStreamDocument.validate(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, summary.getItemCount());
+
+        NtrfStreamDocument document = new NtrfStreamDocument(upload(dir, content));
+        assertEquals(2, document.count(RECORD.class));
+        assertEquals(0, document.count(DIAG.class));
+
+        mapper.mapNtrfDocument("xyz", UUID.randomUUID(), document, UUID.randomUUID());
+
+        verify(termedRequester, times(2)).exchange(
+                eq("/nodes"),
+                eq(HttpMethod.POST),
+                any(Parameters.class),
+                eq(String.class),
+                deleteAndSaveArgumentCaptor.capture(),
+                anyString(),
+                anyString());
+
+        var nodes = deleteAndSaveArgumentCaptor.getAllValues().get(0).getSave();
+
+        assertEquals("aputermi", getPropertyValue(getConceptNode(nodes, "c100"), "editorialNote"));
+        assertEquals(Status.RETIRED.name(), getPropertyValue(getConceptNode(nodes, "c200"), "status"));
+    }
+
+    @Test
+    public void testMapUploadWithByteOrderMark(@TempDir Path dir) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+        bytes.write(getContent("concept-type.xml").getBytes(StandardCharsets.UTF_8));
+        Path upload = Files.write(dir.resolve("upload.xml"), bytes.toByteArray());
+
+        try (InputStream input = Files.newInputStream(upload)) {
+            assertEquals(2, NtrfStreamDocument.validate(input).getItemCount());
+        }
+
+        NtrfStreamDocument document = new NtrfStreamDocument(upload);
+        assertEquals(2, document.count(RECORD.class));
+
+        mapper.mapNtrfDocument("xyz", UUID.randomUUID(), document, UUID.randomUUID());
+
+        verify(termedRequester, times(2)).exchange(
+                eq("/nodes"),
+                eq(HttpMethod.POST),
+                any(Parameters.class),
+                eq(String.class),
+                deleteAndSaveArgumentCaptor.capture(),
+                anyString(),
+                anyString());
+
+        var nodes = deleteAndSaveArgumentCaptor.getAllValues().get(0).getSave();
+        assertEquals("aputermi", getPropertyValue(getConceptNode(nodes, "c100"), "editorialNote"));
+    }
+
+    /**
+     * Import of RECORDS linked records when every Termed write takes TERMED_LATENCY_MILLIS. Records of the next
+     * batch are mapped while the previous batch is written, the first write waits until the mapper has moved past
+     * its batch. Links from each record to the record after it are resolved across batches.
+     */
+    @Test
+    public void pipelinedImport(@TempDir Path dir) throws Exception {
+        Path content = upload(dir, linkedRecords(RECORDS));
+
+        AtomicInteger progressUpdates = new AtomicInteger();
+        CountDownLatch mappedPastFirstBatch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            // One update when the import starts and one for each mapped record
+            if (progressUpdates.incrementAndGet() > BATCH_SIZE + 1) {
+                mappedPastFirstBatch.countDown();
+            }
+            return null;
+        }).when(ytiMQService).setStatus(eq(YtiMQService.STATUS_PROCESSING), any(), any(), any(), any());
+
+        AtomicInteger batchWrites = new AtomicInteger();
+        AtomicBoolean mappedDuringWrite = new AtomicBoolean();
+        Set<UUID> savedConcepts = ConcurrentHashMap.newKeySet();
+        Set<UUID> linkedConcepts = ConcurrentHashMap.newKeySet();
+        when(termedRequester.exchange(eq("/nodes"), eq(HttpMethod.POST), any(Parameters.class), eq(String.class),
+                any(GenericDeleteAndSave.class), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    GenericDeleteAndSave operation = invocation.getArgument(4);
+                    operation.getSave().stream()
+                            .filter(node -> node.getType().getId() == NodeType.Concept)
+                            .forEach(node -> savedConcepts.add(node.getId()));
+                    // Record batches are written on the writer thread, links and collections on the mapping thread
+                    if (Thread.currentThread().getName().equals("ntrf-write") && batchWrites.getAndIncrement() == 0) {
+                        mappedDuringWrite.set(mappedPastFirstBatch.await(10, TimeUnit.SECONDS));
+                    }
+                    Thread.sleep(TERMED_LATENCY_MILLIS);
+                    return "";
+                });
+        when(termedService.getConceptNode(any(UUID.class), any(UUID.class)))
+                .thenAnswer(invocation -> {
+                    linkedConcepts.add(invocation.getArgument(1));
+                    return null;
+                });
+
+        mapper.mapNtrfDocument("xyz", UUID.randomUUID(), new NtrfStreamDocument(content), UUID.randomUUID());
+
+        assertTrue(mappedDuringWrite.get(), "records were not mapped while the first batch was written");
+        assertEquals(recordWrites(RECORDS), batchWrites.get());
+        assertEquals(RECORDS, savedConcepts.size());
+        assertEquals(savedConcepts, linkedConcepts);
+    }
+
+    private static Path upload(Path dir, String content) throws IOException {
+        return Files.writeString(dir.resolve("upload.xml"), content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes of BATCH_SIZE records, the last batch is always written
+     */
+    private static int recordWrites(int records) {
+        return records / BATCH_SIZE + 1;
+    }
+
+    private static String linkedRecords(int count) {
+        StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><VOCABULARY>");
+        for (int i = 0; i < count; i++) {
+            content.append("<RECORD numb=\"c").append(i).append("\" stat=\"VALID\"><LANG value=\"fi\">")
+                    .append("<TE stat=\"VALID\"><TERM>termi ").append(i).append("</TERM></TE>")
+                    .append("<DEF>määritelmä <RCON href=\"#c").append((i + 1) % count).append("\">termi</RCON></DEF>")
+                    .append("</LANG></RECORD>");
+        }
+        return content.append("</VOCABULARY>").toString();
+    }
+
     private GenericNode getConceptNode(List<GenericNode> nodes, String conceptId) {
         return nodes.stream()
                 .filter(n -> n.getCode().equals(conceptId))
@@ -0,0 +1,203 @@
+package fi.vm.yti.terminology.api.importapi;
+
+import fi.vm.yti.security.AuthenticatedUserProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jms.core.BrowserCallback;
+import org.springframework.jms.core.JmsMessagingTemplate;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class YtiMQServiceTest {
+
+    private static final String URI = "http://uri.suomi.fi/terminology/test/";
+
+    private JmsMessagingTemplate jmsMessagingTemplate;
+    private JmsTemplate jmsTemplate;
+    private MeterRegistry meterRegistry;
+
+    private final String jobtoken = UUID.randomUUID().toString();
+    private final String userId = UUID.randomUUID().toString();
+
+    @BeforeEach
+    public void setUp() {
+        jmsMessagingTemplate = mock(JmsMessagingTemplate.class);
+        jmsTemplate = mock(JmsTemplate.class);
+        when(jmsMessagingTemplate.getJmsTemplate()).thenReturn(jmsTemplate);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void progressIsCoalescedAndTransitionsArePublished() {
+        YtiMQService service = createService(60_000);
+
+        service.setStatus(YtiMQService.STATUS_PREPROCESSING, jobtoken, userId, URI, "Validating");
+        for (int i = 0; i < 100; i++) {
+            service.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId, URI, "progress " + i);
+        }
+        service.setStatus(YtiMQService.STATUS_READY, jobtoken, userId, URI, "done");
+
+        verify(jmsMessagingTemplate, times(3)).send(eq("VocabularyStatus"), any(Message.class));
+        assertEquals(3.0, statusMessages("published"));
+        assertEquals(99.0, statusMessages("suppressed"));
+
+        StringBuffer payload = new StringBuffer();
+        service.getStatus(UUID.fromString(jobtoken), payload);
+        assertEquals("done", payload.toString());
+    }
+
+    @Test
+    public void latestHeldBackProgressIsPublishedAfterInterval() throws InterruptedException {
+        YtiMQService service = createService(50);
+
+        service.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId, URI, "progress 1");
+        service.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId, URI, "progress 2");
+        service.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId, URI, "progress 3");
+
+        service.publishPendingStatuses();
+        verify(jmsMessagingTemplate, times(1)).send(eq("VocabularyStatus"), any(Message.class));
+
+        Thread.sleep(60);
+        service.publishPendingStatuses();
+        service.publishPendingStatuses();
+
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(jmsMessagingTemplate, times(2)).send(eq("VocabularyStatus"), sent.capture());
+        assertEquals("progress 1", sent.getAllValues().get(0).getPayload());
+        assertEquals("progress 3", sent.getAllValues().get(1).getPayload());
+        assertEquals(2.0, statusMessages("suppressed"));
+    }
+
+    /**
+     * A held back status being published by the scheduler when the job finishes must not be sent after the
+     * terminal status
+     */
+    @Test
+    public void heldBackProgressIsNotPublishedAfterTerminalStatus() throws Exception {
+        YtiMQService service = createService(50);
+
+        service.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId, URI, "progress 1");
+        service.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId, URI, "progress 2");
+        Thread.sleep(60);
+
+        CountDownLatch pendingSending = new CountDownLatch(1);
+        CountDownLatch releasePending = new CountDownLatch(1);
+        List<Object> sent = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            Message<?> message = invocation.getArgument(1);
+            if ("progress 2".equals(message.getPayload())) {
+                pendingSending.countDown();
+                releasePending.await(5, TimeUnit.SECONDS);
+            }
+            sent.add(message.getPayload());
+            return null;
+        }).when(jmsMessagingTemplate).send(eq("VocabularyStatus"), any(Message.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> scheduled = executor.submit(service::publishPendingStatuses);
+            assertTrue(pendingSending.await(5, TimeUnit.SECONDS));
+
+            Future<?> ready = executor.submit(() -> service.setStatus(YtiMQService.STATUS_READY, jobtoken, userId, URI, "done"));
+            Thread.sleep(50);
+            assertFalse(ready.isDone());
+
+            releasePending.countDown();
+            scheduled.get(5, TimeUnit.SECONDS);
+            ready.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of("progress 2", "done"), sent);
+    }
+
+    @Test
+    public void statusIsReadWithoutBrowsingQueues() {
+        YtiMQService service = createService(60_000);
+
+        service.setStatus(YtiMQService.STATUS_PROCESSING, jobtoken, userId, URI, "progress");
+
+        StringBuffer payload = new StringBuffer();
+        assertEquals(HttpStatus.PROCESSING, service.getStatus(UUID.fromString(jobtoken), payload));
+        assertEquals("progress", payload.toString());
+        assertEquals(HttpStatus.PROCESSING, service.getStatus(UUID.fromString(jobtoken)));
+        assertTrue(service.checkIfImportIsRunning(URI));
+
+        verifyNoQueueBrowsing();
+    }
+
+    @Test
+    public void statusMessagesFromOtherInstancesAreRecorded() {
+        YtiMQService service = createService(60_000);
+        long now = System.currentTimeMillis();
+
+        service.recordStatus(statusMessage(YtiMQService.STATUS_READY, "done", now));
+        service.recordStatus(statusMessage(YtiMQService.STATUS_PROCESSING, "progress", now - 1000));
+        service.recordStatus(MessageBuilder.withPayload("no headers").build());
+
+        StringBuffer payload = new StringBuffer();
+        assertEquals(HttpStatus.OK, service.getStatus(UUID.fromString(jobtoken), payload));
+        assertEquals("done", payload.toString());
+        assertFalse(service.checkIfImportIsRunning(URI));
+
+        verifyNoQueueBrowsing();
+    }
+
+    @Test
+    public void unknownJobIsLookedUpFromQueues() {
+        YtiMQService service = createService(60_000);
+
+        when(jmsTemplate.browseSelected(anyString(), anyString(), any(BrowserCallback.class))).thenReturn(false);
+
+        assertEquals(HttpStatus.NO_CONTENT, service.getStatus(UUID.fromString(jobtoken), new StringBuffer()));
+        verify(jmsTemplate, times(4)).browseSelected(anyString(), anyString(), any(BrowserCallback.class));
+    }
+
+    private void verifyNoQueueBrowsing() {
+        verify(jmsTemplate, never()).browse(anyString(), any(BrowserCallback.class));
+        verify(jmsTemplate, never()).browseSelected(anyString(), anyString(), any(BrowserCallback.class));
+    }
+
+    private Message<String> statusMessage(int status, String payload, long statusTime) {
+        return MessageBuilder.withPayload(payload)
+                .setHeader("jobtoken", jobtoken)
+                .setHeader("userId", userId)
+                .setHeader("uri", URI)
+                .setHeader("status", status)
+                .setHeader("statusTime", statusTime)
+                .build();
+    }
+
+    private YtiMQService createService(long publishIntervalMillis) {
+        return new YtiMQService(mock(AuthenticatedUserProvider.class), jmsMessagingTemplate, jmsTemplate,
+                meterRegistry, "Vocabulary", publishIntervalMillis, 86400, 10000);
+    }
+
+    private double statusMessages(String result) {
+        return meterRegistry.get("terminology.import.statusMessages").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,131 @@
+package fi.vm.yti.terminology.api.index;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fi.vm.yti.terminology.api.util.IndexUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static fi.vm.yti.terminology.api.util.JsonUtils.listToJson;
+import static fi.vm.yti.terminology.api.util.JsonUtils.localizableToJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ConceptDocumentTest {
+
+    private static final int WARMUP_ROUNDS = 1_000;
+    private static final int ROUNDS = 1_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final UUID graphId = UUID.randomUUID();
+    private final UUID conceptId = UUID.randomUUID();
+    private final List<UUID> broader = List.of(UUID.randomUUID());
+    private final List<UUID> narrower = List.of(UUID.randomUUID(), UUID.randomUUID());
+    private final Map<String, List<String>> label = Map.of("fi", List.of("Käsite"), "en", List.of("Concept"));
+    private final Map<String, List<String>> altLabel = Map.of("fi", List.of("Termi", "Nimitys"));
+    private final Map<String, List<String>> definition = Map.of("fi", List.of("Ajatuksellinen kokonaisuus"), "en", List.of("Unit of thought"));
+    private final Map<String, List<String>> vocabularyLabel = Map.of("fi", List.of("Sanasto"));
+
+    private Concept concept;
+
+    @BeforeEach
+    public void setUp() {
+        concept = Concept.createFromIndex(objectMapper, legacyDocument());
+    }
+
+    @Test
+    public void generatedDocumentMatchesTreeDocument() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            concept.writeElasticSearchDocument(generator);
+        }
+
+        assertEquals(legacyDocument(), objectMapper.readTree(output.toByteArray()));
+    }
+
+    /**
+     * Generating the document into a reused buffer allocates less per indexed concept than building a JSON tree,
+     * rendering it to a string and encoding the string as the previous bulk writer did.
+     */
+    @Test
+    public void generatedDocumentAllocatesLessThanTreeDocument() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer);
+        generator.setRootValueSeparator(null);
+
+        long threadId = Thread.currentThread().getId();
+
+        writeTreeDocuments(buffer, WARMUP_ROUNDS);
+        long start = threads.getThreadAllocatedBytes(threadId);
+        writeTreeDocuments(buffer, ROUNDS);
+        long treeBytes = (threads.getThreadAllocatedBytes(threadId) - start) / ROUNDS;
+
+        writeGeneratedDocuments(generator, buffer, WARMUP_ROUNDS);
+        start = threads.getThreadAllocatedBytes(threadId);
+        writeGeneratedDocuments(generator, buffer, ROUNDS);
+        long generatedBytes = (threads.getThreadAllocatedBytes(threadId) - start) / ROUNDS;
+
+        assertTrue(generatedBytes < treeBytes, "generator " + generatedBytes + " bytes, tree " + treeBytes + " bytes");
+    }
+
+    private void writeTreeDocuments(ByteArrayOutputStream buffer, int rounds) throws IOException {
+        for (int i = 0; i < rounds; i++) {
+            buffer.reset();
+            buffer.write(legacyDocument().toString().getBytes(StandardCharsets.UTF_8));
+            buffer.write('\n');
+        }
+    }
+
+    private void writeGeneratedDocuments(JsonGenerator generator, ByteArrayOutputStream buffer, int rounds) throws IOException {
+        for (int i = 0; i < rounds; i++) {
+            buffer.reset();
+            concept.writeElasticSearchDocument(generator);
+            generator.flush();
+            buffer.write('\n');
+        }
+    }
+
+    /**
+     * The concept document as it was built before it was generated directly.
+     */
+    private ObjectNode legacyDocument() {
+        ObjectNode output = objectMapper.createObjectNode();
+        output.put("id", conceptId.toString());
+        output.set("broader", listToJson(objectMapper, broader));
+        output.set("narrower", listToJson(objectMapper, narrower));
+        output.set("definition", localizableToJson(objectMapper, definition));
+        output.set("label", localizableToJson(objectMapper, label));
+        output.set("altLabel", localizableToJson(objectMapper, altLabel));
+        output.set("searchTerm", localizableToJson(objectMapper, Map.of()));
+        output.set("hiddenTerm", localizableToJson(objectMapper, Map.of()));
+        output.set("notRecommendedSynonym", localizableToJson(objectMapper, Map.of()));
+        output.set("sortByLabel", localizableToJson(objectMapper, IndexUtil.createSortLabels(label)));
+        output.put("created", "2020-01-01T00:00:00.000+02:00");
+        output.put("modified", "2020-02-01T00:00:00.000+02:00");
+        output.put("hasNarrower", true);
+        output.put("status", "VALID");
+        output.put("uri", "http://uri.suomi.fi/terminology/test/c1");
+
+        ObjectNode vocabulary = output.putObject("vocabulary");
+        vocabulary.set("label", localizableToJson(objectMapper, vocabularyLabel));
+        vocabulary.put("id", graphId.toString());
+        vocabulary.put("uri", "http://uri.suomi.fi/terminology/test/");
+        vocabulary.put("status", "VALID");
+        return output;
+    }
+}
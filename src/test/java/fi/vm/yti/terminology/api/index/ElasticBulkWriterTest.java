@@ -0,0 +1,83 @@
+package fi.vm.yti.terminology.api.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ElasticBulkWriterTest {
+
+    private RestClient esRestClient;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        esRestClient = mock(RestClient.class);
+        when(esRestClient.performRequest(eq("POST"), eq("/_bulk"), anyMap(), any(HttpEntity.class)))
+                .thenAnswer(invocation -> response("{\"errors\":false}"));
+        when(esRestClient.performRequest(eq("POST"), anyString()))
+                .thenAnswer(invocation -> response("{}"));
+    }
+
+    @Test
+    public void lastChunkFilledByLastActionIsRefreshed() throws Exception {
+        ElasticBulkWriter writer = newWriter();
+
+        for (int i = 0; i < 4; i++) {
+            writer.index("concepts", "concept", "c" + i, generator -> {
+                generator.writeStartObject();
+                generator.writeEndObject();
+            });
+        }
+        writer.delete("vocabularies", "vocabulary", "v0");
+        writer.delete("vocabularies", "vocabulary", "v1");
+
+        assertTrue(writer.finish());
+        assertEquals(6, writer.getSucceeded());
+
+        verify(esRestClient, times(3)).performRequest(eq("POST"), eq("/_bulk"), eq(emptyMap()), any(HttpEntity.class));
+        verify(esRestClient, never()).performRequest(eq("POST"), eq("/_bulk"), eq(singletonMap("refresh", "wait_for")), any(HttpEntity.class));
+        verify(esRestClient).performRequest("POST", "/concepts,vocabularies/_refresh");
+    }
+
+    @Test
+    public void remainingActionsAreSentWithRefresh() throws Exception {
+        ElasticBulkWriter writer = newWriter();
+
+        for (int i = 0; i < 3; i++) {
+            writer.delete("concepts", "concept", "c" + i);
+        }
+
+        assertTrue(writer.finish());
+
+        verify(esRestClient).performRequest(eq("POST"), eq("/_bulk"), eq(emptyMap()), any(HttpEntity.class));
+        verify(esRestClient).performRequest(eq("POST"), eq("/_bulk"), eq(singletonMap("refresh", "wait_for")), any(HttpEntity.class));
+        verify(esRestClient, never()).performRequest(eq("POST"), anyString());
+    }
+
+    private ElasticBulkWriter newWriter() {
+        return new ElasticBulkWriter(esRestClient, new ObjectMapper(), 5242880, 2, 0, true);
+    }
+
+    private static Response response(String body) {
+        Response response = mock(Response.class);
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        when(response.getEntity()).thenReturn(new NStringEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+}
@@ -0,0 +1,157 @@
+package fi.vm.yti.terminology.api.index;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fi.vm.yti.terminology.api.util.RestHighLevelClientWrapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class IndexElasticSearchServiceTest {
+
+    // ids per _mget request, mget maxIds of the service
+    private static final int MGET_CHUNK = 5;
+
+    private final UUID graphId = UUID.randomUUID();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RestClient esRestClient;
+    private IndexTermedService termedApiService;
+    private ApplicationEventPublisher eventPublisher;
+    private IndexElasticSearchService service;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        esRestClient = mock(RestClient.class);
+        termedApiService = mock(IndexTermedService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+
+        RestHighLevelClientWrapper esClient = mock(RestHighLevelClientWrapper.class);
+        when(esClient.getLowLevelClient()).thenReturn(esRestClient);
+
+        when(termedApiService.getVocabulary(graphId))
+                .thenReturn(Vocabulary.createFromIndex(objectMapper, vocabularyDocument()));
+        when(esRestClient.performRequest(eq("POST"), eq("/concepts/concept/_mget"), anyMap(), any(HttpEntity.class)))
+                .thenAnswer(invocation -> mgetResponse(invocation.getArgument(3)));
+
+        service = new IndexElasticSearchService("create_index_default.json",
+                "create_concept_mappings.json,create_vocabulary_mappings.json",
+                "concepts,vocabularies", "concept,vocabulary", false, true,
+                1, 1, 5242880, 1000, 0, MGET_CHUNK,
+                termedApiService, objectMapper, eventPublisher, esClient);
+    }
+
+    /**
+     * Indexed concepts of an incremental update are fetched with _mget requests of MGET_CHUNK ids, sizes stay
+     * within the partial update threshold of 20 concepts above which the whole graph is reindexed instead.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 5, 17, 20 })
+    public void updateIndexAfterUpdateFetchesConceptsInChunks(int conceptCount) throws Exception {
+        List<UUID> conceptIds = IntStream.range(0, conceptCount)
+                .mapToObj(i -> UUID.randomUUID())
+                .collect(Collectors.toList());
+
+        service.updateIndexAfterUpdate(new AffectedNodes(graphId, emptyList(), conceptIds));
+
+        int expectedMgets = (conceptCount + MGET_CHUNK - 1) / MGET_CHUNK;
+        verify(esRestClient, times(expectedMgets))
+                .performRequest(eq("POST"), eq("/concepts/concept/_mget"), anyMap(), any(HttpEntity.class));
+        verify(esRestClient, never()).performRequest(eq("GET"), anyString());
+    }
+
+    /**
+     * Listeners of the published events read vocabulary and concept counts, so deleted documents must
+     * already be invisible to searches when the events are published.
+     */
+    @Test
+    public void deletedDocumentsAreRefreshedBeforeIndexUpdateIsPublished() throws Exception {
+        when(esRestClient.performRequest(eq("POST"), endsWith("/_delete_by_query"), anyMap(), any(HttpEntity.class)))
+                .thenAnswer(invocation -> response("{\"deleted\":1}"));
+
+        service.updateIndexAfterDelete(new AffectedNodes(graphId, singletonList(graphId), emptyList()));
+
+        InOrder inOrder = inOrder(esRestClient, eventPublisher);
+        inOrder.verify(esRestClient).performRequest(eq("POST"), eq("/concepts,vocabularies/_delete_by_query"),
+                eq(singletonMap("refresh", "true")), any(HttpEntity.class));
+        inOrder.verify(esRestClient).performRequest(eq("POST"), eq("/vocabularies/_delete_by_query"),
+                eq(singletonMap("refresh", "true")), any(HttpEntity.class));
+        inOrder.verify(eventPublisher).publishEvent(any(VocabularyIndexChangedEvent.class));
+        inOrder.verify(eventPublisher).publishEvent(any(IndexUpdatedEvent.class));
+        verify(esRestClient, never()).performRequest(eq("POST"), endsWith("/_delete_by_query"), eq(emptyMap()), any(HttpEntity.class));
+    }
+
+    private Response mgetResponse(HttpEntity request) throws Exception {
+        JsonNode ids = objectMapper.readTree(request.getContent()).get("ids");
+
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode docs = body.putArray("docs");
+        for (JsonNode id : ids) {
+            ObjectNode doc = docs.addObject();
+            doc.put("_id", id.textValue());
+            doc.put("found", true);
+            doc.set("_source", conceptDocument(id.textValue().substring(id.textValue().indexOf('/') + 1)));
+        }
+
+        return response(body.toString());
+    }
+
+    private static Response response(String body) {
+        Response response = mock(Response.class);
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        when(response.getEntity()).thenReturn(new NStringEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    private ObjectNode conceptDocument(String conceptId) {
+        ObjectNode concept = objectMapper.createObjectNode();
+        concept.put("id", conceptId);
+        concept.putArray("broader");
+        concept.putArray("narrower");
+        concept.putObject("definition");
+        concept.putObject("label").putArray("fi").add("käsite");
+        concept.putObject("altLabel");
+        concept.putObject("searchTerm");
+        concept.putObject("hiddenTerm");
+        concept.putObject("notRecommendedSynonym");
+        concept.put("status", "DRAFT");
+        concept.set("vocabulary", vocabularyDocument());
+        return concept;
+    }
+
+    private ObjectNode vocabularyDocument() {
+        ObjectNode vocabulary = objectMapper.createObjectNode();
+        vocabulary.put("id", graphId.toString());
+        vocabulary.put("uri", "http://uri.suomi.fi/terminology/test/");
+        vocabulary.putObject("label").putArray("fi").add("sanasto");
+        vocabulary.put("status", "DRAFT");
+        return vocabulary;
+    }
+}
@@ -0,0 +1,90 @@
+package fi.vm.yti.terminology.api.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.UUID;
+
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class NotificationQueueTest {
+
+    private final UUID graphId = UUID.randomUUID();
+
+    private IndexElasticSearchService elasticSearchService;
+    private NotificationQueue queue;
+
+    @BeforeEach
+    public void setUp() {
+        elasticSearchService = mock(IndexElasticSearchService.class);
+        queue = new NotificationQueue(elasticSearchService, new SimpleMeterRegistry(), 500, 5000);
+    }
+
+    @Test
+    public void coalescesSavesOfSameGraph() {
+        var concept1 = UUID.randomUUID();
+        var concept2 = UUID.randomUUID();
+
+        queue.enqueueSaved(graphId, emptyList(), List.of(concept1));
+        queue.enqueueSaved(graphId, emptyList(), List.of(concept1, concept2));
+
+        assertEquals(2, queue.getQueuedNodeCount());
+
+        queue.drainDue(System.currentTimeMillis() + 1000);
+
+        ArgumentCaptor<AffectedNodes> captor = ArgumentCaptor.forClass(AffectedNodes.class);
+        verify(elasticSearchService, times(1)).updateIndexAfterUpdate(captor.capture());
+        verify(elasticSearchService, never()).updateIndexAfterDelete(any());
+
+        assertEquals(graphId, captor.getValue().getGraphId());
+        assertEquals(List.of(concept1, concept2), captor.getValue().getConceptsIds());
+        assertEquals(0, queue.getQueuedNodeCount());
+    }
+
+    @Test
+    public void deleteCancelsEarlierSave() {
+        var concept = UUID.randomUUID();
+
+        queue.enqueueSaved(graphId, emptyList(), List.of(concept));
+        queue.enqueueDeleted(graphId, emptyList(), List.of(concept));
+
+        queue.drainDue(System.currentTimeMillis() + 1000);
+
+        ArgumentCaptor<AffectedNodes> captor = ArgumentCaptor.forClass(AffectedNodes.class);
+        verify(elasticSearchService).updateIndexAfterDelete(captor.capture());
+        verify(elasticSearchService, never()).updateIndexAfterUpdate(any());
+
+        assertEquals(List.of(concept), captor.getValue().getConceptsIds());
+    }
+
+    @Test
+    public void waitsForDebouncePeriod() {
+        queue.enqueueSaved(graphId, emptyList(), List.of(UUID.randomUUID()));
+
+        queue.drainDue(System.currentTimeMillis());
+
+        verifyNoInteractions(elasticSearchService);
+        assertEquals(1, queue.getQueuedNodeCount());
+    }
+
+    @Test
+    public void failedGraphDoesNotBlockOthers() {
+        var otherGraphId = UUID.randomUUID();
+
+        doThrow(new RuntimeException("fail")).when(elasticSearchService)
+                .updateIndexAfterUpdate(argThat(nodes -> nodes.getGraphId().equals(graphId)));
+
+        queue.enqueueSaved(graphId, emptyList(), List.of(UUID.randomUUID()));
+        queue.enqueueSaved(otherGraphId, emptyList(), List.of(UUID.randomUUID()));
+
+        queue.drainDue(System.currentTimeMillis() + 1000);
+
+        verify(elasticSearchService, times(2)).updateIndexAfterUpdate(any());
+        assertEquals(0, queue.getQueuedNodeCount());
+    }
+}
@@ -0,0 +1,93 @@
+package fi.vm.yti.terminology.api.index;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TermedGraphReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TermedGraphReader reader = new TermedGraphReader(objectMapper);
+
+    private final UUID graphId = UUID.randomUUID();
+    private final UUID conceptId = UUID.randomUUID();
+    private final UUID termId = UUID.randomUUID();
+    private final UUID removedTermId = UUID.randomUUID();
+
+    /**
+     * A term removed between reading terms and concepts leaves the concept with a reference without a label
+     */
+    @Test
+    public void conceptReferencingMissingTermIsIndexedWithoutIt() throws Exception {
+        Map<UUID, String[]> termLabels = reader.readTermLabels(stream(objectMapper.createArrayNode().add(term())));
+
+        List<Concept> concepts = new ArrayList<>();
+        int count = reader.readConcepts(stream(objectMapper.createArrayNode().add(concept())),
+                Vocabulary.createFromIndex(objectMapper, vocabularyDocument()), termLabels, concepts::add);
+
+        assertEquals(1, count);
+        assertEquals(1, concepts.size());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            concepts.get(0).writeElasticSearchDocument(generator);
+        }
+        JsonNode document = objectMapper.readTree(output.toByteArray());
+
+        assertEquals(conceptId.toString(), document.get("id").textValue());
+        assertEquals(objectMapper.createObjectNode().set("fi", objectMapper.createArrayNode().add("termi")),
+                document.get("label"));
+    }
+
+    private ByteArrayInputStream stream(ArrayNode nodes) throws Exception {
+        return new ByteArrayInputStream(objectMapper.writeValueAsBytes(nodes));
+    }
+
+    private ObjectNode term() {
+        ObjectNode term = node(termId, "Term");
+        term.putObject("properties").putArray("prefLabel").addObject()
+                .put("lang", "fi")
+                .put("value", "termi");
+        return term;
+    }
+
+    private ObjectNode concept() {
+        ObjectNode concept = node(conceptId, "Concept");
+        concept.put("createdDate", "2020-01-01T00:00:00.000+02:00");
+        concept.put("lastModifiedDate", "2020-01-01T00:00:00.000+02:00");
+        concept.putObject("properties");
+        ArrayNode prefLabelXl = concept.putObject("references").putArray("prefLabelXl");
+        prefLabelXl.add(node(termId, "Term"));
+        prefLabelXl.add(node(removedTermId, "Term"));
+        concept.putObject("referrers");
+        return concept;
+    }
+
+    private ObjectNode node(UUID id, String type) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", id.toString());
+        node.putObject("type").put("id", type);
+        return node;
+    }
+
+    private ObjectNode vocabularyDocument() {
+        ObjectNode vocabulary = objectMapper.createObjectNode();
+        vocabulary.put("id", graphId.toString());
+        vocabulary.put("uri", "http://uri.suomi.fi/terminology/test/");
+        vocabulary.putObject("label").putArray("fi").add("sanasto");
+        vocabulary.put("status", "DRAFT");
+        return vocabulary;
+    }
+}
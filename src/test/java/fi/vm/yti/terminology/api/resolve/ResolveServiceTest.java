@@ -0,0 +1,299 @@
+package fi.vm.yti.terminology.api.resolve;
+
+import fi.vm.yti.terminology.api.TermedContentType;
+import fi.vm.yti.terminology.api.TermedRequester;
+import fi.vm.yti.terminology.api.config.UriProperties;
+import fi.vm.yti.terminology.api.exception.ResourceNotFoundException;
+import fi.vm.yti.terminology.api.exception.VocabularyNotFoundException;
+import fi.vm.yti.terminology.api.index.IndexUpdatedEvent;
+import fi.vm.yti.terminology.api.index.VocabularyIndexChangedEvent;
+import fi.vm.yti.terminology.api.model.termed.GenericNode;
+import fi.vm.yti.terminology.api.model.termed.Graph;
+import fi.vm.yti.terminology.api.model.termed.GraphId;
+import fi.vm.yti.terminology.api.model.termed.NodeType;
+import fi.vm.yti.terminology.api.model.termed.TypeId;
+import fi.vm.yti.terminology.api.util.Parameters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ResolveServiceTest {
+
+    private static final int GRAPHS = 500;
+    private static final int CONCEPTS = 2000;
+    private static final long TERMED_LATENCY_MILLIS = 2;
+    private static final int THREADS = 16;
+
+    private final UUID graphId = UUID.randomUUID();
+    private final List<GenericNode> concepts = IntStream.range(0, CONCEPTS)
+            .mapToObj(i -> node("c" + i, NodeType.Concept))
+            .collect(Collectors.toList());
+
+    private TermedRequester termedRequester;
+    private ResolveIndex resolveIndex;
+    private ResolveService resolveService;
+
+    @BeforeEach
+    public void setUp() {
+        termedRequester = mock(TermedRequester.class);
+
+        UriProperties uriProperties = mock(UriProperties.class);
+        when(uriProperties.getHost()).thenReturn("uri.suomi.fi");
+        when(uriProperties.getContextPath()).thenReturn("/terminology/");
+
+        List<Graph> graphs = new ArrayList<>();
+        for (int i = 0; i < GRAPHS; i++) {
+            graphs.add(new Graph(UUID.randomUUID(), "graph" + i, null, emptyList(), emptyMap(), emptyMap()));
+        }
+        graphs.add(new Graph(graphId, "Test", null, emptyList(), emptyMap(), emptyMap()));
+
+        when(termedRequester.exchange(eq("/graphs"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class)))
+                .thenAnswer(invocation -> withTermedLatency(graphs));
+        when(termedRequester.exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class)))
+                .thenAnswer(invocation -> withTermedLatency(nodeTrees(invocation.getArgument(2))));
+
+        resolveIndex = new ResolveIndex(termedRequester, new SimpleMeterRegistry(), 100, 60);
+        resolveService = new ResolveService(termedRequester, uriProperties, resolveIndex);
+    }
+
+    @Test
+    public void resolvesVocabularyAndConcept() {
+        ResolvedResource vocabulary = resolveService.resolveResource("http://uri.suomi.fi/terminology/test/");
+        assertEquals(graphId, vocabulary.getGraphId());
+        assertEquals(ResolvedResource.Type.VOCABULARY, vocabulary.getType());
+
+        ResolvedResource concept = resolveService.resolveResource("https://uri.suomi.fi/terminology/test/c42?env=dev");
+        assertEquals(graphId, concept.getGraphId());
+        assertEquals(ResolvedResource.Type.CONCEPT, concept.getType());
+        assertEquals(concepts.get(42).getId(), concept.getId());
+
+        assertThrows(VocabularyNotFoundException.class,
+                () -> resolveService.resolveResource("http://uri.suomi.fi/terminology/missing/"));
+        assertThrows(ResourceNotFoundException.class,
+                () -> resolveService.resolveResource("http://uri.suomi.fi/terminology/test/missing"));
+    }
+
+    @Test
+    public void indexUpdateLooksUpCodesOfUpdatedGraph() {
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c1");
+        resolveIndex.onIndexUpdated(new IndexUpdatedEvent(UUID.randomUUID()));
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c1");
+        verify(termedRequester, times(1)).exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+
+        resolveIndex.onIndexUpdated(new IndexUpdatedEvent(graphId));
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c1");
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c1");
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c2");
+
+        ArgumentCaptor<Parameters> queries = ArgumentCaptor.forClass(Parameters.class);
+        verify(termedRequester, times(3)).exchange(eq("/node-trees"), eq(HttpMethod.GET), queries.capture(), any(ParameterizedTypeReference.class));
+        // The whole graph is not read again, c1 and c2 are queried by code
+        assertTrue(queries.getAllValues().get(1).toString().contains("where=code:c1"));
+        assertTrue(queries.getAllValues().get(2).toString().contains("where=code:c2"));
+    }
+
+    @Test
+    public void updateWhileGraphIsReadIsNotMissed() {
+        UUID otherGraphId = UUID.randomUUID();
+        when(termedRequester.exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class)))
+                .thenAnswer(invocation -> {
+                    Parameters params = invocation.getArgument(2);
+                    if (!params.toString().contains("where=code:")) {
+                        // Updates of other graphs do not affect the graph being read
+                        resolveIndex.onIndexUpdated(new IndexUpdatedEvent(otherGraphId));
+                    }
+                    return nodeTrees(params);
+                });
+
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c1");
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c2");
+        verify(termedRequester, times(1)).exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+
+        when(termedRequester.exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class)))
+                .thenAnswer(invocation -> {
+                    Parameters params = invocation.getArgument(2);
+                    if (!params.toString().contains("where=code:")) {
+                        resolveIndex.onIndexUpdated(new IndexUpdatedEvent(graphId));
+                    }
+                    return nodeTrees(params);
+                });
+        resolveIndex.refresh();
+
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c1");
+        resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c2");
+
+        ArgumentCaptor<Parameters> queries = ArgumentCaptor.forClass(Parameters.class);
+        verify(termedRequester, times(4)).exchange(eq("/node-trees"), eq(HttpMethod.GET), queries.capture(), any(ParameterizedTypeReference.class));
+        // The graph was updated while it was read, so its codes are queried one by one
+        assertTrue(queries.getAllValues().get(2).toString().contains("where=code:c1"));
+        assertTrue(queries.getAllValues().get(3).toString().contains("where=code:c2"));
+    }
+
+    @Test
+    public void concurrentLookupsReadGraphCodesOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<ResolveIndex.IndexedNode>>> lookups = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String code = "c" + i;
+                lookups.add(executor.submit(() -> {
+                    start.await();
+                    return resolveIndex.getNodes(graphId, code);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < THREADS; i++) {
+                assertEquals(concepts.get(i).getId(), lookups.get(i).get().get(0).getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(termedRequester, times(1)).exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void unknownPrefixIsNotReadAgainUntilVocabulariesChange() {
+        for (int i = 0; i < 10; i++) {
+            assertThrows(VocabularyNotFoundException.class,
+                    () -> resolveService.resolveResource("http://uri.suomi.fi/terminology/missing/"));
+        }
+        verify(termedRequester, times(1)).exchange(eq("/graphs"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+
+        resolveIndex.onVocabularyIndexChanged(new VocabularyIndexChangedEvent(null));
+        assertThrows(VocabularyNotFoundException.class,
+                () -> resolveService.resolveResource("http://uri.suomi.fi/terminology/missing/"));
+        verify(termedRequester, times(2)).exchange(eq("/graphs"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void concurrentLookupsReadGraphsOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> lookups = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String prefix = i % 2 == 0 ? "test" : "missing";
+                lookups.add(executor.submit(() -> {
+                    start.await();
+                    return resolveIndex.getGraphId(prefix);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < THREADS; i++) {
+                if (i % 2 == 0) {
+                    assertEquals(graphId, lookups.get(i).get());
+                } else {
+                    ExecutionException e = assertThrows(ExecutionException.class, lookups.get(i)::get);
+                    assertTrue(e.getCause() instanceof VocabularyNotFoundException);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(termedRequester, times(1)).exchange(eq("/graphs"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void missingTerminologyIsNotFoundBeforeResponseIsCommitted() {
+        when(termedRequester.open(eq("/graphs/" + graphId + "/node-trees"), eq(HttpMethod.GET), any(Parameters.class), eq(TermedContentType.JSON)))
+                .thenReturn(null);
+
+        assertThrows(VocabularyNotFoundException.class, () -> resolveService.getTerminology(graphId, TermedContentType.JSON));
+    }
+
+    @Test
+    public void termedErrorIsThrownBeforeResponseIsCommitted() {
+        UUID conceptId = concepts.get(0).getId();
+        when(termedRequester.open(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), eq(TermedContentType.RDF_XML)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        assertThrows(HttpServerErrorException.class,
+                () -> resolveService.getResource(graphId, singletonList(NodeType.Concept), TermedContentType.RDF_XML, conceptId));
+    }
+
+    @Test
+    public void terminologyIsStreamedFromTermed() throws Exception {
+        ClientHttpResponse termedResponse = mock(ClientHttpResponse.class);
+        when(termedResponse.getBody()).thenReturn(new ByteArrayInputStream("[ ]".getBytes(StandardCharsets.UTF_8)));
+        when(termedRequester.open(eq("/graphs/" + graphId + "/node-trees"), eq(HttpMethod.GET), any(Parameters.class), eq(TermedContentType.JSON)))
+                .thenReturn(termedResponse);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        resolveService.getTerminology(graphId, TermedContentType.JSON).writeTo(output);
+
+        assertEquals("[ ]", output.toString(StandardCharsets.UTF_8));
+        verify(termedResponse).close();
+    }
+
+    /**
+     * Graphs and codes are read once, later resolutions in the graph are map lookups. Previously every
+     * resolution read all graphs and queried the node by code.
+     */
+    @Test
+    public void resolutionsAfterTheFirstAreIndexLookups() {
+        for (int i = 0; i < CONCEPTS; i++) {
+            ResolvedResource concept = resolveService.resolveResource("http://uri.suomi.fi/terminology/test/c" + i);
+            assertEquals(concepts.get(i).getId(), concept.getId());
+        }
+
+        verify(termedRequester, times(1)).exchange(eq("/graphs"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+        verify(termedRequester, times(1)).exchange(eq("/node-trees"), eq(HttpMethod.GET), any(Parameters.class), any(ParameterizedTypeReference.class));
+        verifyNoMoreInteractions(termedRequester);
+    }
+
+    /**
+     * Nodes of the test graph, only those with the code if the query has one
+     */
+    private List<GenericNode> nodeTrees(Parameters params) {
+        String query = params.toString();
+        if (!query.contains("where=code:")) {
+            return concepts;
+        }
+        return concepts.stream()
+                .filter(node -> query.contains("where=code:" + node.getCode() + "&") || query.endsWith("where=code:" + node.getCode()))
+                .collect(Collectors.toList());
+    }
+
+    private static <T> T withTermedLatency(T response) throws InterruptedException {
+        Thread.sleep(TERMED_LATENCY_MILLIS);
+        return response;
+    }
+
+    private GenericNode node(String code, NodeType type) {
+        return new GenericNode(UUID.randomUUID(), code, null, 0L, null, null, null, null,
+                new TypeId(type, new GraphId(graphId)), emptyMap(), emptyMap(), emptyMap());
+    }
+}
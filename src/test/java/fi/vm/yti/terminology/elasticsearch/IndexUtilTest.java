@@ -9,6 +9,14 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class IndexUtilTest {
 
+    @Test
+    public void normalizeStatus() {
+        assertEquals("DRAFT", IndexUtil.normalizeStatus(" draft "));
+        assertEquals("VALID", IndexUtil.normalizeStatus("VALID"));
+        assertNull(IndexUtil.normalizeStatus(" "));
+        assertNull(IndexUtil.normalizeStatus(null));
+    }
+
     @Test
     public void sortLabelDefaultLanguage() {
         HashMap<String, List<String>> labels = new HashMap<>();
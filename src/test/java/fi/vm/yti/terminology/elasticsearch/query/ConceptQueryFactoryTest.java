@@ -1,8 +1,11 @@
 package fi.vm.yti.terminology.elasticsearch.query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.vm.yti.terminology.api.exception.InvalidQueryException;
 import fi.vm.yti.terminology.api.frontend.elasticqueries.ConceptQueryFactory;
+import fi.vm.yti.terminology.api.frontend.searchdto.ConceptDTO;
 import fi.vm.yti.terminology.api.frontend.searchdto.ConceptSearchRequest;
+import fi.vm.yti.terminology.api.frontend.searchdto.ConceptSearchResponse;
 import fi.vm.yti.terminology.elasticsearch.EsUtils;
 import org.elasticsearch.action.search.SearchRequest;
 import org.json.JSONObject;
@@ -10,6 +13,12 @@ import org.junit.jupiter.api.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 public class ConceptQueryFactoryTest {
 
     ConceptQueryFactory factory = new ConceptQueryFactory(new ObjectMapper(), "testNamespace");
@@ -27,4 +36,76 @@ public class ConceptQueryFactoryTest {
         JSONAssert.assertEquals(jsonExpected.toString(), searchRequest.source().toString(), JSONCompareMode.LENIENT);
 
     }
+
+    @Test
+    public void parseResponse() throws Exception {
+        var response = EsUtils.getMockResponse("/es/response/concept_search_response.json");
+
+        ConceptSearchRequest request = new ConceptSearchRequest();
+        request.setQuery("testi");
+        request.setHighlight(true);
+
+        ConceptSearchResponse conceptSearchResponse = factory.parseResponse(response, request);
+
+        assertEquals(2, conceptSearchResponse.getTotalHitCount());
+        assertEquals(2, conceptSearchResponse.getConcepts().size());
+
+        ConceptDTO concept = conceptSearchResponse.getConcepts().get(0);
+        assertEquals("7f1b8736-7068-4519-a169-3ecc454bdf65", concept.getId());
+        assertEquals("http://uri.suomi.fi/terminology/jhs/concept-1234", concept.getUri());
+        assertEquals("VALID", concept.getStatus());
+        assertEquals(Map.of("fi", "<b>Testi</b>käsite", "en", "Test concept"), concept.getLabel());
+        assertEquals(Map.of("fi", "Koe"), concept.getAltLabel());
+        assertNull(concept.getDefinition());
+        assertEquals(Instant.parse("2021-03-11T06:55:00Z"), concept.getModified());
+        assertEquals(List.of("a1", "b3", "c2"), concept.getNarrower());
+        assertNull(concept.getBroader());
+        assertEquals("ac96b29b-8760-482a-be28-bc162b30e8c9", concept.getTerminology().getId());
+        assertEquals("DRAFT", concept.getTerminology().getStatus());
+        assertEquals(Map.of("fi", "Testisanasto"), concept.getTerminology().getLabel());
+
+        ConceptDTO minimal = conceptSearchResponse.getConcepts().get(1);
+        assertEquals("73098675-c940-46f7-ac4d-15a47fb95704", minimal.getId());
+        assertNull(minimal.getLabel());
+        assertNull(minimal.getTerminology());
+    }
+
+    @Test
+    public void continuesAfterLastHitOfFullPage() throws Exception {
+        var response = EsUtils.getMockResponse("/es/response/concept_search_response.json");
+
+        ConceptSearchRequest request = new ConceptSearchRequest();
+        request.setQuery("test");
+        request.setPageSize(2);
+        request.setPageFrom(0);
+
+        String token = factory.parseResponse(response, request).getContinuationToken();
+        assertNotNull(token);
+
+        request.setPageFrom(40);
+        request.setContinuationToken(token);
+        SearchRequest searchRequest = factory.createQuery(request, true, limitToTheseTerminologyIds -> null);
+
+        assertEquals(0, searchRequest.source().from());
+        assertArrayEquals(new Object[]{ 2.0, "73098675-c940-46f7-ac4d-15a47fb95704" }, searchRequest.source().searchAfter());
+    }
+
+    @Test
+    public void noContinuationAfterLastPage() throws Exception {
+        var response = EsUtils.getMockResponse("/es/response/concept_search_response.json");
+
+        ConceptSearchRequest request = new ConceptSearchRequest();
+        request.setQuery("test");
+
+        assertNull(factory.parseResponse(response, request).getContinuationToken());
+    }
+
+    @Test
+    public void rejectsInvalidContinuationToken() {
+        ConceptSearchRequest request = new ConceptSearchRequest();
+        request.setQuery("test");
+        request.setContinuationToken("not a token");
+
+        assertThrows(InvalidQueryException.class, () -> factory.createQuery(request, true, limitToTheseTerminologyIds -> null));
+    }
 }